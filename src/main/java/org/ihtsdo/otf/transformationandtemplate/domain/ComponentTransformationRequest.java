@@ -1,6 +1,7 @@
 package org.ihtsdo.otf.transformationandtemplate.domain;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.ihtsdo.otf.transformationandtemplate.service.componenttransform.TaskBatchListener;
 
 import java.io.InputStream;
 
@@ -18,6 +19,9 @@ public class ComponentTransformationRequest {
 	private String taskAssignee;
 	private String taskReviewer;
 
+	// Set while the job runs, not part of the job configuration
+	private TaskBatchListener taskBatchListener;
+
 	// Required for Jackson
 	@SuppressWarnings("unused")
 	public ComponentTransformationRequest() {
@@ -80,4 +84,13 @@ public class ComponentTransformationRequest {
 	public void setTaskTitle(String taskTitle) {
 		this.taskTitle = taskTitle;
 	}
+
+	@JsonIgnore
+	public TaskBatchListener getTaskBatchListener() {
+		return taskBatchListener;
+	}
+
+	public void setTaskBatchListener(TaskBatchListener taskBatchListener) {
+		this.taskBatchListener = taskBatchListener;
+	}
 }
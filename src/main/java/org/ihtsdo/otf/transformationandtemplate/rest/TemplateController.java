@@ -8,6 +8,9 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.ihtsdo.otf.transformationandtemplate.rest.util.ControllerHelper;
 import org.ihtsdo.otf.transformationandtemplate.service.ConstantStrings;
+import org.ihtsdo.otf.transformationandtemplate.service.client.ReadReplicaRestClientFactory;
+import org.ihtsdo.otf.transformationandtemplate.service.client.ReadReplicaRestClients;
+import org.ihtsdo.otf.transformationandtemplate.service.client.Workload;
 import org.ihtsdo.otf.transformationandtemplate.service.componenttransform.BranchService;
 import org.ihtsdo.otf.transformationandtemplate.service.template.TemplateConceptCreateService;
 import org.ihtsdo.otf.transformationandtemplate.service.template.TemplateConceptSearchService;
@@ -19,8 +22,6 @@ import org.ihtsdo.otf.transformationandtemplate.service.template.TransformationR
 import org.ihtsdo.otf.transformationandtemplate.service.template.TransformationStatus;
 import org.ihtsdo.otf.transformationandtemplate.service.template.TemplateConceptTransformService;
 import org.ihtsdo.otf.transformationandtemplate.service.template.TemplateTransformationResultService;
-import org.ihtsdo.otf.rest.client.terminologyserver.SnowstormRestClient;
-import org.ihtsdo.otf.rest.client.terminologyserver.SnowstormRestClientFactory;
 import org.ihtsdo.otf.rest.client.terminologyserver.pojo.ConceptPojo;
 import org.ihtsdo.otf.rest.exception.ResourceNotFoundException;
 import org.snomed.authoringtemplate.domain.ConceptOutline;
@@ -55,7 +56,7 @@ public class TemplateController {
 	private TemplateConceptTransformService transformService;
 	
 	@Autowired
-	private SnowstormRestClientFactory terminologyClientFactory;
+	private ReadReplicaRestClientFactory terminologyClientFactory;
 	
 	@Autowired
 	private TemplateTransformationResultService resultService;
@@ -145,8 +146,8 @@ public class TemplateController {
 									) throws ServiceException {
 		branchPath = BranchPathUriUtil.decodePath(branchPath);
 		TemplateTransformation transformation = transformService.createTemplateTransformation(branchPath, transformRequest);
-		SnowstormRestClient restClient = terminologyClientFactory.getClient();
-		transformService.transformAsynchronously(transformation, restClient);
+		ReadReplicaRestClients restClients = terminologyClientFactory.getClientsForCurrentUser(Workload.TEMPLATE_TRANSFORMATION);
+		transformService.transformAsynchronously(transformation, restClients);
 		transformation.setStatus(TransformationStatus.QUEUED);
 		resultService.update(transformation);
 		setBatchChangeFlagOnBranch(branchPath);
@@ -170,12 +171,12 @@ public class TemplateController {
 		if (conceptToTransform.getClassAxioms() == null) {
 			throw new IllegalArgumentException("The class axioms to be transformed must not be null " + conceptToTransform);
 		}
-		SnowstormRestClient restClient = terminologyClientFactory.getClient();
+		ReadReplicaRestClients restClients = terminologyClientFactory.getClientsForCurrentUser();
 		TemplateTransformRequest request = new TemplateTransformRequest();
 		request.setDestinationTemplate(destinationTemplate);
 		branchPath = BranchPathUriUtil.decodePath(branchPath);
 		setBatchChangeFlagOnBranch(branchPath);
-		return transformService.transformConcept(branchPath, request, conceptToTransform, restClient);
+		return transformService.transformConcept(branchPath, request, conceptToTransform, restClients);
 	}
 	
 	@RequestMapping(value = "/templates/transform/{transformationId}", method = RequestMethod.GET)
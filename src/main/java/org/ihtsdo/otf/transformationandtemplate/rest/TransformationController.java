@@ -1,6 +1,7 @@
 package org.ihtsdo.otf.transformationandtemplate.rest;
 
 import io.kaicode.rest.util.branchpathrewrite.BranchPathUriUtil;
+import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import org.ihtsdo.otf.rest.client.terminologyserver.pojo.AxiomPojo;
 import org.ihtsdo.otf.rest.client.terminologyserver.pojo.DescriptionPojo;
@@ -86,6 +87,24 @@ public class TransformationController {
 		return componentTransformService.loadTransformationJob(branchPath, jobId);
 	}
 
+	@ApiOperation(value = "Resume a failed job",
+			notes = "Only jobs with status FAILED can be resumed. The job continues from the first unfinished task batch. " +
+					"Rows of task batches which finished before are not processed again, including rows which were recorded as failed, " +
+					"their results are kept as they were. Correct and submit failed rows as a new job. " +
+					"Jobs which create or replace components can not be resumed if a task batch started without finishing, " +
+					"its task branch may already hold some of the new components.")
+	@RequestMapping(value = "/{branchPath}/recipes/{recipe}/jobs/{jobId}/resume", method = RequestMethod.POST, produces = "application/json")
+	public ComponentTransformationJob resumeTransformationJob(
+			@PathVariable String branchPath,
+			@ApiParam("Recipe key")
+			@PathVariable String recipe,
+			@PathVariable String jobId) throws BusinessServiceException {
+
+		branchPath = BranchPathUriUtil.decodePath(branchPath);
+
+		return componentTransformService.resumeBatchTransformation(branchPath, jobId);
+	}
+
 	@RequestMapping(value = "/{branchPath}/recipes/{recipe}/jobs/{jobId}/result-tsv", method = RequestMethod.GET, produces = "text/csv")
 	@ResponseBody
 	public void getTransformationJobResultAsTsv(
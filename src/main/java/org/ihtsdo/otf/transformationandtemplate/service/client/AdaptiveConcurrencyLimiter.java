@@ -0,0 +1,266 @@
+package org.ihtsdo.otf.transformationandtemplate.service.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of concurrent requests to each API, across all users, jobs and interactive requests.
+ * The limit is adjusted AIMD style: it grows by one for every limit's worth of successful requests and is cut by the
+ * backoff ratio when the server answers 429 or 503, a connection fails, or responses become latency-tolerance times slower
+ * than usual. Only one cut is made per round of requests, requests started before the last cut do not count against the new limit.
+ * Requests over the limit wait in order for a permit, which is held until the response headers arrive.
+ * The last interactive-reserve permits are kept for interactive requests, which are also let in ahead of waiting background work.
+ */
+@Service
+public class AdaptiveConcurrencyLimiter {
+
+	// Weights of the latest response in the short and long term average latency
+	private static final double SHORT_TERM_WEIGHT = 0.2;
+	private static final double LONG_TERM_WEIGHT = 0.01;
+	private static final int LATENCY_WARM_UP_SAMPLES = 100;
+
+	private final double initialLimit;
+	private final int minLimit;
+	private final int maxLimit;
+	private final double backoffRatio;
+	private final double latencyTolerance;
+	private final int interactiveReserve;
+	private final Map<String, Limit> limits = new ConcurrentHashMap<>();
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	public AdaptiveConcurrencyLimiter(@Value("${webclient.concurrency.initial-limit}") int initialLimit,
+			@Value("${webclient.concurrency.min-limit}") int minLimit,
+			@Value("${webclient.concurrency.max-limit}") int maxLimit,
+			@Value("${webclient.concurrency.backoff-ratio}") double backoffRatio,
+			@Value("${webclient.concurrency.latency-tolerance}") double latencyTolerance,
+			@Value("${webclient.concurrency.interactive-reserve}") int interactiveReserve) {
+		this.minLimit = Math.max(1, minLimit);
+		this.maxLimit = Math.max(this.minLimit, maxLimit);
+		this.initialLimit = Math.min(Math.max(initialLimit, this.minLimit), this.maxLimit);
+		this.backoffRatio = backoffRatio;
+		this.latencyTolerance = latencyTolerance;
+		this.interactiveReserve = Math.max(0, interactiveReserve);
+	}
+
+	/**
+	 * @return the filter limiting requests to the given API, shared by every client of that API.
+	 */
+	public ExchangeFilterFunction getFilter(String apiUrl) {
+		Limit limit = limits.computeIfAbsent(apiUrl, Limit::new);
+		// Reads sent to a read replica count against the replica's limit
+		return (request, next) -> request.attribute(ReadReplicaRouter.API_URL_ATTRIBUTE)
+				.map(replicaUrl -> limits.computeIfAbsent((String) replicaUrl, Limit::new))
+				.orElse(limit)
+				.filter(request, next);
+	}
+
+	public int getLimit(String apiUrl) {
+		Limit limit = limits.get(apiUrl);
+		return limit != null ? limit.getLimit() : (int) initialLimit;
+	}
+
+	public int getInFlight(String apiUrl) {
+		Limit limit = limits.get(apiUrl);
+		return limit != null ? limit.getInFlight() : 0;
+	}
+
+	private static boolean isOverloadSignal(int statusCode) {
+		return statusCode == HttpStatus.TOO_MANY_REQUESTS.value() || statusCode == HttpStatus.SERVICE_UNAVAILABLE.value();
+	}
+
+	private final class Limit implements ExchangeFilterFunction {
+
+		private final String apiUrl;
+		private final Deque<Waiter> interactiveWaiters = new ArrayDeque<>();
+		private final Deque<Waiter> backgroundWaiters = new ArrayDeque<>();
+		private double limit = initialLimit;
+		private int inFlight;
+		private long lastDecreaseNanos = System.nanoTime();
+		private double shortTermLatency;
+		private double longTermLatency;
+		private long latencySamples;
+
+		private Limit(String apiUrl) {
+			this.apiUrl = apiUrl;
+		}
+
+		@Override
+		public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+			return acquire(Workload.of(request) == Workload.INTERACTIVE).flatMap(permit -> next.exchange(request)
+					.doOnNext(response -> permit.release(isOverloadSignal(response.rawStatusCode()), true))
+					.doOnError(e -> permit.release(e instanceof WebClientRequestException, false))
+					.doOnCancel(() -> permit.release(false, false)));
+		}
+
+		private Mono<Permit> acquire(boolean interactive) {
+			return Mono.create(sink -> {
+				Waiter waiter = new Waiter(sink, interactive);
+				boolean granted;
+				synchronized (this) {
+					if (interactive) {
+						granted = inFlight < getLimit() && interactiveWaiters.isEmpty();
+					} else {
+						granted = inFlight < getBackgroundLimit() && interactiveWaiters.isEmpty() && backgroundWaiters.isEmpty();
+					}
+					if (granted) {
+						inFlight++;
+					} else {
+						getWaiters(interactive).add(waiter);
+					}
+				}
+				if (granted) {
+					waiter.grant(new Permit(this));
+				} else {
+					sink.onCancel(() -> waiter.cancel(this));
+				}
+			});
+		}
+
+		private void release(Permit permit, boolean overloaded, boolean measured) {
+			long now = System.nanoTime();
+			synchronized (this) {
+				inFlight--;
+				// Requests started before the last cut were sent under the old limit, so say nothing about the new one
+				if (permit.startNanos > lastDecreaseNanos) {
+					if (overloaded) {
+						decrease(now, "overload response");
+					} else if (measured) {
+						recordLatency(now - permit.startNanos);
+						if (latencySamples > LATENCY_WARM_UP_SAMPLES && shortTermLatency > longTermLatency * latencyTolerance) {
+							decrease(now, "latency increase");
+						} else {
+							limit = Math.min(maxLimit, limit + 1 / limit);
+						}
+					}
+				}
+			}
+			grantWaiting();
+		}
+
+		private void recordLatency(long latencyNanos) {
+			if (latencySamples++ == 0) {
+				shortTermLatency = latencyNanos;
+				longTermLatency = latencyNanos;
+			} else {
+				shortTermLatency += SHORT_TERM_WEIGHT * (latencyNanos - shortTermLatency);
+				longTermLatency += LONG_TERM_WEIGHT * (latencyNanos - longTermLatency);
+			}
+		}
+
+		private void decrease(long now, String reason) {
+			int previous = getLimit();
+			limit = Math.max(minLimit, limit * backoffRatio);
+			lastDecreaseNanos = now;
+			// Start the short term average afresh, otherwise it keeps cutting the limit until it has caught up
+			shortTermLatency = longTermLatency;
+			logger.info("Concurrency limit for {} reduced from {} to {} after {}, {} requests in flight.", apiUrl, previous, getLimit(), reason, inFlight);
+		}
+
+		private void grantWaiting() {
+			while (true) {
+				Waiter waiter;
+				synchronized (this) {
+					if (!interactiveWaiters.isEmpty() && inFlight < getLimit()) {
+						waiter = interactiveWaiters.poll();
+					} else if (interactiveWaiters.isEmpty() && !backgroundWaiters.isEmpty() && inFlight < getBackgroundLimit()) {
+						waiter = backgroundWaiters.poll();
+					} else {
+						return;
+					}
+					inFlight++;
+				}
+				waiter.grant(new Permit(this));
+			}
+		}
+
+		private synchronized int getLimit() {
+			return (int) limit;
+		}
+
+		/**
+		 * Background work may always have at least one request in flight, however low the limit falls.
+		 */
+		private synchronized int getBackgroundLimit() {
+			return Math.max(1, getLimit() - interactiveReserve);
+		}
+
+		private Deque<Waiter> getWaiters(boolean interactive) {
+			return interactive ? interactiveWaiters : backgroundWaiters;
+		}
+
+		private synchronized int getInFlight() {
+			return inFlight;
+		}
+	}
+
+	private static final class Waiter {
+
+		private static final int WAITING = 0;
+		private static final int GRANTED = 1;
+		private static final int CANCELLED = 2;
+
+		private final MonoSink<Permit> sink;
+		private final boolean interactive;
+		private final AtomicInteger state = new AtomicInteger(WAITING);
+		private volatile Permit permit;
+
+		private Waiter(MonoSink<Permit> sink, boolean interactive) {
+			this.sink = sink;
+			this.interactive = interactive;
+		}
+
+		private void grant(Permit permit) {
+			this.permit = permit;
+			if (state.compareAndSet(WAITING, GRANTED)) {
+				sink.success(permit);
+			} else {
+				permit.release(false, false);
+			}
+		}
+
+		private void cancel(Limit limit) {
+			if (state.compareAndSet(WAITING, CANCELLED)) {
+				synchronized (limit) {
+					limit.getWaiters(interactive).remove(this);
+				}
+			} else if (permit != null) {
+				// Granted as the subscriber went away
+				permit.release(false, false);
+			}
+		}
+	}
+
+	private static final class Permit {
+
+		private final Limit limit;
+		private final long startNanos = System.nanoTime();
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private Permit(Limit limit) {
+			this.limit = limit;
+		}
+
+		private void release(boolean overloaded, boolean measured) {
+			if (released.compareAndSet(false, true)) {
+				limit.release(this, overloaded, measured);
+			}
+		}
+	}
+}
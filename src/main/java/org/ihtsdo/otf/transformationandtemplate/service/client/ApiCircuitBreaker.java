@@ -0,0 +1,265 @@
+package org.ihtsdo.otf.transformationandtemplate.service.client;
+
+import org.ihtsdo.otf.transformationandtemplate.service.exception.CircuitBreakerOpenException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Stops calling an API once too many of its recent calls have failed or been slow, so callers fail fast instead of
+ * queueing up behind a server that is struggling. A call fails if the server answers 5xx or cannot be reached.
+ * After open-seconds a few trial calls are let through, the circuit closes again if they all succeed.
+ * Each workload has its own circuit to each API, so background jobs whose calls fail or are slow do not cut off interactive users.
+ */
+@Service
+public class ApiCircuitBreaker {
+
+	private final int windowSize;
+	private final int minimumCalls;
+	private final double failureRateThreshold;
+	private final long slowCallNanos;
+	private final double slowCallRateThreshold;
+	private final long openMillis;
+	private final int trialCalls;
+	private final Map<Key, Circuit> circuits = new ConcurrentHashMap<>();
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	public ApiCircuitBreaker(@Value("${webclient.circuit-breaker.window-size}") int windowSize,
+			@Value("${webclient.circuit-breaker.minimum-calls}") int minimumCalls,
+			@Value("${webclient.circuit-breaker.failure-rate-threshold}") double failureRateThreshold,
+			@Value("${webclient.circuit-breaker.slow-call-millis}") long slowCallMillis,
+			@Value("${webclient.circuit-breaker.slow-call-rate-threshold}") double slowCallRateThreshold,
+			@Value("${webclient.circuit-breaker.open-seconds}") long openSeconds,
+			@Value("${webclient.circuit-breaker.trial-calls}") int trialCalls) {
+		this.windowSize = Math.max(1, windowSize);
+		this.minimumCalls = Math.min(Math.max(1, minimumCalls), this.windowSize);
+		this.failureRateThreshold = failureRateThreshold;
+		this.slowCallNanos = slowCallMillis * 1_000_000;
+		this.slowCallRateThreshold = slowCallRateThreshold;
+		this.openMillis = openSeconds * 1_000;
+		this.trialCalls = Math.max(1, trialCalls);
+	}
+
+	/**
+	 * @return the filter guarding calls to the given API, shared by every client of that API. Each request uses the circuit of its workload.
+	 */
+	public ExchangeFilterFunction getFilter(String apiUrl) {
+		// Reads sent to a read replica have the replica's own circuit
+		return (request, next) -> getCircuit(request.attribute(ReadReplicaRouter.API_URL_ATTRIBUTE)
+						.map(String.class::cast)
+						.orElse(apiUrl), Workload.of(request))
+				.filter(request, next);
+	}
+
+	/**
+	 * Makes a blocking call to the given API, unless the workload's circuit to it is open.
+	 */
+	public <T, E extends Exception> T call(String apiUrl, Workload workload, WorkloadBulkheads.BlockingCall<T, E> call) throws E {
+		Circuit circuit = getCircuit(apiUrl, workload);
+		Call permitted = circuit.tryStart();
+		try {
+			T result = call.call();
+			permitted.finish(false);
+			return result;
+		} catch (Exception e) {
+			permitted.finish(isFailure(e));
+			throw e;
+		}
+	}
+
+	public boolean isOpen(String apiUrl, Workload workload) {
+		Circuit circuit = circuits.get(new Key(apiUrl, workload));
+		return circuit != null && circuit.isOpen();
+	}
+
+	private Circuit getCircuit(String apiUrl, Workload workload) {
+		return circuits.computeIfAbsent(new Key(apiUrl, workload), Circuit::new);
+	}
+
+	private static boolean isFailure(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof IOException || cause instanceof ResourceAccessException || cause instanceof HttpServerErrorException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private enum State { CLOSED, OPEN, TRIAL }
+
+	private final class Circuit {
+
+		private final String apiUrl;
+		private final Workload workload;
+		// Ring buffer of the latest outcomes
+		private final boolean[] failed = new boolean[windowSize];
+		private final boolean[] slow = new boolean[windowSize];
+		private int next;
+		private int recorded;
+		private int failures;
+		private int slowCalls;
+		private State state = State.CLOSED;
+		private long openUntil;
+		private int trialsStarted;
+		private int trialsSucceeded;
+
+		private Circuit(Key key) {
+			this.apiUrl = key.apiUrl;
+			this.workload = key.workload;
+		}
+
+		private Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+			return Mono.defer(() -> {
+				Call call = tryStart();
+				return next.exchange(request)
+						.doOnNext(response -> call.finish(response.rawStatusCode() >= 500))
+						.doOnError(e -> call.finish(e instanceof WebClientRequestException))
+						.doOnCancel(call::cancel);
+			});
+		}
+
+		private Call tryStart() {
+			synchronized (this) {
+				if (state == State.OPEN && System.currentTimeMillis() >= openUntil) {
+					state = State.TRIAL;
+					trialsStarted = 0;
+					trialsSucceeded = 0;
+				}
+				if (state == State.CLOSED) {
+					return new Call(this, false);
+				}
+				if (state == State.TRIAL && trialsStarted < trialCalls) {
+					trialsStarted++;
+					return new Call(this, true);
+				}
+			}
+			throw new CircuitBreakerOpenException("Calls to " + apiUrl + " for " + workload + " work are failing or too slow, not calling it again for a while.");
+		}
+
+		private void record(Call call, boolean failure, boolean cancelled) {
+			boolean wasSlow = !cancelled && System.nanoTime() - call.startNanos > slowCallNanos;
+			synchronized (this) {
+				if (call.trial) {
+					if (state != State.TRIAL) {
+						return;
+					}
+					if (cancelled) {
+						trialsStarted--;
+					} else if (failure || wasSlow) {
+						open("a trial call " + (failure ? "failed" : "was slow"));
+					} else if (++trialsSucceeded >= trialCalls) {
+						logger.info("Closing circuit to {} for {} work, trial calls succeeded.", apiUrl, workload);
+						reset();
+						state = State.CLOSED;
+					}
+					return;
+				}
+				if (cancelled || state != State.CLOSED) {
+					return;
+				}
+				if (recorded == windowSize) {
+					failures -= failed[next] ? 1 : 0;
+					slowCalls -= slow[next] ? 1 : 0;
+				} else {
+					recorded++;
+				}
+				failed[next] = failure;
+				slow[next] = wasSlow;
+				failures += failure ? 1 : 0;
+				slowCalls += wasSlow ? 1 : 0;
+				next = (next + 1) % windowSize;
+				if (recorded >= minimumCalls) {
+					double failureRate = 100.0 * failures / recorded;
+					double slowCallRate = 100.0 * slowCalls / recorded;
+					if (failureRate >= failureRateThreshold) {
+						open(String.format("%.0f%% of the last %d calls failed", failureRate, recorded));
+					} else if (slowCallRate >= slowCallRateThreshold) {
+						open(String.format("%.0f%% of the last %d calls were slow", slowCallRate, recorded));
+					}
+				}
+			}
+		}
+
+		private void open(String reason) {
+			logger.warn("Opening circuit to {} for {} work for {} seconds, {}.", apiUrl, workload, openMillis / 1_000, reason);
+			state = State.OPEN;
+			openUntil = System.currentTimeMillis() + openMillis;
+			reset();
+		}
+
+		private void reset() {
+			next = 0;
+			recorded = 0;
+			failures = 0;
+			slowCalls = 0;
+		}
+
+		private synchronized boolean isOpen() {
+			return state == State.OPEN && System.currentTimeMillis() < openUntil;
+		}
+	}
+
+	private static final class Key {
+
+		private final String apiUrl;
+		private final Workload workload;
+
+		private Key(String apiUrl, Workload workload) {
+			this.apiUrl = apiUrl;
+			this.workload = workload;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Key key = (Key) o;
+			return apiUrl.equals(key.apiUrl) && workload == key.workload;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(apiUrl, workload);
+		}
+	}
+
+	private static final class Call {
+
+		private final Circuit circuit;
+		private final boolean trial;
+		private final long startNanos = System.nanoTime();
+		private final AtomicBoolean finished = new AtomicBoolean();
+
+		private Call(Circuit circuit, boolean trial) {
+			this.circuit = circuit;
+			this.trial = trial;
+		}
+
+		private void finish(boolean failure) {
+			if (finished.compareAndSet(false, true)) {
+				circuit.record(this, failure, false);
+			}
+		}
+
+		private void cancel() {
+			if (finished.compareAndSet(false, true)) {
+				circuit.record(this, false, true);
+			}
+		}
+	}
+}
@@ -13,13 +13,15 @@ import org.ihtsdo.otf.exception.TermServerScriptException;
 public class AuthoringServicesClient {
 
 	private final WebClient restClient;
+	private final BranchMetadataCache branchMetadataCache;
 
-	private AuthoringServicesClient(String apiUrl, String authenticationToken, String codecMaxInMemorySize) {
-		restClient = RestClientHelper.getRestClient(apiUrl, authenticationToken, codecMaxInMemorySize);
+	private AuthoringServicesClient(WebClient userWebClient, BranchMetadataCache branchMetadataCache) {
+		restClient = userWebClient;
+		this.branchMetadataCache = branchMetadataCache;
 	}
 
-	public static AuthoringServicesClient createClientForUser(String apiUrl, String authenticationToken, String codecMaxInMemorySize) {
-		return new AuthoringServicesClient(apiUrl, authenticationToken, codecMaxInMemorySize);
+	public static AuthoringServicesClient createClientForUser(WebClient userWebClient, BranchMetadataCache branchMetadataCache) {
+		return new AuthoringServicesClient(userWebClient, branchMetadataCache);
 	}
 
 	public AuthoringTask createTask(String projectKey, String title, String description) {
@@ -42,13 +44,13 @@ public class AuthoringServicesClient {
 	}
 
 	public AuthoringProject retrieveProject(String projectKey) {
-		return restClient.get()
+		return branchMetadataCache.getProject(projectKey, () -> restClient.get()
 				.uri(uriBuilder -> uriBuilder.path("/projects/{projectKey}").build(projectKey))
 				.retrieve()
 				.onStatus(HttpStatus::isError, response -> response.bodyToMono(String.class) 
 						.flatMap(error -> Mono.error(new TermServerScriptException("Failed to retrieve project '" + projectKey + "' : " + error)))
 				)
-				.bodyToMono(AuthoringProject.class)
+				.bodyToMono(AuthoringProject.class))
 				.block();
 	}
 	
@@ -12,20 +12,31 @@ public class AuthoringServicesClientFactory {
 
 	private final String authoringServicesApiUrl;
 	private final String codecMaxInMemorySize;
+	private final WebClientPool webClientPool;
+	private final BranchMetadataCache branchMetadataCache;
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
-	public AuthoringServicesClientFactory(@Value("${authoring-services.url}") String authoringServicesApiUrl, @Value("${spring.codec.max-in-memory-size}") String codecMaxInMemorySize) {
+	public AuthoringServicesClientFactory(@Value("${authoring-services.url}") String authoringServicesApiUrl, @Value("${spring.codec.max-in-memory-size}") String codecMaxInMemorySize,
+			WebClientPool webClientPool, BranchMetadataCache branchMetadataCache) {
 		this.authoringServicesApiUrl = authoringServicesApiUrl;
 		this.codecMaxInMemorySize = codecMaxInMemorySize;
+		this.webClientPool = webClientPool;
+		webClientPool.register(authoringServicesApiUrl, codecMaxInMemorySize);
+		this.branchMetadataCache = branchMetadataCache;
 	}
 
 	public AuthoringServicesClient getClientForCurrentUser() {
+		return getClientForCurrentUser(Workload.INTERACTIVE);
+	}
+
+	public AuthoringServicesClient getClientForCurrentUser(Workload workload) {
 		String authenticationToken = SecurityUtil.getAuthenticationToken();
 		if (StringUtils.isEmpty(authenticationToken)) {
 			logger.warn("Authentication token is not set.");
 		} else {
 			logger.debug("Authentication token starts: " + authenticationToken.substring(0, 5));
 		}
-		return AuthoringServicesClient.createClientForUser(authoringServicesApiUrl, authenticationToken, codecMaxInMemorySize);
+		return AuthoringServicesClient.createClientForUser(webClientPool.getClientForUser(authoringServicesApiUrl, authenticationToken, codecMaxInMemorySize, workload),
+				branchMetadataCache);
 	}
 }
@@ -0,0 +1,109 @@
+package org.ihtsdo.otf.transformationandtemplate.service.client;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.ihtsdo.otf.rest.client.terminologyserver.pojo.Branch;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Short lived cache of branch and authoring project metadata, shared by all terminology server and authoring services clients.
+ * Branch entries are evicted when this service writes to the branch, so the cached head timestamp stays current for our own changes.
+ * A load which was already under way when its entry was evicted is returned to its caller but not cached, it may predate the write.
+ * Of overlapping loads of an entry only the one started last is cached. Expired entries are removed, as task branches come and go.
+ * Changes made elsewhere are picked up once the entry expires.
+ */
+@Service
+public class BranchMetadataCache {
+
+	private final Entries<Branch> branches;
+	private final Entries<AuthoringProject> projects;
+
+	public BranchMetadataCache(@Value("${branch-metadata.cache.ttl-seconds}") long ttlSeconds) {
+		branches = new Entries<>(ttlSeconds);
+		projects = new Entries<>(ttlSeconds);
+	}
+
+	public Mono<Branch> getBranch(String branchPath, Supplier<Mono<Branch>> loader) {
+		return branches.get(branchPath, loader);
+	}
+
+	/**
+	 * Loads the branch whether or not it is cached, for callers which must have the current head, and caches it for everyone else.
+	 */
+	public Mono<Branch> refreshBranch(String branchPath, Supplier<Mono<Branch>> loader) {
+		return branches.load(branchPath, loader);
+	}
+
+	public Mono<AuthoringProject> getProject(String projectKey, Supplier<Mono<AuthoringProject>> loader) {
+		return projects.get(projectKey, loader);
+	}
+
+	public void evictBranch(String branchPath) {
+		branches.evict(branchPath);
+	}
+
+	public void clear() {
+		branches.clear();
+		projects.clear();
+	}
+
+	private static final class Entries<T> {
+
+		private final Cache<String, T> values;
+		// Token of the latest load of each key which is still under way, a load only caches its value if its token is still there.
+		// Evicting the key removes the token, so a load which started before the eviction is not cached.
+		private final Map<String, Object> loads = new ConcurrentHashMap<>();
+
+		private Entries(long ttlSeconds) {
+			values = CacheBuilder.newBuilder()
+					.expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+					.build();
+		}
+
+		private Mono<T> get(String key, Supplier<Mono<T>> loader) {
+			return Mono.defer(() -> {
+				T cached = values.getIfPresent(key);
+				if (cached != null) {
+					return Mono.just(cached);
+				}
+				return load(key, loader);
+			});
+		}
+
+		private Mono<T> load(String key, Supplier<Mono<T>> loader) {
+			return Mono.defer(() -> {
+				Object token = new Object();
+				loads.put(key, token);
+				return loader.get()
+						// Checked and cached under the key's lock, so an eviction can not slip in between
+						.doOnNext(value -> loads.computeIfPresent(key, (k, latestToken) -> {
+							if (latestToken != token) {
+								return latestToken;
+							}
+							values.put(key, value);
+							return null;
+						}))
+						// Loads which fail or are cancelled leave nothing behind
+						.doFinally(signal -> loads.remove(key, token));
+			});
+		}
+
+		private void evict(String key) {
+			loads.compute(key, (k, token) -> {
+				values.invalidate(key);
+				return null;
+			});
+		}
+
+		private void clear() {
+			values.invalidateAll();
+		}
+	}
+}
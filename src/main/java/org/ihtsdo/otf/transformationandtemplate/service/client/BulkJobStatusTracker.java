@@ -0,0 +1,134 @@
+package org.ihtsdo.otf.transformationandtemplate.service.client;
+
+import org.ihtsdo.otf.rest.client.terminologyserver.pojo.ConceptChangeBatchStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Follows all outstanding Snowstorm bulk change jobs from a single scheduler thread.
+ * Each job is polled with a growing interval, starting fast for small batches and backing off for long running ones,
+ * and completes its own future when the job leaves the RUNNING state or its deadline passes.
+ */
+@Service
+public class BulkJobStatusTracker {
+
+	private static final double BACKOFF_MULTIPLIER = 1.5;
+
+	private final long initialPollMillis;
+	private final long maxPollMillis;
+	private final long deadlineBaseSeconds;
+	private final long deadlinePerComponentMillis;
+
+	private final ScheduledExecutorService scheduler;
+	private final Map<String, TrackedJob> outstandingJobs = new ConcurrentHashMap<>();
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	public BulkJobStatusTracker(@Value("${terminologyserver.bulk-job.poll.initial-millis}") long initialPollMillis,
+			@Value("${terminologyserver.bulk-job.poll.max-millis}") long maxPollMillis,
+			@Value("${terminologyserver.bulk-job.deadline.base-seconds}") long deadlineBaseSeconds,
+			@Value("${terminologyserver.bulk-job.deadline.per-component-millis}") long deadlinePerComponentMillis) {
+		this.initialPollMillis = initialPollMillis;
+		this.maxPollMillis = maxPollMillis;
+		this.deadlineBaseSeconds = deadlineBaseSeconds;
+		this.deadlinePerComponentMillis = deadlinePerComponentMillis;
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "bulk-job-status-tracker");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Track a bulk job with a deadline derived from the number of components submitted.
+	 */
+	public Mono<ConceptChangeBatchStatus> track(WebClient webClient, String locationHeader, int componentCount) {
+		return track(webClient, locationHeader, getDeadline(componentCount));
+	}
+
+	public Mono<ConceptChangeBatchStatus> track(WebClient webClient, String locationHeader, Duration maxWait) {
+		return Mono.defer(() -> {
+			TrackedJob job = new TrackedJob(webClient, locationHeader, System.currentTimeMillis() + maxWait.toMillis());
+			outstandingJobs.put(locationHeader, job);
+			// Stop tracking the job before the caller is signalled
+			CompletableFuture<ConceptChangeBatchStatus> untracked = job.future.whenComplete((status, throwable) -> outstandingJobs.remove(locationHeader, job));
+			logger.debug("Tracking bulk job {}, {} jobs outstanding.", locationHeader, outstandingJobs.size());
+			schedulePoll(job);
+			return Mono.fromFuture(untracked)
+					.doOnCancel(() -> job.future.cancel(false));
+		});
+	}
+
+	public Duration getDeadline(int componentCount) {
+		return Duration.ofSeconds(deadlineBaseSeconds).plusMillis(deadlinePerComponentMillis * componentCount);
+	}
+
+	public int getOutstandingJobCount() {
+		return outstandingJobs.size();
+	}
+
+	private void schedulePoll(TrackedJob job) {
+		long delay = Math.max(0, Math.min(job.pollInterval, job.deadline - System.currentTimeMillis()));
+		job.pollInterval = Math.min((long) (job.pollInterval * BACKOFF_MULTIPLIER), maxPollMillis);
+		try {
+			scheduler.schedule(() -> poll(job), delay, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			job.future.completeExceptionally(e);
+		}
+	}
+
+	private void poll(TrackedJob job) {
+		if (job.future.isDone()) {
+			return;
+		}
+		if (System.currentTimeMillis() >= job.deadline) {
+			job.future.completeExceptionally(new TimeoutException("Batch change exceeded maximum duration."));
+			return;
+		}
+		job.webClient.get()
+				.uri(job.locationHeader)
+				.retrieve()
+				.bodyToMono(ConceptChangeBatchStatus.class)
+				.subscribe(
+						status -> {
+							if (status.getStatus() != ConceptChangeBatchStatus.Status.RUNNING) {
+								job.future.complete(status);
+							}
+						},
+						job.future::completeExceptionally,
+						() -> {
+							if (!job.future.isDone()) {
+								schedulePoll(job);
+							}
+						});
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		scheduler.shutdownNow();
+		outstandingJobs.values().forEach(job -> job.future.cancel(false));
+	}
+
+	private final class TrackedJob {
+
+		private final WebClient webClient;
+		private final String locationHeader;
+		private final long deadline;
+		private final CompletableFuture<ConceptChangeBatchStatus> future = new CompletableFuture<>();
+		private volatile long pollInterval = initialPollMillis;
+
+		private TrackedJob(WebClient webClient, String locationHeader, long deadline) {
+			this.webClient = webClient;
+			this.locationHeader = locationHeader;
+			this.deadline = deadline;
+		}
+	}
+}
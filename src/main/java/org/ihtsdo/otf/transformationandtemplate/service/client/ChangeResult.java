@@ -41,6 +41,14 @@ public class ChangeResult<T extends SnomedComponent> {
 		success = true;
 	}
 
+	/**
+	 * Succeeds without anything being saved, the component was already as requested.
+	 */
+	public void unchanged() {
+		success = true;
+		message = "unchanged";
+	}
+
 	public Boolean getSuccess() {
 		return success;
 	}
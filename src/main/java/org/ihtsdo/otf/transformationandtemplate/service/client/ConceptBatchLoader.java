@@ -0,0 +1,180 @@
+package org.ihtsdo.otf.transformationandtemplate.service.client;
+
+import org.ihtsdo.otf.rest.client.terminologyserver.pojo.ConceptPojo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Coalesces single concept lookups in front of the terminology server.
+ * Lookups are made through a {@link Scope}, standing for the credentials, workload and kind of request their loader uses.
+ * Lookups in the same scope for the same branch and concept id which are already waiting or in flight share one response.
+ * Lookups in the same scope for the same branch arriving within a short window are sent together as one bulk request.
+ * The request for a batch is made with the loader of whichever caller opened the batch, so lookups are never merged across scopes.
+ */
+@Service
+public class ConceptBatchLoader {
+
+	private final Duration batchWindow;
+	private final int maxBatchSize;
+	private final ConceptCache conceptCache;
+
+	private final Map<Key, PendingBatch> pendingBatches = new HashMap<>();
+	private final Map<Key, Sinks.One<ConceptPojo>> inFlight = new HashMap<>();
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	public ConceptBatchLoader(@Value("${concept-batch-loader.window-millis}") long batchWindowMillis,
+			@Value("${concept-batch-loader.max-batch-size}") int maxBatchSize, ConceptCache conceptCache) {
+		this.batchWindow = Duration.ofMillis(batchWindowMillis);
+		this.maxBatchSize = maxBatchSize;
+		this.conceptCache = conceptCache;
+	}
+
+	/**
+	 * @param scope equal for callers whose loaders use the same credentials, workload and kind of request, for example
+	 * the user's authentication token, the workload and the endpoint. Lookups are only merged with lookups of an equal scope.
+	 */
+	public Scope forScope(Object scope) {
+		return new Scope(scope);
+	}
+
+	private Mono<ConceptPojo> load(Object scope, String branchPath, String conceptId, Function<Collection<String>, Flux<ConceptPojo>> bulkLoader) {
+		return Mono.defer(() -> enqueue(scope, branchPath, conceptId, bulkLoader).asMono())
+				.map(conceptCache::copy);
+	}
+
+	private Sinks.One<ConceptPojo> enqueue(Object scope, String branchPath, String conceptId, Function<Collection<String>, Flux<ConceptPojo>> bulkLoader) {
+		PendingBatch batchToFlush = null;
+		Sinks.One<ConceptPojo> sink;
+		synchronized (this) {
+			Key key = new Key(scope, branchPath, conceptId);
+			sink = inFlight.get(key);
+			if (sink != null) {
+				return sink;
+			}
+			sink = Sinks.one();
+			inFlight.put(key, sink);
+
+			Key batchKey = new Key(scope, branchPath, null);
+			PendingBatch batch = pendingBatches.get(batchKey);
+			if (batch == null) {
+				batch = new PendingBatch(batchKey, bulkLoader);
+				pendingBatches.put(batchKey, batch);
+				PendingBatch newBatch = batch;
+				Mono.delay(batchWindow).subscribe(tick -> flush(newBatch));
+			}
+			batch.sinks.put(conceptId, sink);
+			if (batch.sinks.size() >= maxBatchSize) {
+				batchToFlush = batch;
+			}
+		}
+		if (batchToFlush != null) {
+			flush(batchToFlush);
+		}
+		return sink;
+	}
+
+	private void flush(PendingBatch batch) {
+		synchronized (this) {
+			if (pendingBatches.get(batch.key) != batch) {
+				// Already flushed because it filled up
+				return;
+			}
+			pendingBatches.remove(batch.key);
+		}
+		logger.debug("Loading batch of {} concepts from {}.", batch.sinks.size(), batch.key.branchPath);
+		Flux<ConceptPojo> concepts;
+		try {
+			concepts = batch.bulkLoader.apply(new ArrayList<>(batch.sinks.keySet()));
+		} catch (RuntimeException e) {
+			concepts = Flux.error(e);
+		}
+		concepts.subscribe(
+				concept -> {
+					Sinks.One<ConceptPojo> sink = batch.sinks.get(concept.getConceptId());
+					if (sink != null) {
+						sink.tryEmitValue(concept);
+					}
+				},
+				error -> complete(batch, sink -> sink.tryEmitError(error)),
+				() -> complete(batch, Sinks.One::tryEmitEmpty));
+	}
+
+	private void complete(PendingBatch batch, Consumer<Sinks.One<ConceptPojo>> remainingSinkAction) {
+		synchronized (this) {
+			batch.sinks.keySet().forEach(conceptId -> inFlight.remove(new Key(batch.key.scope, batch.key.branchPath, conceptId)));
+		}
+		// Sinks which already have a value ignore this
+		batch.sinks.values().forEach(remainingSinkAction);
+	}
+
+	/**
+	 * Loads concepts for callers sharing one scope.
+	 */
+	public final class Scope {
+
+		private final Object scope;
+
+		private Scope(Object scope) {
+			this.scope = scope;
+		}
+
+		/**
+		 * @param bulkLoader loads all concepts for a collection of ids on the given branch, used if this call opens a new batch.
+		 * @return the concept, or empty if the terminology server did not return it. Every subscriber gets its own copy.
+		 */
+		public Mono<ConceptPojo> load(String branchPath, String conceptId, Function<Collection<String>, Flux<ConceptPojo>> bulkLoader) {
+			return ConceptBatchLoader.this.load(scope, branchPath, conceptId, bulkLoader);
+		}
+	}
+
+	private static final class PendingBatch {
+
+		private final Key key;
+		private final Function<Collection<String>, Flux<ConceptPojo>> bulkLoader;
+		private final Map<String, Sinks.One<ConceptPojo>> sinks = new LinkedHashMap<>();
+
+		private PendingBatch(Key key, Function<Collection<String>, Flux<ConceptPojo>> bulkLoader) {
+			this.key = key;
+			this.bulkLoader = bulkLoader;
+		}
+	}
+
+	/**
+	 * A concept lookup, or without a concept id, a batch of lookups.
+	 */
+	private static final class Key {
+
+		private final Object scope;
+		private final String branchPath;
+		private final String conceptId;
+
+		private Key(Object scope, String branchPath, String conceptId) {
+			this.scope = scope;
+			this.branchPath = branchPath;
+			this.conceptId = conceptId;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Key key = (Key) o;
+			return Objects.equals(scope, key.scope) && branchPath.equals(key.branchPath) && Objects.equals(conceptId, key.conceptId);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(scope, branchPath, conceptId);
+		}
+	}
+}
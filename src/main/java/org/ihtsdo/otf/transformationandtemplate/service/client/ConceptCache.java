@@ -0,0 +1,116 @@
+package org.ihtsdo.otf.transformationandtemplate.service.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.ihtsdo.otf.rest.client.terminologyserver.pojo.Branch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Size bounded cache of concepts keyed by branch path, branch head timestamp and concept id.
+ * When a branch moves its head timestamp changes, so older entries are no longer looked up and age out of the cache.
+ * Concepts are held in serialised form and every hit returns a fresh copy, callers are free to modify what they get back.
+ */
+@Service
+public class ConceptCache {
+
+	private final Cache<Key, byte[]> cache;
+	private final ObjectMapper objectMapper = new ObjectMapper()
+			.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	public ConceptCache(@Value("${concept-cache.max-size}") String maxSize) {
+		cache = CacheBuilder.newBuilder()
+				.maximumWeight(DataSize.parse(maxSize).toBytes())
+				.<Key, byte[]>weigher((key, value) -> value.length)
+				.recordStats()
+				.build();
+	}
+
+	/**
+	 * @return the head timestamp to key cache entries by or null if the branch is unknown, in which case nothing should be cached.
+	 */
+	public static String getHeadTimestamp(Branch branch) {
+		return branch != null ? String.valueOf(branch.getHeadTimestamp()) : null;
+	}
+
+	public <T> T get(String branchPath, String headTimestamp, String conceptId, Class<T> type) {
+		if (headTimestamp == null) {
+			return null;
+		}
+		byte[] bytes = cache.getIfPresent(new Key(branchPath, headTimestamp, conceptId, type));
+		if (bytes == null) {
+			return null;
+		}
+		try {
+			return objectMapper.readValue(bytes, type);
+		} catch (IOException e) {
+			logger.warn("Failed to read cached concept {}, it will be loaded again.", conceptId, e);
+			return null;
+		}
+	}
+
+	public <T> void put(String branchPath, String headTimestamp, String conceptId, T concept) {
+		if (headTimestamp == null || conceptId == null || concept == null) {
+			return;
+		}
+		try {
+			cache.put(new Key(branchPath, headTimestamp, conceptId, concept.getClass()), objectMapper.writeValueAsBytes(concept));
+		} catch (JsonProcessingException e) {
+			logger.warn("Failed to cache concept {}.", conceptId, e);
+		}
+	}
+
+	/**
+	 * @return a deep copy of the given concept, for handing the same loaded concept to more than one caller.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T copy(T concept) {
+		try {
+			return (T) objectMapper.readValue(objectMapper.writeValueAsBytes(concept), concept.getClass());
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to copy concept.", e);
+		}
+	}
+
+	public String getStats() {
+		return cache.stats().toString();
+	}
+
+	private static final class Key {
+
+		private final String branchPath;
+		private final String headTimestamp;
+		private final String conceptId;
+		private final Class<?> type;
+
+		private Key(String branchPath, String headTimestamp, String conceptId, Class<?> type) {
+			this.branchPath = branchPath;
+			this.headTimestamp = headTimestamp;
+			this.conceptId = conceptId;
+			this.type = type;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Key key = (Key) o;
+			return branchPath.equals(key.branchPath) && headTimestamp.equals(key.headTimestamp) && conceptId.equals(key.conceptId) && type.equals(key.type);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(branchPath, headTimestamp, conceptId, type);
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package org.ihtsdo.otf.transformationandtemplate.service.client;
+
+import org.ihtsdo.otf.rest.client.terminologyserver.SnowstormRestClient;
+import org.ihtsdo.otf.rest.client.terminologyserver.SnowstormRestClientFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Creates the terminology server REST clients used by template searches and transformations, one per read replica as well as the primary.
+ */
+@Service
+public class ReadReplicaRestClientFactory {
+
+	private final SnowstormRestClientFactory primaryClientFactory;
+	private final Map<String, SnowstormRestClientFactory> replicaClientFactories = new LinkedHashMap<>();
+	private final ReadReplicaRouter router;
+	private final WorkloadBulkheads workloadBulkheads;
+	private final ApiCircuitBreaker circuitBreaker;
+	private final String apiUrl;
+
+	public ReadReplicaRestClientFactory(SnowstormRestClientFactory primaryClientFactory, ReadReplicaRouter router,
+			WorkloadBulkheads workloadBulkheads, ApiCircuitBreaker circuitBreaker,
+			@Value("${terminologyserver.url}") String apiUrl, @Value("${terminologyserver.reasonerId}") String reasonerId) {
+		this.primaryClientFactory = primaryClientFactory;
+		this.router = router;
+		this.workloadBulkheads = workloadBulkheads;
+		this.circuitBreaker = circuitBreaker;
+		this.apiUrl = apiUrl;
+		for (String replicaUrl : router.getReplicaUrls()) {
+			replicaClientFactories.put(replicaUrl, new SnowstormRestClientFactory(replicaUrl, reasonerId));
+		}
+	}
+
+	/**
+	 * Clients carry the current user's authentication, so must be created on the request thread.
+	 */
+	public ReadReplicaRestClients getClientsForCurrentUser() {
+		return getClientsForCurrentUser(Workload.INTERACTIVE);
+	}
+
+	public ReadReplicaRestClients getClientsForCurrentUser(Workload workload) {
+		Map<String, SnowstormRestClient> replicaClients = new LinkedHashMap<>();
+		replicaClientFactories.forEach((url, factory) -> replicaClients.put(url, factory.getClient()));
+		return new ReadReplicaRestClients(primaryClientFactory.getClient(), replicaClients, router, workload, workloadBulkheads, circuitBreaker, apiUrl);
+	}
+}
@@ -0,0 +1,80 @@
+package org.ihtsdo.otf.transformationandtemplate.service.client;
+
+import org.ihtsdo.otf.rest.client.RestClientException;
+import org.ihtsdo.otf.rest.client.terminologyserver.SnowstormRestClient;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One user's terminology server REST clients, for the primary and each read replica.
+ * Reads go through {@link #read(String, Read)} so they are spread across the replicas, anything else uses {@link #getPrimary()}.
+ * Reads are made within the workload's bulkhead and are refused while the circuit of the server they are sent to is open.
+ */
+public class ReadReplicaRestClients {
+
+	private final SnowstormRestClient primary;
+	private final Map<String, SnowstormRestClient> replicas;
+	private final ReadReplicaRouter router;
+	private final Workload workload;
+	private final WorkloadBulkheads workloadBulkheads;
+	private final ApiCircuitBreaker circuitBreaker;
+	private final String apiUrl;
+
+	ReadReplicaRestClients(SnowstormRestClient primary, Map<String, SnowstormRestClient> replicas, ReadReplicaRouter router,
+			Workload workload, WorkloadBulkheads workloadBulkheads, ApiCircuitBreaker circuitBreaker, String apiUrl) {
+		this.primary = primary;
+		this.replicas = replicas;
+		this.router = router;
+		this.workload = workload;
+		this.workloadBulkheads = workloadBulkheads;
+		this.circuitBreaker = circuitBreaker;
+		this.apiUrl = apiUrl;
+	}
+
+	/**
+	 * @return clients sending every request, reads included, straight to the given client.
+	 */
+	public static ReadReplicaRestClients primaryOnly(SnowstormRestClient primary) {
+		return new ReadReplicaRestClients(primary, Collections.emptyMap(), null, Workload.INTERACTIVE, null, null, null);
+	}
+
+	public SnowstormRestClient getPrimary() {
+		return primary;
+	}
+
+	public <T> T read(String branchPath, Read<T> read) throws RestClientException {
+		return read(branchPath, read, null);
+	}
+
+	/**
+	 * @param servedByReplica if not null, set to whether the read was answered by a replica. A replica may lag behind the primary,
+	 * so what it returns must not be cached against the primary's branch head.
+	 */
+	public <T> T read(String branchPath, Read<T> read, AtomicBoolean servedByReplica) throws RestClientException {
+		if (router == null) {
+			T result = read.apply(primary);
+			setServedByReplica(servedByReplica, false);
+			return result;
+		}
+		// Each endpoint has its own circuit, a replica's open circuit sends the read to the primary
+		return workloadBulkheads.call(workload, () -> router.read(branchPath, url -> {
+			SnowstormRestClient client = replicas.get(url);
+			T result = circuitBreaker.call(client != null ? url : apiUrl, workload, () -> read.apply(client != null ? client : primary));
+			// Only set once answered, a failed read of a replica is made again on the primary
+			setServedByReplica(servedByReplica, client != null);
+			return result;
+		}));
+	}
+
+	private static void setServedByReplica(AtomicBoolean servedByReplica, boolean replica) {
+		if (servedByReplica != null) {
+			servedByReplica.set(replica);
+		}
+	}
+
+	public interface Read<T> {
+		T apply(SnowstormRestClient client) throws RestClientException;
+	}
+}
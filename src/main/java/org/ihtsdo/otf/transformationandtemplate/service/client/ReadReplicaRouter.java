@@ -0,0 +1,311 @@
+package org.ihtsdo.otf.transformationandtemplate.service.client;
+
+import org.ihtsdo.otf.rest.client.RestClientException;
+import org.ihtsdo.otf.transformationandtemplate.service.exception.CircuitBreakerOpenException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Spreads read only terminology server requests across the configured read replicas, sending each to the healthy
+ * replica with the fewest requests outstanding. Writes, branch operations and anything not marked as a read stay on the primary.
+ * A replica is ejected for a while after repeated connection failures or 502/503/504 responses, and brought back early
+ * if its health check passes, or skipped while its circuit is open. Reads of a branch this service has just written to go to the
+ * primary for a short time, so we read our own writes whatever the replication lag.
+ */
+@Service
+public class ReadReplicaRouter {
+
+	/**
+	 * Request attribute marking a WebClient request as a read of the given branch, which may be sent to a replica.
+	 */
+	public static final String READ_BRANCH_ATTRIBUTE = ReadReplicaRouter.class.getName() + ".READ_BRANCH";
+
+	/**
+	 * Request attribute set on a read sent to a replica, the url of the replica's API. The replica's own concurrency limit
+	 * and circuit guard the request, rather than the primary's.
+	 */
+	public static final String API_URL_ATTRIBUTE = ReadReplicaRouter.class.getName() + ".API_URL";
+
+	/**
+	 * Optional request attribute holding an {@link AtomicBoolean}, set to whether the read was answered by a replica.
+	 * A replica may lag behind the primary, so what it returns must not be cached against the primary's branch head.
+	 */
+	public static final String SERVED_BY_REPLICA_ATTRIBUTE = ReadReplicaRouter.class.getName() + ".SERVED_BY_REPLICA";
+
+	private static final int HTTP_BAD_GATEWAY = 502;
+	private static final int HTTP_GATEWAY_TIMEOUT = 504;
+
+	private final String primaryUrl;
+	private final List<Endpoint> replicas;
+	private final int failuresToEject;
+	private final long ejectionMillis;
+	private final long readYourWritesMillis;
+	private final Map<String, Long> recentlyWrittenBranches = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService healthChecker;
+	private final HttpClient healthCheckClient;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	public ReadReplicaRouter(@Value("${terminologyserver.url}") String primaryUrl,
+			@Value("${terminologyserver.read-urls}") List<String> readUrls,
+			@Value("${terminologyserver.read-replica.failures-to-eject}") int failuresToEject,
+			@Value("${terminologyserver.read-replica.ejection-seconds}") long ejectionSeconds,
+			@Value("${terminologyserver.read-replica.health-check-seconds}") long healthCheckSeconds,
+			@Value("${terminologyserver.read-replica.read-your-writes-seconds}") long readYourWritesSeconds) {
+		this.primaryUrl = withTrailingSlash(primaryUrl);
+		this.replicas = readUrls.stream()
+				.map(String::trim)
+				.filter(url -> !url.isEmpty())
+				.map(ReadReplicaRouter::withTrailingSlash)
+				.filter(url -> !url.equals(this.primaryUrl))
+				.distinct()
+				.map(Endpoint::new)
+				.collect(Collectors.toList());
+		this.failuresToEject = Math.max(1, failuresToEject);
+		this.ejectionMillis = ejectionSeconds * 1_000;
+		this.readYourWritesMillis = readYourWritesSeconds * 1_000;
+		healthCheckClient = HttpClient.newBuilder()
+				.connectTimeout(Duration.ofSeconds(5))
+				.build();
+		healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "read-replica-health-check");
+			thread.setDaemon(true);
+			return thread;
+		});
+		if (!replicas.isEmpty()) {
+			logger.info("Spreading terminology server reads across {}.", getReplicaUrls());
+			healthChecker.scheduleWithFixedDelay(this::checkHealth, healthCheckSeconds, healthCheckSeconds, TimeUnit.SECONDS);
+		}
+	}
+
+	public boolean hasReplicas() {
+		return !replicas.isEmpty();
+	}
+
+	public List<String> getReplicaUrls() {
+		return replicas.stream().map(endpoint -> endpoint.url).collect(Collectors.toList());
+	}
+
+	/**
+	 * Sends reads of the branch to the primary for a while, until the replicas have caught up with this write.
+	 */
+	public void recordWrite(String branchPath) {
+		if (hasReplicas() && branchPath != null) {
+			recentlyWrittenBranches.put(branchPath, System.currentTimeMillis() + readYourWritesMillis);
+		}
+	}
+
+	/**
+	 * Makes a blocking read against the chosen endpoint. If a replica cannot be reached the read is made again on the primary.
+	 * @param call makes the read against the API at the given url.
+	 */
+	public <T> T read(String branchPath, ReadCall<T> call) throws RestClientException {
+		Endpoint endpoint = choose(branchPath);
+		if (endpoint == null) {
+			return call.apply(primaryUrl);
+		}
+		endpoint.outstanding.incrementAndGet();
+		try {
+			T result = call.apply(endpoint.url);
+			endpoint.recordSuccess();
+			return result;
+		} catch (CircuitBreakerOpenException e) {
+			logger.info("Circuit to read replica {} is open, reading from the primary instead.", endpoint.url);
+		} catch (RestClientException | RuntimeException e) {
+			if (!isConnectionFailure(e)) {
+				throw e;
+			}
+			endpoint.recordFailure(e);
+			logger.info("Read replica {} failed, reading from the primary instead.", endpoint.url);
+		} finally {
+			endpoint.outstanding.decrementAndGet();
+		}
+		return call.apply(primaryUrl);
+	}
+
+	/**
+	 * @return a filter routing requests made with the {@link #READ_BRANCH_ATTRIBUTE} to the replicas, for clients of the given API.
+	 */
+	public ExchangeFilterFunction getFilter(String apiUrl) {
+		if (!hasReplicas() || !withTrailingSlash(apiUrl).equals(primaryUrl)) {
+			return (request, next) -> next.exchange(request);
+		}
+		return this::routeRead;
+	}
+
+	private Mono<ClientResponse> routeRead(ClientRequest request, ExchangeFunction next) {
+		Optional<Object> branchPath = request.attribute(READ_BRANCH_ATTRIBUTE);
+		String url = request.url().toString();
+		if (branchPath.isEmpty() || !url.startsWith(primaryUrl)) {
+			return next.exchange(request);
+		}
+		Optional<AtomicBoolean> servedByReplica = request.attribute(SERVED_BY_REPLICA_ATTRIBUTE).map(AtomicBoolean.class::cast);
+		Mono<ClientResponse> primaryExchange = Mono.defer(() -> {
+			servedByReplica.ifPresent(flag -> flag.set(false));
+			return next.exchange(request);
+		});
+		return Mono.defer(() -> {
+			Endpoint endpoint = choose((String) branchPath.get());
+			if (endpoint == null) {
+				return primaryExchange;
+			}
+			ClientRequest replicaRequest = ClientRequest.from(request)
+					.url(URI.create(endpoint.url + url.substring(primaryUrl.length())))
+					.attribute(API_URL_ATTRIBUTE, endpoint.url)
+					.build();
+			servedByReplica.ifPresent(flag -> flag.set(true));
+			endpoint.outstanding.incrementAndGet();
+			return next.exchange(replicaRequest)
+					.doOnNext(response -> {
+						int status = response.rawStatusCode();
+						if (status >= HTTP_BAD_GATEWAY && status <= HTTP_GATEWAY_TIMEOUT) {
+							endpoint.recordFailure(null);
+						} else {
+							endpoint.recordSuccess();
+						}
+					})
+					.doOnError(e -> {
+						if (e instanceof WebClientRequestException) {
+							endpoint.recordFailure(e);
+						}
+					})
+					.doFinally(signal -> endpoint.outstanding.decrementAndGet())
+					// Nothing was sent to the replica, so the read can go to the primary instead
+					.onErrorResume(CircuitBreakerOpenException.class, e -> primaryExchange);
+		});
+	}
+
+	/**
+	 * @return the healthy replica with the fewest outstanding requests, or null if the primary should be used.
+	 */
+	private Endpoint choose(String branchPath) {
+		if (replicas.isEmpty()) {
+			return null;
+		}
+		long now = System.currentTimeMillis();
+		if (branchPath != null) {
+			Long pinnedUntil = recentlyWrittenBranches.get(branchPath);
+			if (pinnedUntil != null) {
+				if (pinnedUntil > now) {
+					return null;
+				}
+				recentlyWrittenBranches.remove(branchPath, pinnedUntil);
+			}
+		}
+		Endpoint chosen = null;
+		// Start from a random replica so ties are spread evenly
+		int offset = ThreadLocalRandom.current().nextInt(replicas.size());
+		for (int i = 0; i < replicas.size(); i++) {
+			Endpoint endpoint = replicas.get((offset + i) % replicas.size());
+			if (endpoint.isAvailable(now) && (chosen == null || endpoint.outstanding.get() < chosen.outstanding.get())) {
+				chosen = endpoint;
+			}
+		}
+		return chosen;
+	}
+
+	private void checkHealth() {
+		for (Endpoint endpoint : replicas) {
+			try {
+				HttpResponse<Void> response = healthCheckClient.send(HttpRequest.newBuilder(URI.create(endpoint.url + "version"))
+						.timeout(Duration.ofSeconds(10))
+						.GET()
+						.build(), HttpResponse.BodyHandlers.discarding());
+				if (response.statusCode() < 400) {
+					endpoint.recordHealthy();
+				} else {
+					endpoint.eject("health check returned " + response.statusCode());
+				}
+			} catch (IOException e) {
+				endpoint.eject("health check failed: " + e.getMessage());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	private static String withTrailingSlash(String url) {
+		return url.endsWith("/") ? url : url + "/";
+	}
+
+	private static boolean isConnectionFailure(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof IOException || cause instanceof ResourceAccessException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		healthChecker.shutdownNow();
+	}
+
+	public interface ReadCall<T> {
+		T apply(String apiUrl) throws RestClientException;
+	}
+
+	private final class Endpoint {
+
+		private final String url;
+		private final AtomicInteger outstanding = new AtomicInteger();
+		private final AtomicInteger consecutiveFailures = new AtomicInteger();
+		private volatile long ejectedUntil;
+
+		private Endpoint(String url) {
+			this.url = url;
+		}
+
+		private boolean isAvailable(long now) {
+			return ejectedUntil <= now;
+		}
+
+		private void recordSuccess() {
+			consecutiveFailures.set(0);
+		}
+
+		private void recordFailure(Throwable e) {
+			if (consecutiveFailures.incrementAndGet() >= failuresToEject) {
+				eject(e != null ? e.getMessage() : "repeated gateway errors");
+			}
+		}
+
+		private void recordHealthy() {
+			if (ejectedUntil > System.currentTimeMillis()) {
+				logger.info("Read replica {} passed its health check, sending reads to it again.", url);
+			}
+			ejectedUntil = 0;
+			consecutiveFailures.set(0);
+		}
+
+		private void eject(String reason) {
+			if (ejectedUntil <= System.currentTimeMillis()) {
+				logger.warn("Ejecting read replica {} for {} seconds, {}.", url, ejectionMillis / 1_000, reason);
+			}
+			ejectedUntil = System.currentTimeMillis() + ejectionMillis;
+		}
+	}
+}
@@ -16,9 +16,9 @@ import java.util.Map;
 
 public class RestClientHelper {
 
-	public static WebClient getRestClient(String apiUrl, String authenticationCookie, String codecMaxInMemorySize) {
+	public static WebClient getRestClient(HttpClient httpClient, String apiUrl, String codecMaxInMemorySize) {
 		WebClient.Builder builder = WebClient.builder()
-				.clientConnector(new ReactorClientHttpConnector(HttpClient.create().followRedirect(true)))
+				.clientConnector(new ReactorClientHttpConnector(httpClient))
 				.baseUrl(apiUrl)
 				.defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
 				.defaultHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE);
@@ -32,11 +32,18 @@ public class RestClientHelper {
 							.build());
 
 		}
+		return builder.build();
+	}
+
+	/**
+	 * @return a copy of the client which sends the given cookie with every request, sharing the original's connector and codecs.
+	 */
+	public static WebClient withAuthenticationCookie(WebClient webClient, String authenticationCookie) {
 		if (!StringUtils.isEmpty(authenticationCookie) && authenticationCookie.contains("=")) {
 			String[] split = authenticationCookie.split("=");
-			builder.defaultCookie(split[0], split[1]);
+			return webClient.mutate().defaultCookie(split[0], split[1]).build();
 		}
-		return builder.build();
+		return webClient;
 	}
 
 	public static Map<String, String> asMap(String... keyThenValueThenRepeat) {
@@ -2,6 +2,7 @@ package org.ihtsdo.otf.transformationandtemplate.service.client;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
 import org.apache.commons.lang3.StringUtils;
 import org.ihtsdo.otf.exception.TermServerScriptException;
 import org.ihtsdo.otf.rest.client.terminologyserver.pojo.Branch;
@@ -9,17 +10,17 @@ import org.ihtsdo.otf.rest.client.terminologyserver.pojo.ConceptChangeBatchStatu
 import org.ihtsdo.otf.rest.client.terminologyserver.pojo.ConceptPojo;
 import org.ihtsdo.otf.rest.client.terminologyserver.pojo.RefsetMemberPojo;
 import org.ihtsdo.otf.transformationandtemplate.domain.Concept;
-import org.ihtsdo.otf.utils.ExceptionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
-import org.springframework.util.CollectionUtils;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.reactive.function.BodyInserters;
-import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Exceptions;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -27,218 +28,492 @@ import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongFunction;
 import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 public class SnowstormClient {
 	
 	public static final long DEFAULT_TIMEOUT = 180; //seconds
 	public static final long DEFAULT_PAGESIZE = 500;
+	// Quotes and comma around each id in a JSON array, "conceptIds=" and "&" around each id in a query string
+	private static final int BULK_LOAD_ID_OVERHEAD = 3;
+	private static final int CONCEPT_IDS_PARAM_OVERHEAD = 12;
 
 	private static final String DEFAULT_MODULE_ID_METADATA_KEY = "defaultModuleId";
 	private static final String OPTIONAL_LANGUAGE_REFSET_METADATA_KEY = "optionalLanguageRefsets";
-	private static final ParameterizedTypeReference<List<ConceptPojo>> CONCEPT_LIST_TYPE_REF = new ParameterizedTypeReference<>() {};
 	private static final ParameterizedTypeReference<List<ConceptValidationResult>> CONCEPT_VALIDATION_RESULT_TYPE_REF = new ParameterizedTypeReference<>() {};
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
 	private final WebClient webClient;
+	private final BulkJobStatusTracker bulkJobStatusTracker;
+	private final BranchMetadataCache branchMetadataCache;
+	private final ConceptCache conceptCache;
+	private final ValidationResultCache validationResultCache;
+	private final ConceptBatchLoader.Scope conceptBatchLoader;
+	private final ReadReplicaRouter readReplicaRouter;
+	private final int pageFetchConcurrency;
+	private final int bulkLoadMaxRequestBytes;
+	private final int maxQueryLength;
+	private final int eclScanPageSize;
+	private final int eclScanPrefetch;
+	private final int validationChunkSize;
+	private final int validationConcurrency;
 	private final Logger logger = LoggerFactory.getLogger(SnowstormClient.class);
 
-	public static SnowstormClient createClientForUser(String snowstormApiUrl, String authenticationCookie, String codecMaxInMemorySize) {
-		return new SnowstormClient(snowstormApiUrl, authenticationCookie, codecMaxInMemorySize);
+	public static SnowstormClient createClientForUser(WebClient userWebClient, BulkJobStatusTracker bulkJobStatusTracker,
+			BranchMetadataCache branchMetadataCache, ConceptCache conceptCache, ValidationResultCache validationResultCache, ConceptBatchLoader.Scope conceptBatchLoader,
+			ReadReplicaRouter readReplicaRouter, int pageFetchConcurrency, int bulkLoadMaxRequestBytes, int maxQueryLength,
+			int eclScanPageSize, int eclScanPrefetch, int validationChunkSize, int validationConcurrency) {
+		return new SnowstormClient(userWebClient, bulkJobStatusTracker, branchMetadataCache, conceptCache, validationResultCache, conceptBatchLoader, readReplicaRouter,
+				pageFetchConcurrency, bulkLoadMaxRequestBytes, maxQueryLength, eclScanPageSize, eclScanPrefetch, validationChunkSize, validationConcurrency);
 	}
 
-	private SnowstormClient(String snowstormApiUrl, String authenticationCookie, String codecMaxInMemorySize) {
-		webClient = RestClientHelper.getRestClient(snowstormApiUrl, authenticationCookie, codecMaxInMemorySize);
+	private SnowstormClient(WebClient userWebClient, BulkJobStatusTracker bulkJobStatusTracker,
+			BranchMetadataCache branchMetadataCache, ConceptCache conceptCache, ValidationResultCache validationResultCache, ConceptBatchLoader.Scope conceptBatchLoader,
+			ReadReplicaRouter readReplicaRouter, int pageFetchConcurrency, int bulkLoadMaxRequestBytes, int maxQueryLength,
+			int eclScanPageSize, int eclScanPrefetch, int validationChunkSize, int validationConcurrency) {
+		webClient = userWebClient;
+		this.bulkJobStatusTracker = bulkJobStatusTracker;
+		this.branchMetadataCache = branchMetadataCache;
+		this.conceptCache = conceptCache;
+		this.validationResultCache = validationResultCache;
+		this.conceptBatchLoader = conceptBatchLoader;
+		this.readReplicaRouter = readReplicaRouter;
+		this.pageFetchConcurrency = Math.max(1, pageFetchConcurrency);
+		this.bulkLoadMaxRequestBytes = bulkLoadMaxRequestBytes;
+		this.maxQueryLength = maxQueryLength;
+		this.eclScanPageSize = Math.max(1, eclScanPageSize);
+		this.eclScanPrefetch = Math.max(1, eclScanPrefetch);
+		this.validationChunkSize = Math.max(1, validationChunkSize);
+		this.validationConcurrency = Math.max(1, validationConcurrency);
 	}
 
-	public List<ConceptPojo> getFullConcepts(ConceptBulkLoadRequest conceptBulkLoadRequest, String branchPath) {
-		List<ConceptPojo> concepts = webClient.post()
-				.uri(uriBuilder -> uriBuilder
-						.path("/browser/{branch}/concepts/bulk-load")
-						.build(branchPath))
-				.body(BodyInserters.fromValue(conceptBulkLoadRequest))
-				.retrieve()
-				.bodyToMono(CONCEPT_LIST_TYPE_REF)
+	/**
+	 * Streams concepts from the bulk-load endpoint, decoding each element of the response array as it arrives
+	 * so the codec buffer limit applies to a single concept rather than the whole response body.
+	 * Concepts already cached for the current branch head are emitted first and only the rest are requested.
+	 * The cached head may be a little out of date, concepts which are to be changed and saved are loaded with streamCurrentFullConcepts.
+	 */
+	public Flux<ConceptPojo> streamFullConcepts(ConceptBulkLoadRequest conceptBulkLoadRequest, String branchPath) {
+		return getBranchAsync(branchPath)
+				.map(branch -> Optional.ofNullable(ConceptCache.getHeadTimestamp(branch)))
+				.defaultIfEmpty(Optional.empty())
+				.flatMapMany(optionalHeadTimestamp -> {
+					String headTimestamp = optionalHeadTimestamp.orElse(null);
+					List<ConceptPojo> cachedConcepts = new ArrayList<>();
+					List<String> conceptIdsToLoad = new ArrayList<>();
+					for (String conceptId : conceptBulkLoadRequest.getConceptIds()) {
+						ConceptPojo cachedConcept = conceptCache.get(branchPath, headTimestamp, conceptId, ConceptPojo.class);
+						if (cachedConcept != null) {
+							cachedConcepts.add(cachedConcept);
+						} else {
+							conceptIdsToLoad.add(conceptId);
+						}
+					}
+					if (conceptIdsToLoad.isEmpty() && conceptBulkLoadRequest.getDescriptionIds().isEmpty()) {
+						return Flux.fromIterable(cachedConcepts);
+					}
+					return Flux.fromIterable(cachedConcepts)
+							.concatWith(fetchFullConcepts(new ConceptBulkLoadRequest(conceptIdsToLoad, conceptBulkLoadRequest.getDescriptionIds()), branchPath,
+									concept -> conceptCache.put(branchPath, headTimestamp, concept.getConceptId(), concept)));
+				});
+	}
+
+	/**
+	 * Streams concepts as they are on the branch now, from the primary terminology server and without using or filling the concept cache.
+	 * For concepts which have just been saved, or which are about to be changed and saved.
+	 */
+	public Flux<ConceptPojo> streamCurrentFullConcepts(ConceptBulkLoadRequest conceptBulkLoadRequest, String branchPath) {
+		return fetchFullConcepts(conceptBulkLoadRequest, branchPath, null);
+	}
+
+	public List<ConceptPojo> getCurrentFullConcepts(ConceptBulkLoadRequest conceptBulkLoadRequest, String branchPath) {
+		return streamCurrentFullConcepts(conceptBulkLoadRequest, branchPath)
+				.collectList()
+				.doOnNext(concepts -> logger.info("Loaded {} concepts.", concepts.size()))
 				.block();
-		logger.info("Loaded {} concepts.", concepts != null ? concepts.size() : 0);
+	}
+
+	/**
+	 * Large requests are split into chunks of at most bulkLoadMaxRequestBytes, fetched up to pageFetchConcurrency at a time
+	 * and emitted in chunk order.
+	 * @param cache given each concept which came from the primary, a read replica may be behind the branch head so its concepts are not.
+	 * Null to load from the primary only.
+	 */
+	private Flux<ConceptPojo> fetchFullConcepts(ConceptBulkLoadRequest conceptBulkLoadRequest, String branchPath, Consumer<ConceptPojo> cache) {
+		List<ConceptBulkLoadRequest> chunks = new ArrayList<>();
+		for (List<String> conceptIds : chunkByLength(conceptBulkLoadRequest.getConceptIds(), BULK_LOAD_ID_OVERHEAD, bulkLoadMaxRequestBytes)) {
+			chunks.add(ConceptBulkLoadRequest.byConceptId(conceptIds));
+		}
+		for (List<String> descriptionIds : chunkByLength(conceptBulkLoadRequest.getDescriptionIds(), BULK_LOAD_ID_OVERHEAD, bulkLoadMaxRequestBytes)) {
+			chunks.add(ConceptBulkLoadRequest.byDescriptionId(descriptionIds));
+		}
+		if (chunks.size() <= 1) {
+			return chunks.isEmpty() ? Flux.empty() : fetchFullConceptsChunk(chunks.get(0), branchPath, cache);
+		}
+		logger.info("Loading {} concepts and descriptions in {} requests.",
+				conceptBulkLoadRequest.getConceptIds().size() + conceptBulkLoadRequest.getDescriptionIds().size(), chunks.size());
+		Flux<ConceptPojo> concepts = Flux.fromIterable(chunks)
+				.flatMapSequential(chunk -> fetchFullConceptsChunk(chunk, branchPath, cache), pageFetchConcurrency);
+		if (!conceptBulkLoadRequest.getConceptIds().isEmpty() && !conceptBulkLoadRequest.getDescriptionIds().isEmpty()) {
+			// A concept may be requested both by its id and one of its descriptions, a single request only returns it once
+			concepts = concepts.distinct(ConceptPojo::getConceptId);
+		}
 		return concepts;
 	}
-	
+
+	private Flux<ConceptPojo> fetchFullConceptsChunk(ConceptBulkLoadRequest conceptBulkLoadRequest, String branchPath, Consumer<ConceptPojo> cache) {
+		return Flux.defer(() -> {
+			WebClient.RequestBodySpec request = webClient.post()
+					.uri(uriBuilder -> uriBuilder
+							.path("/browser/{branch}/concepts/bulk-load")
+							.build(branchPath));
+			if (cache == null) {
+				return request
+						.body(BodyInserters.fromValue(conceptBulkLoadRequest))
+						.retrieve()
+						.bodyToFlux(ConceptPojo.class);
+			}
+			AtomicBoolean servedByReplica = new AtomicBoolean();
+			return request
+					.attribute(ReadReplicaRouter.READ_BRANCH_ATTRIBUTE, branchPath)
+					.attribute(ReadReplicaRouter.SERVED_BY_REPLICA_ATTRIBUTE, servedByReplica)
+					.body(BodyInserters.fromValue(conceptBulkLoadRequest))
+					.retrieve()
+					.bodyToFlux(ConceptPojo.class)
+					.doOnNext(concept -> {
+						if (!servedByReplica.get()) {
+							cache.accept(concept);
+						}
+					});
+		});
+	}
+
+	public Mono<List<ConceptPojo>> getFullConceptsAsync(ConceptBulkLoadRequest conceptBulkLoadRequest, String branchPath) {
+		return streamFullConcepts(conceptBulkLoadRequest, branchPath)
+				.collectList()
+				.doOnNext(concepts -> logger.info("Loaded {} concepts.", concepts.size()));
+	}
+
+	public List<ConceptPojo> getFullConcepts(ConceptBulkLoadRequest conceptBulkLoadRequest, String branchPath) {
+		return getFullConceptsAsync(conceptBulkLoadRequest, branchPath).block();
+	}
+
+	/**
+	 * Single concept lookups on the same branch are merged with any others made at about the same time, by the same user
+	 * and workload, into one bulk-load.
+	 */
+	public Mono<ConceptPojo> getFullConceptAsync(String branchPath, String conceptId) {
+		return conceptBatchLoader.load(branchPath, conceptId, conceptIds -> streamFullConcepts(ConceptBulkLoadRequest.byConceptId(conceptIds), branchPath))
+				.switchIfEmpty(Mono.error(() -> new TermServerScriptException("Concept " + conceptId + " not found on branch " + branchPath)));
+	}
+
 	public ConceptPojo getFullConcept(String branchPath, String conceptId) {
-		return webClient.get()
-				.uri(uriBuilder -> uriBuilder
-						.path("browser/{branch}/concepts/{conceptId}")
-						.build(branchPath, conceptId))
-				.retrieve()
-				.bodyToMono(ConceptPojo.class)
-				.block(Duration.of(DEFAULT_TIMEOUT, ChronoUnit.SECONDS));
+		return getFullConceptAsync(branchPath, conceptId).block(Duration.of(DEFAULT_TIMEOUT, ChronoUnit.SECONDS));
 	}
-	
+
+	public Mono<ConceptChangeBatchStatus> saveUpdateConceptsNoValidationAsync(Collection<ConceptPojo> conceptPojos, String branchPath) {
+		return Mono.defer(() -> {
+			logger.info("Saving {} concepts.", conceptPojos.size());
+			return webClient.post()
+					.uri(uriBuilder -> uriBuilder
+							.path("/browser/{branch}/concepts/bulk")
+							.build(branchPath))
+					.body(BodyInserters.fromValue(conceptPojos))
+					.retrieve()
+					.toBodilessEntity();
+		}).flatMap(bulkUpdateResponse -> {
+			String locationHeader = bulkUpdateResponse.getHeaders().getFirst(HttpHeaders.LOCATION);
+			logger.info("Bulk update job url: {}", locationHeader);
+
+			return bulkJobStatusTracker.track(webClient, locationHeader, conceptPojos.size());
+		}).transform(write -> onBranchWritten(branchPath, write));
+	}
+
 	public ConceptChangeBatchStatus saveUpdateConceptsNoValidation(Collection<ConceptPojo> conceptPojos, String branchPath) throws TimeoutException {
-		logger.info("Saving {} concepts.", conceptPojos.size());
-		ClientResponse bulkUpdateResponse = webClient.post()
-				.uri(uriBuilder -> uriBuilder
-						.path("/browser/{branch}/concepts/bulk")
-						.build(branchPath))
-				.body(BodyInserters.fromValue(conceptPojos))
-				.exchange()
-				.block();
-		String locationHeader = bulkUpdateResponse.headers().header("Location").get(0);
-		logger.info("Bulk update job url: {}", locationHeader);
+		return blockOrThrowTimeout(saveUpdateConceptsNoValidationAsync(conceptPojos, branchPath));
+	}
 
-		int maxWaitSeconds = conceptPojos.size() * 10_000;
-		return getBatchStatus(locationHeader, maxWaitSeconds);
+	public Mono<String> getDefaultModuleIdAsync(String branchPath) {
+		return getBranchAsync(branchPath)
+				.flatMap(branch -> Mono.justOrEmpty(getMetadataString(branch, DEFAULT_MODULE_ID_METADATA_KEY)));
 	}
 
 	public String getDefaultModuleId(String branchPath) {
-		String defaultModuleId;// Get branch metadata
-		Branch branch = getBranch(branchPath);
-		defaultModuleId = getMetadataString(branch, DEFAULT_MODULE_ID_METADATA_KEY);
-		return defaultModuleId;
+		return getDefaultModuleIdAsync(branchPath).block();
+	}
+
+	public Mono<List<String>> getOptionalLanguageRefsetsAsync(String branchPath) {
+		return getBranchAsync(branchPath)
+				.<List<String>>map(branch -> {
+					if (branch.getMetadata() != null && branch.getMetadata().containsKey(OPTIONAL_LANGUAGE_REFSET_METADATA_KEY)) {
+						Collection<OptionalLanguageRefset> optionalLanguageRefsets = OBJECT_MAPPER.convertValue(branch.getMetadata().get(OPTIONAL_LANGUAGE_REFSET_METADATA_KEY), new TypeReference<>(){});
+						return optionalLanguageRefsets.stream().map(OptionalLanguageRefset::getRefsetId).collect(Collectors.toList());
+					}
+					return Collections.<String>emptyList();
+				})
+				.defaultIfEmpty(Collections.emptyList());
 	}
 
 	public List<String> getOptionalLanguageRefsets(String branchPath) {
-		Branch branch = getBranch(branchPath);
-		if (branch != null && branch.getMetadata() != null && branch.getMetadata().containsKey(OPTIONAL_LANGUAGE_REFSET_METADATA_KEY)) {
-			Collection<OptionalLanguageRefset> optionalLanguageRefsets = new ObjectMapper().convertValue(branch.getMetadata().get(OPTIONAL_LANGUAGE_REFSET_METADATA_KEY), new TypeReference<>(){});
-			return optionalLanguageRefsets.stream().map(OptionalLanguageRefset::getRefsetId).collect(Collectors.toList());
-		}
-		return Collections.emptyList();
+		return getOptionalLanguageRefsetsAsync(branchPath).block();
 	}
 
 	private String getMetadataString(Branch branch, String key) {
 		return branch != null && branch.getMetadata() != null && branch.getMetadata().containsKey(key) ? (String) branch.getMetadata().get(key) : null;
 	}
 
-	public Branch getBranch(String branchPath) {
+	public Mono<Branch> getBranchAsync(String branchPath) {
+		return branchMetadataCache.getBranch(branchPath, () -> fetchBranch(branchPath));
+	}
+
+	private Mono<Branch> fetchBranch(String branchPath) {
 		return webClient.get()
 				.uri(uriBuilder -> uriBuilder
 						.path("/branches/{branch}")
 						.queryParam("includeInheritedMetadata", true)
 						.build(branchPath))
 				.retrieve()
-				.bodyToMono(Branch.class)
-				.block();
+				.bodyToMono(Branch.class);
+	}
+
+	public Branch getBranch(String branchPath) {
+		return getBranchAsync(branchPath).block();
+	}
+
+	public Mono<ConceptChangeBatchStatus> getBatchStatusAsync(String locationHeader, int maxWaitSeconds) {
+		return bulkJobStatusTracker.track(webClient, locationHeader, Duration.ofSeconds(maxWaitSeconds));
 	}
 
 	public ConceptChangeBatchStatus getBatchStatus(String locationHeader, int maxWaitSeconds) throws TimeoutException {
-		int waitSeconds = 0;
-		while (waitSeconds < maxWaitSeconds) {
-			ConceptChangeBatchStatus latestBatchStatus = webClient.get()
-					.uri(locationHeader)
-					.retrieve()
-					.bodyToMono(ConceptChangeBatchStatus.class)
-					.block();
-			ConceptChangeBatchStatus.Status status = latestBatchStatus.getStatus();
-			if (status != ConceptChangeBatchStatus.Status.RUNNING) {
-				return latestBatchStatus;
-			}
-			try {
-				waitSeconds++;
-				Thread.sleep(1_000);
-			} catch (InterruptedException e) {
-				logger.warn("Interrupted while polling batch status.", e);
-			}
-		}
-		throw new TimeoutException("Batch change exceeded maximum duration.");
+		return blockOrThrowTimeout(getBatchStatusAsync(locationHeader, maxWaitSeconds));
 	}
 
-	public List<ConceptValidationResult> runValidation(String branchPath, Collection<ConceptPojo> concepts) {
-		logger.info("Validating {} concepts.", concepts.size());
-		return webClient.post()
+	/**
+	 * Concepts already validated in the same state, against the branch at the same head timestamp, get their cached results
+	 * and only the rest are sent to the terminology server. The head is always fetched, a cached one could be from before a change
+	 * made elsewhere.
+	 */
+	public Mono<List<ConceptValidationResult>> runValidationAsync(String branchPath, Collection<ConceptPojo> concepts) {
+		return branchMetadataCache.refreshBranch(branchPath, () -> fetchBranch(branchPath))
+				.map(branch -> Optional.ofNullable(ConceptCache.getHeadTimestamp(branch)))
+				.defaultIfEmpty(Optional.empty())
+				.flatMap(optionalHeadTimestamp -> {
+					String headTimestamp = optionalHeadTimestamp.orElse(null);
+					List<ConceptValidationResult> validationResults = new ArrayList<>();
+					List<ConceptPojo> conceptsToValidate = new ArrayList<>();
+					Map<ConceptPojo, String> conceptHashesToValidate = new IdentityHashMap<>();
+					for (ConceptPojo concept : concepts) {
+						String conceptHash = validationResultCache.hash(concept);
+						List<ConceptValidationResult> cachedResults = validationResultCache.get(branchPath, headTimestamp, conceptHash);
+						if (cachedResults != null) {
+							validationResults.addAll(cachedResults);
+						} else {
+							conceptsToValidate.add(concept);
+							conceptHashesToValidate.put(concept, conceptHash);
+						}
+					}
+					if (conceptsToValidate.isEmpty()) {
+						logger.info("Validation results of all {} concepts found in the cache.", concepts.size());
+						return Mono.just(validationResults);
+					}
+					return validateConcepts(branchPath, conceptsToValidate, (chunk, chunkResults) -> {
+								Map<String, List<ConceptValidationResult>> chunkResultsByConceptId = new HashMap<>();
+								for (ConceptValidationResult validationResult : chunkResults) {
+									chunkResultsByConceptId.computeIfAbsent(validationResult.getConceptId(), conceptId -> new ArrayList<>()).add(validationResult);
+								}
+								// Concepts without results are cached too, a clean concept is the most common result
+								for (ConceptPojo concept : chunk) {
+									validationResultCache.put(branchPath, headTimestamp, conceptHashesToValidate.get(concept),
+											chunkResultsByConceptId.getOrDefault(concept.getConceptId(), Collections.emptyList()));
+								}
+							})
+							.map(newResults -> {
+								validationResults.addAll(newResults);
+								return validationResults;
+							});
+				});
+	}
+
+	/**
+	 * Large batches are validated in chunks of at most validationChunkSize concepts, validationConcurrency chunks at a time,
+	 * and the results of all chunks returned together. If one chunk fails, or the subscriber goes away, for example
+	 * the waiting job times out or is interrupted, the outstanding chunks are cancelled.
+	 * @param cache given each chunk validated by the primary with its results, a read replica may be behind the branch head so its results are not.
+	 */
+	private Mono<List<ConceptValidationResult>> validateConcepts(String branchPath, List<ConceptPojo> concepts,
+			BiConsumer<List<ConceptPojo>, List<ConceptValidationResult>> cache) {
+		return Flux.fromIterable(Lists.partition(concepts, validationChunkSize))
+				.flatMap(chunk -> validateChunk(branchPath, chunk, cache), validationConcurrency)
+				.flatMapIterable(Function.identity())
+				.collectList();
+	}
+
+	private Mono<List<ConceptValidationResult>> validateChunk(String branchPath, List<ConceptPojo> concepts,
+			BiConsumer<List<ConceptPojo>, List<ConceptValidationResult>> cache) {
+		return Mono.defer(() -> {
+			logger.info("Validating {} concepts.", concepts.size());
+			AtomicBoolean servedByReplica = new AtomicBoolean();
+			return webClient.post()
 					.uri(uriBuilder -> uriBuilder
 							.path("/browser/{branch}/validate/concepts")
 							.build(branchPath))
+					.attribute(ReadReplicaRouter.READ_BRANCH_ATTRIBUTE, branchPath)
+					.attribute(ReadReplicaRouter.SERVED_BY_REPLICA_ATTRIBUTE, servedByReplica)
 					.body(BodyInserters.fromValue(concepts))
 					.retrieve()
 					.bodyToMono(CONCEPT_VALIDATION_RESULT_TYPE_REF)
-					.block();
+					.doOnNext(results -> {
+						if (!servedByReplica.get()) {
+							cache.accept(concepts, results);
+						}
+					});
+		});
+	}
+
+	public List<ConceptValidationResult> runValidation(String branchPath, Collection<ConceptPojo> concepts) {
+		return runValidationAsync(branchPath, concepts).block();
+	}
+
+	public Mono<Void> createBranchAsync(String branchPath) {
+		return Mono.defer(() -> {
+			logger.info("Creating branch {}.", branchPath);
+			int i = branchPath.lastIndexOf("/");
+			String name = branchPath.substring(i + 1);
+			String parent = branchPath.substring(0, i);
+			return webClient.post()
+					.uri(uriBuilder -> uriBuilder
+							.path("/branches")
+							.build(branchPath))
+					.body(BodyInserters.fromValue(RestClientHelper.asMap("name", name, "parent", parent)))
+					.retrieve()
+					.bodyToMono(Map.class)
+					.then();
+		}).transform(write -> onBranchWritten(branchPath, write));
 	}
 
 	public void createBranch(String branchPath) {
-		logger.info("Creating branch {}.", branchPath);
-		int i = branchPath.lastIndexOf("/");
-		String name = branchPath.substring(i + 1);
-		String parent = branchPath.substring(0, i);
-		webClient.post()
-				.uri(uriBuilder -> uriBuilder
-						.path("/branches")
-						.build(branchPath))
-				.body(BodyInserters.fromValue(RestClientHelper.asMap("name", name, "parent", parent)))
-				.retrieve()
-				.bodyToMono(Map.class)
-				.block(Duration.of(DEFAULT_TIMEOUT, ChronoUnit.SECONDS));
+		createBranchAsync(branchPath).block(Duration.of(DEFAULT_TIMEOUT, ChronoUnit.SECONDS));
+	}
+
+	/**
+	 * Signals the write's outcome only once the branch has been marked as written, so whatever the caller does next sees the write.
+	 * A write which fails or is cancelled may still have changed the branch, so is treated the same.
+	 */
+	private <T> Mono<T> onBranchWritten(String branchPath, Mono<T> write) {
+		return write
+				.doOnSuccess(result -> onBranchWritten(branchPath))
+				.doOnError(e -> onBranchWritten(branchPath))
+				.doOnCancel(() -> onBranchWritten(branchPath));
+	}
+
+	/**
+	 * Branch metadata is fetched again, and reads stay on the primary until the read replicas have caught up.
+	 */
+	private void onBranchWritten(String branchPath) {
+		branchMetadataCache.evictBranch(branchPath);
+		readReplicaRouter.recordWrite(branchPath);
+	}
+
+	/**
+	 * Blocks on the given publisher, rethrowing a {@link TimeoutException} signalled while polling the terminology server
+	 * as the checked exception callers of the blocking methods expect.
+	 */
+	public static <T> T blockOrThrowTimeout(Mono<T> mono) throws TimeoutException {
+		try {
+			return mono.block();
+		} catch (RuntimeException e) {
+			Throwable cause = Exceptions.unwrap(e);
+			if (cause instanceof TimeoutException) {
+				throw (TimeoutException) cause;
+			}
+			throw e;
+		}
 	}
 	
 
-	public List<Concept> getParents(String branchPath, String conceptId) {
-		return Arrays.asList(webClient.get()
+	public Mono<List<Concept>> getParentsAsync(String branchPath, String conceptId) {
+		return webClient.get()
 				.uri(uriBuilder -> uriBuilder
 						.path("/browser/{branch}/concepts/{sctId}/parents")
 						.queryParam("form", "inferred")
 						.build(branchPath, conceptId))
+				.attribute(ReadReplicaRouter.READ_BRANCH_ATTRIBUTE, branchPath)
 				.retrieve()
 				.bodyToMono(Concept[].class)
-				.block(Duration.of(DEFAULT_TIMEOUT, ChronoUnit.SECONDS)));
+				.map(Arrays::asList);
 	}
-	
-	public List<Concept> getChildren(String branchPath, String conceptId) {
-		return Arrays.asList(webClient.get()
+
+	public List<Concept> getParents(String branchPath, String conceptId) {
+		return getParentsAsync(branchPath, conceptId).block(Duration.of(DEFAULT_TIMEOUT, ChronoUnit.SECONDS));
+	}
+
+	public Mono<List<Concept>> getChildrenAsync(String branchPath, String conceptId) {
+		return webClient.get()
 				.uri(uriBuilder -> uriBuilder
 						.path("/browser/{branch}/concepts/{sctId}/children")
 						.queryParam("form", "inferred")
 						.build(branchPath, conceptId))
+				.attribute(ReadReplicaRouter.READ_BRANCH_ATTRIBUTE, branchPath)
 				.retrieve()
 				.bodyToMono(Concept[].class)
-				.block(Duration.of(DEFAULT_TIMEOUT, ChronoUnit.SECONDS)));
+				.map(Arrays::asList);
 	}
 
-	public List<Concept> getAncestors(String branchPath, String conceptId) {
-		return Arrays.asList(webClient.get()
+	public List<Concept> getChildren(String branchPath, String conceptId) {
+		return getChildrenAsync(branchPath, conceptId).block(Duration.of(DEFAULT_TIMEOUT, ChronoUnit.SECONDS));
+	}
+
+	public Mono<List<Concept>> getAncestorsAsync(String branchPath, String conceptId) {
+		return webClient.get()
 				.uri(uriBuilder -> uriBuilder
 						.path("/browser/{branch}/concepts/{sctId}/ancestors")
 						.queryParam("inferred", "inferred")
 						.build(branchPath, conceptId))
+				.attribute(ReadReplicaRouter.READ_BRANCH_ATTRIBUTE, branchPath)
 				.retrieve()
 				.bodyToMono(Concept[].class)
-				.block(Duration.of(DEFAULT_TIMEOUT, ChronoUnit.SECONDS)));
+				.map(Arrays::asList);
+	}
+
+	public List<Concept> getAncestors(String branchPath, String conceptId) {
+		return getAncestorsAsync(branchPath, conceptId).block(Duration.of(DEFAULT_TIMEOUT, ChronoUnit.SECONDS));
 	}
 	
 
+	public Mono<RefsetMemberPojo> createRefsetMemberAsync(String branchPath, RefsetMemberPojo rm) {
+		return webClient.post()
+				.uri(uriBuilder -> uriBuilder
+						.path("{branch}/members")
+						.build(branchPath))
+				.body(Mono.just(rm), RefsetMemberPojo.class)
+				.retrieve()
+				.onStatus(HttpStatus::isError, response -> response.bodyToMono(String.class)
+						.flatMap(error -> Mono.error(new TermServerScriptException("Failed to create member: " + rm + " due to "+ error)))
+				)
+				// Throttled and unavailable responses are retried by the shared client, anything else will fail again
+				.bodyToMono(RefsetMemberPojo.class)
+				.transform(write -> onBranchWritten(branchPath, write));
+	}
+
 	public RefsetMemberPojo createRefsetMember(String branchPath, RefsetMemberPojo rm) {
-		int attempts = 0;
-		while (true) {
-			try {
-				return webClient.post()
-					.uri(uriBuilder -> uriBuilder
-							.path("{branch}/members")
-							.build(branchPath))
-					.body(Mono.just(rm), RefsetMemberPojo.class)
-					.retrieve()
-					.onStatus(HttpStatus::isError, response -> response.bodyToMono(String.class) 
-							.flatMap(error -> Mono.error(new TermServerScriptException("Failed to create member: " + rm + " due to "+ error)))
-					)
-					.bodyToMono(RefsetMemberPojo.class)
-					.block(Duration.of(DEFAULT_TIMEOUT, ChronoUnit.SECONDS));
-			} catch (Exception e) {
-				//TODO differentiate handling for errors which should be retried (eg 429)
-				//vs those that won't work no matter how many times we try (eg 400)
-				attempts++;
-				if (attempts > 3) {
-					throw new IllegalStateException("Failed to create refset member", e);
-				}
-				logger.warn(ExceptionUtils.getExceptionCause("Failed to create " + rm, e));
-				logger.warn("Sleeping 30 seconds and trying again.");
-				try {
-					Thread.sleep(1000*30);
-				} catch (Exception e2) {}
-			}
+		try {
+			return createRefsetMemberAsync(branchPath, rm).block();
+		} catch (RuntimeException e) {
+			throw new IllegalStateException("Failed to create refset member", Exceptions.unwrap(e));
 		}
 	}
 
-	public RefsetMemberPojo updateRefsetMember(String branchPath, RefsetMemberPojo rm) throws TermServerScriptException {
+	public Mono<RefsetMemberPojo> updateRefsetMemberAsync(String branchPath, RefsetMemberPojo rm) {
 		if (StringUtils.isEmpty(rm.getId())) {
-			throw new TermServerScriptException("Request to update Refset Member without a uuid! " + rm);
+			return Mono.error(new TermServerScriptException("Request to update Refset Member without a uuid! " + rm));
 		}
 		return webClient.put()
 		.uri(uriBuilder -> uriBuilder
@@ -250,14 +525,21 @@ public class SnowstormClient {
 				.flatMap(error -> Mono.error(new TermServerScriptException("Failed to updated member: " + rm + " due to "+ error)))
 		)
 		.bodyToMono(RefsetMemberPojo.class)
-		.block(Duration.of(DEFAULT_TIMEOUT, ChronoUnit.SECONDS));
+		.transform(write -> onBranchWritten(branchPath, write));
 	}
-	
-	public void deleteRefsetMember(String branchPath, RefsetMemberPojo rm) throws TermServerScriptException {
+
+	public RefsetMemberPojo updateRefsetMember(String branchPath, RefsetMemberPojo rm) throws TermServerScriptException {
 		if (StringUtils.isEmpty(rm.getId())) {
 			throw new TermServerScriptException("Request to update Refset Member without a uuid! " + rm);
 		}
-		webClient.delete()
+		return updateRefsetMemberAsync(branchPath, rm).block(Duration.of(DEFAULT_TIMEOUT, ChronoUnit.SECONDS));
+	}
+
+	public Mono<Void> deleteRefsetMemberAsync(String branchPath, RefsetMemberPojo rm) {
+		if (StringUtils.isEmpty(rm.getId())) {
+			return Mono.error(new TermServerScriptException("Request to update Refset Member without a uuid! " + rm));
+		}
+		return webClient.delete()
 		.uri(uriBuilder -> uriBuilder
 				.path("{branch}/members/{uuid}")
 				.build(branchPath, rm.getId()))
@@ -266,37 +548,113 @@ public class SnowstormClient {
 				.flatMap(error -> Mono.error(new TermServerScriptException("Failed to delete member: " + error)))
 		)
 		.bodyToMono(Void.class)
-		.block(Duration.of(DEFAULT_TIMEOUT, ChronoUnit.SECONDS));
+		.transform(write -> onBranchWritten(branchPath, write));
+	}
+
+	public void deleteRefsetMember(String branchPath, RefsetMemberPojo rm) throws TermServerScriptException {
+		if (StringUtils.isEmpty(rm.getId())) {
+			throw new TermServerScriptException("Request to update Refset Member without a uuid! " + rm);
+		}
+		deleteRefsetMemberAsync(branchPath, rm).block(Duration.of(DEFAULT_TIMEOUT, ChronoUnit.SECONDS));
+	}
+
+	/**
+	 * Creates or updates all the given members in a single bulk change job and waits for it to finish.
+	 * Members without an id are given one first, so callers can refer to what they created whatever the outcome.
+	 */
+	public Mono<ConceptChangeBatchStatus> saveRefsetMembersAsync(String branchPath, Collection<RefsetMemberPojo> members) {
+		return Mono.defer(() -> {
+			logger.info("Saving {} refset members.", members.size());
+			members.stream()
+					.filter(rm -> StringUtils.isEmpty(rm.getId()))
+					.forEach(rm -> rm.setId(UUID.randomUUID().toString()));
+			return webClient.post()
+					.uri(uriBuilder -> uriBuilder
+							.path("{branch}/members/bulk")
+							.build(branchPath))
+					.body(BodyInserters.fromValue(members))
+					.retrieve()
+					.onStatus(HttpStatus::isError, response -> response.bodyToMono(String.class)
+							.flatMap(error -> Mono.error(new TermServerScriptException("Failed to save " + members.size() + " members due to " + error)))
+					)
+					.toBodilessEntity();
+		}).flatMap(bulkUpdateResponse -> {
+			String locationHeader = bulkUpdateResponse.getHeaders().getFirst(HttpHeaders.LOCATION);
+			logger.info("Bulk member update job url: {}", locationHeader);
+
+			// Member jobs report the same status and message as concept jobs
+			return bulkJobStatusTracker.track(webClient, locationHeader, members.size());
+		}).transform(write -> onBranchWritten(branchPath, write));
+	}
+
+	public ConceptChangeBatchStatus saveRefsetMembers(String branchPath, Collection<RefsetMemberPojo> members) throws TimeoutException {
+		return blockOrThrowTimeout(saveRefsetMembersAsync(branchPath, members));
+	}
+
+	public Mono<Void> deleteRefsetMembersAsync(String branchPath, Collection<RefsetMemberPojo> members) {
+		return Mono.defer(() -> {
+			logger.info("Deleting {} refset members.", members.size());
+			Set<String> memberIds = members.stream().map(RefsetMemberPojo::getId).collect(Collectors.toSet());
+			return webClient.method(HttpMethod.DELETE)
+					.uri(uriBuilder -> uriBuilder
+							.path("{branch}/members")
+							.build(branchPath))
+					.body(BodyInserters.fromValue(Collections.singletonMap("memberIds", memberIds)))
+					.retrieve()
+					.onStatus(HttpStatus::isError, response -> response.bodyToMono(String.class)
+							.flatMap(error -> Mono.error(new TermServerScriptException("Failed to delete " + memberIds.size() + " members due to " + error)))
+					)
+					.bodyToMono(Void.class);
+		}).transform(write -> onBranchWritten(branchPath, write));
+	}
+
+	public void deleteRefsetMembers(String branchPath, Collection<RefsetMemberPojo> members) {
+		deleteRefsetMembersAsync(branchPath, members).block(Duration.of(DEFAULT_TIMEOUT, ChronoUnit.SECONDS));
+	}
+
+	public Flux<RefsetMemberPojo> getRefsetMembersAsync(String branchPath, MultiValueMap<String, String> queryParamMap) {
+		return fetchOffsetPages(offset -> fetchRefsetMemberPage(branchPath, queryParamMap, offset));
 	}
 
 	public List<RefsetMemberPojo> getRefsetMembers(String branchPath, MultiValueMap<String, String> queryParamMap, boolean isPOST) {
-		long currentOffset = 0;
-		return fetchRefsetMemberPage(branchPath, queryParamMap, currentOffset)
-				.expand(response -> {
-					long expected = response.getTotal();
-					long totalReceived = response.getOffset() + response.getItems().size();
-					if (totalReceived >= expected) {
-						return Mono.empty();
-					}
-					return fetchRefsetMemberPage(branchPath, queryParamMap, totalReceived);
-				}).flatMap(response -> Flux.fromIterable(response.getItems())).collectList()
+		return getRefsetMembersAsync(branchPath, queryParamMap).collectList()
 				.block(Duration.of(DEFAULT_TIMEOUT, ChronoUnit.SECONDS));
 	}
-	
+
+	public Flux<RefsetMemberPojo> getRefsetMembersAsync(String branchPath, MemberSearchRequest memberSearchRequest) {
+		return fetchOffsetPages(offset -> fetchRefsetMemberPage(branchPath, memberSearchRequest, offset));
+	}
+
 	public List<RefsetMemberPojo> getRefsetMembers(String branchPath, MemberSearchRequest memberSearchRequest, boolean isPOST) {
-		long currentOffset = 0;
-		return fetchRefsetMemberPage(branchPath, memberSearchRequest, currentOffset)
-				.expand(response -> {
-					long expected = response.getTotal();
-					long totalReceived = response.getOffset() + response.getItems().size();
-					if (totalReceived >= expected) {
-						return Mono.empty();
-					}
-					return fetchRefsetMemberPage(branchPath, memberSearchRequest, totalReceived);
-				}).flatMap(response -> Flux.fromIterable(response.getItems())).collectList()
+		return getRefsetMembersAsync(branchPath, memberSearchRequest).collectList()
 				.block(Duration.of(DEFAULT_TIMEOUT, ChronoUnit.SECONDS));
 	}
 
+	/**
+	 * Fetches all pages of an offset based endpoint. The first page tells us the total, after which the remaining
+	 * offsets are requested concurrently, up to pageFetchConcurrency at a time, and emitted in offset order.
+	 */
+	private <T> Flux<T> fetchOffsetPages(LongFunction<Mono<? extends OffsetPage<T>>> pageFetcher) {
+		return pageFetcher.apply(0).flatMapMany(firstPage -> {
+			List<T> firstItems = firstPage.getItems() != null ? firstPage.getItems() : Collections.emptyList();
+			long total = firstPage.getTotal() != null ? firstPage.getTotal() : firstItems.size();
+			// Step by what the server actually returned in case it caps the page size below our limit
+			long pageSize = firstItems.size();
+			if (pageSize == 0 || pageSize >= total) {
+				return Flux.fromIterable(firstItems);
+			}
+			return Flux.fromIterable(firstItems)
+					.concatWith(Flux.fromStream(LongStream.iterate(pageSize, offset -> offset < total, offset -> offset + pageSize).boxed())
+							.flatMapSequential(pageFetcher::apply, pageFetchConcurrency)
+							.flatMapIterable(page -> page.getItems() != null ? page.getItems() : Collections.emptyList()));
+		});
+	}
+
+	private interface OffsetPage<T> {
+		List<T> getItems();
+		Long getTotal();
+	}
+
 	private Mono<RefsetMemberPage> fetchRefsetMemberPage(String branchPath, MultiValueMap<String, String> queryParams, long currentOffset) {
 		logger.info("Requesting members from " + branchPath + " with parameters " + queryParams + " and offset " + currentOffset);
 		return webClient.get()
@@ -306,6 +664,7 @@ public class SnowstormClient {
 						.queryParam("offset", currentOffset)
 						.queryParam("limit", DEFAULT_PAGESIZE)
 						.build(branchPath))
+				.attribute(ReadReplicaRouter.READ_BRANCH_ATTRIBUTE, branchPath)
 				.retrieve()
 				.bodyToMono(RefsetMemberPage.class);
 	}
@@ -318,6 +677,7 @@ public class SnowstormClient {
 						.queryParam("offset", currentOffset)
 						.queryParam("limit", DEFAULT_PAGESIZE)
 						.build(branchPath))
+				.attribute(ReadReplicaRouter.READ_BRANCH_ATTRIBUTE, branchPath)
 				.bodyValue(memberSearchRequest)
 				.retrieve()
 				.bodyToMono(RefsetMemberPage.class);
@@ -359,22 +719,49 @@ public class SnowstormClient {
 		return getRefsetMembers(branchPath, memberSearchRequest, true);
 	}
 
+	/**
+	 * Streams the pages of concepts matching the filters, any of which may be null, following searchAfter from page to page.
+	 * Pages are only requested as they are consumed, at most eclScanPrefetch ahead, so memory use does not grow with the
+	 * number of matches. Cancel the subscription, e.g. with take or takeWhile, to stop early.
+	 */
+	public Flux<ConceptPage> scanConceptPages(String branchPath, Boolean isActive, Boolean isUpdated, Boolean isPublished, String ecl, String termFilter) {
+		return Flux.defer(() -> {
+			AtomicLong received = new AtomicLong();
+			AtomicReference<String> requestedSearchAfter = new AtomicReference<>();
+			return fetchConceptPage(branchPath, isActive, isUpdated, isPublished, ecl, termFilter, null, eclScanPageSize)
+					.expand(page -> {
+						long receivedSoFar = received.addAndGet(page.getItems() != null ? page.getItems().size() : 0);
+						String searchAfter = page.getSearchAfter();
+						// The end is an empty page, no searchAfter, the same searchAfter handed back again, or everything counted
+						if (page.getItems() == null || page.getItems().isEmpty() || searchAfter == null
+								|| searchAfter.equals(requestedSearchAfter.getAndSet(searchAfter))
+								|| (page.getTotal() != null && receivedSoFar >= page.getTotal())) {
+							return Mono.empty();
+						}
+						return fetchConceptPage(branchPath, isActive, isUpdated, isPublished, ecl, termFilter, searchAfter, eclScanPageSize);
+					})
+					.limitRate(eclScanPrefetch);
+		});
+	}
+
+	/**
+	 * Streams the concepts matching the filters, see {@link #scanConceptPages}.
+	 */
+	public Flux<Concept> scanConcepts(String branchPath, Boolean isActive, Boolean isUpdated, Boolean isPublished, String ecl, String termFilter) {
+		return scanConceptPages(branchPath, isActive, isUpdated, isPublished, ecl, termFilter)
+				.flatMapIterable(page -> page.getItems() != null ? page.getItems() : Collections.emptyList(), eclScanPrefetch);
+	}
+
+	public Flux<Concept> conceptsByECLAsync(String branchPath, String ecl) {
+		return scanConcepts(branchPath, null, null, null, ecl, null);
+	}
+
 	public List<Concept> conceptsByECL(String branchPath, String ecl) {
-		String searchAfter = null;
-		return fetchConceptPage(branchPath, null, null, null, ecl, null, searchAfter)
-				.expand(response -> {
-					//Once we see the same searchAfter twice, we've reached the end
-					//Or if we got enough in a single page
-					if (response.getTotal() == response.getItems().size() ||
-							response.searchAfter == searchAfter) {
-						return Mono.empty();
-					}
-					return fetchConceptPage(branchPath, null, null, null, ecl, null, response.getSearchAfter());
-				}).flatMap(response -> Flux.fromIterable(response.getItems())).collectList()
+		return conceptsByECLAsync(branchPath, ecl).collectList()
 				.block(Duration.of(DEFAULT_TIMEOUT, ChronoUnit.SECONDS));
 	}
 
-	public static final class RefsetMemberPage {
+	public static final class RefsetMemberPage implements OffsetPage<RefsetMemberPojo> {
 		List<RefsetMemberPojo> items;
 		Long total;
 		Long limit;
@@ -406,32 +793,21 @@ public class SnowstormClient {
 		}
 	}
 	
+	public Flux<Concept> findNewConceptsAsync(String branchPath, String ecl, String termFilter) {
+		return scanConcepts(branchPath, true, null, false, ecl, termFilter);
+	}
+
 	public List<Concept> findNewConcepts(String branchPath, String ecl, String termFilter) {
-		String searchAfter = null;
-		return fetchConceptPage(branchPath, true, null, false, ecl, termFilter, searchAfter)
-				.expand(response -> {
-					long expected = response.getTotal();
-					long totalReceived = response.getOffset() + response.getItems().size();
-					if (totalReceived >= expected) {
-						return Mono.empty();
-					}
-					return fetchConceptPage(branchPath, true, null, false, ecl, termFilter, null);
-				}).flatMap(response -> Flux.fromIterable(response.getItems())).collectList()
+		return findNewConceptsAsync(branchPath, ecl, termFilter).collectList()
 				.block(Duration.of(DEFAULT_TIMEOUT, ChronoUnit.SECONDS));
 	}
 
+	public Flux<Concept> findUpdatedConceptsAsync(String branchPath, boolean activeFilter, Boolean isPublished, String termFilter, String ecl) {
+		return scanConcepts(branchPath, activeFilter, true, isPublished, ecl, termFilter);
+	}
+
 	public List<Concept> findUpdatedConcepts(String branchPath, boolean activeFilter, Boolean isPublished, String termFilter, String ecl) {
-		String searchAfter = null;
-		AtomicInteger totalReceived = new AtomicInteger(0);
-		return fetchConceptPage(branchPath, activeFilter, true, null, ecl, termFilter, searchAfter)
-				.expand(response -> {
-					totalReceived.addAndGet(response.getItems().size());
-					long expected = response.getTotal();
-					if (totalReceived.get() >= expected) {
-						return Mono.empty();
-					}
-					return fetchConceptPage(branchPath, activeFilter, true, isPublished, ecl, termFilter, response.getSearchAfter());
-				}).flatMap(response -> Flux.fromIterable(response.getItems())).collectList()
+		return findUpdatedConceptsAsync(branchPath, activeFilter, isPublished, termFilter, ecl).collectList()
 				.block(Duration.of(DEFAULT_TIMEOUT, ChronoUnit.SECONDS));
 	}
 
@@ -440,6 +816,11 @@ public class SnowstormClient {
 	}
 	
 	public Mono<ConceptPage> fetchConceptPage(String branchPath, Boolean isActive, Boolean isUpdated, Boolean isPublished, String ecl, String termFilter, String searchAfter) {
+		return fetchConceptPage(branchPath, isActive, isUpdated, isPublished, ecl, termFilter, searchAfter, DEFAULT_PAGESIZE);
+	}
+
+	private Mono<ConceptPage> fetchConceptPage(String branchPath, Boolean isActive, Boolean isUpdated, Boolean isPublished, String ecl, String termFilter,
+			String searchAfter, long pageSize) {
 		String activeStr = isActive == null ? "" : (isActive?"active ":"inactive ");
 		String updatedStr = isUpdated == null ? "" : "updated ";
 		String publishedStr = isPublished == null ? "" : (isPublished ? "existing " : "new ");
@@ -456,8 +837,9 @@ public class SnowstormClient {
 						.queryParam((ecl == null ? "void": "ecl"), ecl)
 						.queryParam("term", termFilter)
 						.queryParam("searchAfter", searchAfter)
-						.queryParam("limit", DEFAULT_PAGESIZE)
+						.queryParam("limit", pageSize)
 						.build(branchPath))
+				.attribute(ReadReplicaRouter.READ_BRANCH_ATTRIBUTE, branchPath)
 				.retrieve()
 				.onStatus(HttpStatus::isError, response -> response.bodyToMono(String.class)
 						.flatMap(error -> Mono.error(new TermServerScriptException("Failed to recover concepts: " + error)))
@@ -466,7 +848,7 @@ public class SnowstormClient {
 	}
 	
 	//I tried doing this with generics, but couldn't then say DataPage<ConceptPojo>.class
-	public static final class ConceptPage {
+	public static final class ConceptPage implements OffsetPage<Concept> {
 		List<Concept> items;
 		Long total;
 		Long limit;
@@ -598,36 +980,80 @@ public class SnowstormClient {
 		}
 	}
 
+	public Mono<Void> setAuthorFlagAsync(String branchPath, String key, String value) {
+		return Mono.defer(() -> {
+			logger.info("Setting author flag {} = {} on Branch {}.", key, value, branchPath);
+			return webClient.post()
+					.uri(uriBuilder -> uriBuilder
+							.path("/branches/{branch}/actions/set-author-flag")
+							.build(branchPath))
+					.body(BodyInserters.fromValue(Map.of("name", key, "value", value)))
+					.retrieve()
+					.bodyToMono(String.class)
+					.then();
+		}).transform(write -> onBranchWritten(branchPath, write));
+	}
+
 	public void setAuthorFlag(String branchPath, String key, String value) {
-		logger.info("Setting author flag {} = {} on Branch {}.", key, value, branchPath);
+		setAuthorFlagAsync(branchPath, key, value).block();
+	}
 
-		webClient.post()
-				.uri(uriBuilder -> uriBuilder
-						.path("/branches/{branch}/actions/set-author-flag")
-						.build(branchPath))
-				.body(BodyInserters.fromValue(Map.of("name", key, "value", value)))
-				.retrieve()
-				.bodyToMono(String.class)
-				.block();
+	/**
+	 * Long lists of ids are split across requests, keeping each query string within maxQueryLength.
+	 */
+	public Mono<List<Concept>> getConceptsAsync(String branchPath, List<String> sctIds) {
+		return Flux.fromIterable(chunkByLength(sctIds, CONCEPT_IDS_PARAM_OVERHEAD, maxQueryLength))
+				.flatMapSequential(chunk -> fetchConcepts(branchPath, chunk), pageFetchConcurrency)
+				.flatMapIterable(concepts -> concepts)
+				.collectList();
 	}
 
-	public List<Concept> getConcepts(String branchPath, List<String> sctIds) {
+	private Mono<List<Concept>> fetchConcepts(String branchPath, List<String> sctIds) {
 		return webClient.get()
 				.uri(uriBuilder -> uriBuilder
 					.path("/{branch}/concepts")
 					.queryParam("conceptIds", sctIds)
+					.queryParam("limit", sctIds.size())
 					.build(branchPath))
+				.attribute(ReadReplicaRouter.READ_BRANCH_ATTRIBUTE, branchPath)
 				.retrieve()
 				.onStatus(HttpStatus::isError, response -> response.bodyToMono(String.class) 
 						.flatMap(error -> Mono.error(new TermServerScriptException("Failed to recover concepts: " + error))))
 				.bodyToMono(ConceptPage.class)
-				.block(Duration.of(DEFAULT_TIMEOUT, ChronoUnit.SECONDS))
-				.getItems();
+				.map(ConceptPage::getItems);
 	}
 
-	public List<Concept> getParents(String branchPath, Collection<Concept> concepts) {
+	public List<Concept> getConcepts(String branchPath, List<String> sctIds) {
+		return getConceptsAsync(branchPath, sctIds).block(Duration.of(DEFAULT_TIMEOUT, ChronoUnit.SECONDS));
+	}
+
+	/**
+	 * Splits the ids into chunks whose total length, counting the given overhead for each id, is at most maxLength.
+	 * Every chunk holds at least one id, so one longer than maxLength gets a chunk of its own.
+	 */
+	static List<List<String>> chunkByLength(Collection<String> ids, int overheadPerId, int maxLength) {
+		List<List<String>> chunks = new ArrayList<>();
+		List<String> chunk = new ArrayList<>();
+		int length = 0;
+		for (String id : ids) {
+			int idLength = id.length() + overheadPerId;
+			if (!chunk.isEmpty() && length + idLength > maxLength) {
+				chunks.add(chunk);
+				chunk = new ArrayList<>();
+				length = 0;
+			}
+			chunk.add(id);
+			length += idLength;
+		}
+		if (!chunk.isEmpty()) {
+			chunks.add(chunk);
+		}
+		return chunks;
+	}
+
+	public Flux<Concept> getParentsAsync(String branchPath, Collection<Concept> concepts) {
 		if (concepts == null || concepts.size() == 0) {
-			return new ArrayList<>();
+			return Flux.empty();
 		}
 		
 		String ecl = ">!" + concepts.stream()
@@ -635,16 +1061,14 @@ public class SnowstormClient {
 						.collect(Collectors.joining(" OR >! "));
 		
 		ConceptSearchRequest request = new ConceptSearchRequest().withEclFilter(ecl);
-		long currentOffset = 0;
-		return fetchConceptPage(branchPath, request, currentOffset)
-				.expand(response -> {
-					long expected = response.getTotal();
-					long totalReceived = response.getOffset() + response.getItems().size();
-					if (totalReceived >= expected) {
-						return Mono.empty();
-					}
-					return fetchConceptPage(branchPath, request, totalReceived);
-				}).flatMap(response -> Flux.fromIterable(response.getItems())).collectList()
+		return fetchOffsetPages(offset -> fetchConceptPage(branchPath, request, offset));
+	}
+
+	public List<Concept> getParents(String branchPath, Collection<Concept> concepts) {
+		if (concepts == null || concepts.size() == 0) {
+			return new ArrayList<>();
+		}
+		return getParentsAsync(branchPath, concepts).collectList()
 				.block(Duration.of(DEFAULT_TIMEOUT, ChronoUnit.SECONDS));
 	}
 	
@@ -657,6 +1081,7 @@ public class SnowstormClient {
 							.queryParam("offset", currentOffset)
 							.queryParam("limit", DEFAULT_PAGESIZE)
 							.build(branchPath))
+					.attribute(ReadReplicaRouter.READ_BRANCH_ATTRIBUTE, branchPath)
 					.bodyValue(request)
 					.retrieve()
 					.onStatus(HttpStatus::isError, response -> response.bodyToMono(String.class) 
@@ -7,26 +7,74 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.Arrays;
+
 @Service
 public class SnowstormClientFactory {
 
 	private static SnowstormClientFactory singleton;
 	private final String snowstormApiUrl;
 	private final String codecMaxInMemorySize;
+	private final WebClientPool webClientPool;
+	private final BulkJobStatusTracker bulkJobStatusTracker;
+	private final BranchMetadataCache branchMetadataCache;
+	private final ConceptCache conceptCache;
+	private final ValidationResultCache validationResultCache;
+	private final ConceptBatchLoader conceptBatchLoader;
+	private final ReadReplicaRouter readReplicaRouter;
+	private final int pageFetchConcurrency;
+	private final int bulkLoadMaxRequestBytes;
+	private final int maxQueryLength;
+	private final int eclScanPageSize;
+	private final int eclScanPrefetch;
+	private final int validationChunkSize;
+	private final int validationConcurrency;
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
-	public SnowstormClientFactory(@Value("${terminologyserver.url}") String snowstormApiUrl, @Value("${spring.codec.max-in-memory-size}") String codecMaxInMemorySize) {
+	public SnowstormClientFactory(@Value("${terminologyserver.url}") String snowstormApiUrl, @Value("${spring.codec.max-in-memory-size}") String codecMaxInMemorySize,
+			@Value("${terminologyserver.paging.concurrency}") int pageFetchConcurrency,
+			@Value("${terminologyserver.bulk-load.max-request-bytes}") int bulkLoadMaxRequestBytes,
+			@Value("${terminologyserver.concepts.max-query-length}") int maxQueryLength,
+			@Value("${terminologyserver.ecl-scan.page-size}") int eclScanPageSize,
+			@Value("${terminologyserver.ecl-scan.prefetch-pages}") int eclScanPrefetch,
+			@Value("${terminologyserver.validation.chunk-size}") int validationChunkSize,
+			@Value("${terminologyserver.validation.concurrency}") int validationConcurrency, WebClientPool webClientPool,
+			BulkJobStatusTracker bulkJobStatusTracker, BranchMetadataCache branchMetadataCache, ConceptCache conceptCache,
+			ValidationResultCache validationResultCache, ConceptBatchLoader conceptBatchLoader, ReadReplicaRouter readReplicaRouter) {
 		this.snowstormApiUrl = snowstormApiUrl;
 		this.codecMaxInMemorySize = codecMaxInMemorySize;
+		this.webClientPool = webClientPool;
+		webClientPool.register(snowstormApiUrl, codecMaxInMemorySize);
+		this.pageFetchConcurrency = pageFetchConcurrency;
+		this.bulkLoadMaxRequestBytes = bulkLoadMaxRequestBytes;
+		this.maxQueryLength = maxQueryLength;
+		this.eclScanPageSize = eclScanPageSize;
+		this.eclScanPrefetch = eclScanPrefetch;
+		this.validationChunkSize = validationChunkSize;
+		this.validationConcurrency = validationConcurrency;
+		this.bulkJobStatusTracker = bulkJobStatusTracker;
+		this.branchMetadataCache = branchMetadataCache;
+		this.conceptCache = conceptCache;
+		this.validationResultCache = validationResultCache;
+		this.conceptBatchLoader = conceptBatchLoader;
+		this.readReplicaRouter = readReplicaRouter;
 		singleton = this;
 	}
 
 	public SnowstormClient getClientForCurrentUser() {
+		return getClientForCurrentUser(Workload.INTERACTIVE);
+	}
+
+	public SnowstormClient getClientForCurrentUser(Workload workload) {
 		String authenticationToken = SecurityUtil.getAuthenticationToken();
 		if (StringUtils.isEmpty(authenticationToken)) {
 			logger.warn("Authentication token is not set.");
 		}
-		return SnowstormClient.createClientForUser(snowstormApiUrl, authenticationToken, codecMaxInMemorySize);
+		return SnowstormClient.createClientForUser(webClientPool.getClientForUser(snowstormApiUrl, authenticationToken, codecMaxInMemorySize, workload),
+				bulkJobStatusTracker, branchMetadataCache, conceptCache, validationResultCache,
+				// Lookups are only merged with others made with the same credentials and workload
+				conceptBatchLoader.forScope(Arrays.asList(SnowstormClient.class, authenticationToken, workload)), readReplicaRouter, pageFetchConcurrency,
+				bulkLoadMaxRequestBytes, maxQueryLength, eclScanPageSize, eclScanPrefetch, validationChunkSize, validationConcurrency);
 	}
 	
 	public String getApiUrl() {
@@ -0,0 +1,148 @@
+package org.ihtsdo.otf.transformationandtemplate.service.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Retries requests the server turned away or which never got a response, for every terminology server and authoring services client.
+ * 429 and 503 responses are retried for any method, following the server's Retry-After if it sends one, because the request was turned away
+ * before it was processed. 502 and 504 are only retried for idempotent methods, a gateway may give up on a POST the server still completes.
+ * Connection failures are retried for idempotent methods, and for any method if the connection could not be opened at all.
+ * Any other response, including 4xx validation errors, is passed straight back to the caller.
+ * Waits grow exponentially with random jitter, so clients turned away together do not all come back together.
+ */
+@Service
+public class TransientErrorRetryFilter implements ExchangeFilterFunction {
+
+	private static final Set<HttpStatus> RETRYABLE_STATUSES = EnumSet.of(HttpStatus.TOO_MANY_REQUESTS, HttpStatus.SERVICE_UNAVAILABLE);
+	private static final Set<HttpStatus> IDEMPOTENT_RETRYABLE_STATUSES = EnumSet.of(HttpStatus.TOO_MANY_REQUESTS, HttpStatus.BAD_GATEWAY,
+			HttpStatus.SERVICE_UNAVAILABLE, HttpStatus.GATEWAY_TIMEOUT);
+	private static final Set<HttpMethod> IDEMPOTENT_METHODS = EnumSet.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.PUT,
+			HttpMethod.DELETE, HttpMethod.OPTIONS);
+
+	private final int maxRetries;
+	private final Duration initialBackoff;
+	private final Duration maxBackoff;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	public TransientErrorRetryFilter(@Value("${webclient.retry.max-retries}") int maxRetries,
+			@Value("${webclient.retry.initial-backoff-millis}") long initialBackoffMillis,
+			@Value("${webclient.retry.max-backoff-seconds}") long maxBackoffSeconds) {
+		this.maxRetries = maxRetries;
+		this.initialBackoff = Duration.ofMillis(initialBackoffMillis);
+		this.maxBackoff = Duration.ofSeconds(maxBackoffSeconds);
+	}
+
+	@Override
+	public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+		return Mono.defer(() -> {
+			AtomicInteger retries = new AtomicInteger();
+			return Mono.defer(() -> next.exchange(request))
+					.flatMap(response -> {
+						// Once out of retries the caller gets the response, body and all, as it would have without retries
+						if (!isRetryable(request.method(), response.rawStatusCode()) || retries.get() >= maxRetries) {
+							return Mono.just(response);
+						}
+						Duration retryAfter = parseRetryAfter(response.headers().asHttpHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+						return response.releaseBody()
+								.then(Mono.error(new RetryableResponseException(response.rawStatusCode(), retryAfter)));
+					})
+					.retryWhen(Retry.from(signals -> signals.concatMap(signal -> {
+						Throwable failure = signal.failure();
+						if (retries.get() >= maxRetries || !isRetryable(request.method(), failure)) {
+							return Mono.error(failure);
+						}
+						int retry = retries.incrementAndGet();
+						Duration backoff = getBackoff(retry - 1, failure);
+						logger.warn("{} {} failed ({}), retry {} of {} in {}ms.", request.method(), request.url(), failure.getMessage(),
+								retry, maxRetries, backoff.toMillis());
+						return Mono.delay(backoff);
+					})));
+		});
+	}
+
+	private static boolean isRetryable(HttpMethod method, int statusCode) {
+		HttpStatus status = HttpStatus.resolve(statusCode);
+		return status != null && (IDEMPOTENT_METHODS.contains(method) ? IDEMPOTENT_RETRYABLE_STATUSES : RETRYABLE_STATUSES).contains(status);
+	}
+
+	private boolean isRetryable(HttpMethod method, Throwable failure) {
+		if (failure instanceof RetryableResponseException) {
+			return true;
+		}
+		if (failure instanceof WebClientRequestException) {
+			// Nothing reached the server if the connection was never opened, so even a POST is safe to send again
+			return IDEMPOTENT_METHODS.contains(method) || failure.getCause() instanceof ConnectException;
+		}
+		return false;
+	}
+
+	/**
+	 * Exponential backoff with equal jitter, half fixed and half random, or the server's Retry-After if that is longer.
+	 */
+	private Duration getBackoff(long retry, Throwable failure) {
+		long exponentialMillis = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() << Math.min(retry, 30));
+		long backoffMillis = exponentialMillis / 2 + ThreadLocalRandom.current().nextLong(exponentialMillis / 2 + 1);
+		if (failure instanceof RetryableResponseException) {
+			Duration retryAfter = ((RetryableResponseException) failure).retryAfter;
+			if (retryAfter != null && retryAfter.toMillis() > backoffMillis) {
+				return retryAfter;
+			}
+		}
+		return Duration.ofMillis(backoffMillis);
+	}
+
+	/**
+	 * @return the wait requested by a Retry-After header, given either in seconds or as an HTTP date, or null if there is none.
+	 */
+	static Duration parseRetryAfter(String retryAfter) {
+		if (retryAfter == null || retryAfter.isBlank()) {
+			return null;
+		}
+		try {
+			return Duration.ofSeconds(Math.max(0, Long.parseLong(retryAfter.trim())));
+		} catch (NumberFormatException e) {
+			try {
+				Duration wait = Duration.between(ZonedDateTime.now(), ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME));
+				return wait.isNegative() ? Duration.ZERO : wait;
+			} catch (DateTimeParseException e2) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Signals a response which is to be retried, its body has already been released.
+	 */
+	private static final class RetryableResponseException extends RuntimeException {
+
+		private final Duration retryAfter;
+
+		private RetryableResponseException(int statusCode, Duration retryAfter) {
+			super("HTTP " + statusCode, null, false, false);
+			this.retryAfter = retryAfter;
+		}
+	}
+}
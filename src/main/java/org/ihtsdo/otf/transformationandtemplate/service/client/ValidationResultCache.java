@@ -0,0 +1,100 @@
+package org.ihtsdo.otf.transformationandtemplate.service.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import org.ihtsdo.otf.rest.client.terminologyserver.pojo.ConceptPojo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Size bounded cache of concept validation results keyed by branch path, branch head timestamp and a hash of the concept as it was
+ * validated, so a concept submitted again in the same state, for example by a retried transformation, is not validated again.
+ * The concept is hashed with sorted properties and map keys, any change to the concept gives a new hash.
+ * Branches with the same head timestamp may still validate differently, for example under other code system or assertion group
+ * metadata, so results are never shared between branches. Once a branch changes its head timestamp moves on and older entries age out.
+ */
+@Service
+public class ValidationResultCache {
+
+	private final Cache<Key, List<ConceptValidationResult>> cache;
+	private final ObjectMapper objectMapper = new ObjectMapper()
+			.configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+			.configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	public ValidationResultCache(@Value("${validation-cache.max-entries}") long maxEntries) {
+		cache = CacheBuilder.newBuilder()
+				.maximumSize(maxEntries)
+				.recordStats()
+				.build();
+	}
+
+	/**
+	 * @return the hash to key the concept's results by or null if the concept can not be cached.
+	 */
+	public String hash(ConceptPojo concept) {
+		if (concept.getConceptId() == null) {
+			return null;
+		}
+		try {
+			return Hashing.sha256().hashBytes(objectMapper.writeValueAsBytes(concept)).toString();
+		} catch (JsonProcessingException e) {
+			logger.warn("Failed to hash concept {}, it will be validated every time.", concept.getConceptId(), e);
+			return null;
+		}
+	}
+
+	public List<ConceptValidationResult> get(String branchPath, String headTimestamp, String conceptHash) {
+		if (headTimestamp == null || conceptHash == null) {
+			return null;
+		}
+		return cache.getIfPresent(new Key(branchPath, headTimestamp, conceptHash));
+	}
+
+	public void put(String branchPath, String headTimestamp, String conceptHash, List<ConceptValidationResult> validationResults) {
+		if (headTimestamp == null || conceptHash == null) {
+			return;
+		}
+		cache.put(new Key(branchPath, headTimestamp, conceptHash), validationResults);
+	}
+
+	public String getStats() {
+		return cache.stats().toString();
+	}
+
+	private static final class Key {
+
+		private final String branchPath;
+		private final String headTimestamp;
+		private final String conceptHash;
+
+		private Key(String branchPath, String headTimestamp, String conceptHash) {
+			this.branchPath = branchPath;
+			this.headTimestamp = headTimestamp;
+			this.conceptHash = conceptHash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Key key = (Key) o;
+			return branchPath.equals(key.branchPath) && headTimestamp.equals(key.headTimestamp) && conceptHash.equals(key.conceptHash);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(branchPath, headTimestamp, conceptHash);
+		}
+	}
+}
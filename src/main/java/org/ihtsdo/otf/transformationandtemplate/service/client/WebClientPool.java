@@ -0,0 +1,118 @@
+package org.ihtsdo.otf.transformationandtemplate.service.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.netty.http.Http2SslContextSpec;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One connection pool for all calls to the terminology server and authoring services.
+ * Each API gets a single shared WebClient, users get a lightweight copy of it carrying their authentication cookie,
+ * so connections (and TLS sessions) are kept alive and reused across users, jobs and interactive requests.
+ * Every request goes through the shared retry policy, its workload's bulkhead, the API's adaptive concurrency limit
+ * and circuit breaker, terminology server reads are spread across its read replicas.
+ */
+@Service
+public class WebClientPool {
+
+	private final ConnectionProvider connectionProvider;
+	private final TransientErrorRetryFilter retryFilter;
+	private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+	private final ReadReplicaRouter readReplicaRouter;
+	private final WorkloadBulkheads workloadBulkheads;
+	private final ApiCircuitBreaker circuitBreaker;
+	private final boolean http2Enabled;
+	private final int warmUpConnections;
+	private final Map<String, WebClient> sharedClients = new ConcurrentHashMap<>();
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	public WebClientPool(@Value("${webclient.pool.max-connections}") int maxConnections,
+			@Value("${webclient.pool.max-idle-seconds}") int maxIdleSeconds,
+			@Value("${webclient.pool.pending-acquire-timeout-seconds}") int pendingAcquireTimeoutSeconds,
+			@Value("${webclient.http2.enabled}") boolean http2Enabled,
+			@Value("${webclient.pool.warm-up-connections}") int warmUpConnections,
+			TransientErrorRetryFilter retryFilter, AdaptiveConcurrencyLimiter concurrencyLimiter, ReadReplicaRouter readReplicaRouter,
+			WorkloadBulkheads workloadBulkheads, ApiCircuitBreaker circuitBreaker) {
+		connectionProvider = ConnectionProvider.builder("terminology-services")
+				.maxConnections(maxConnections)
+				.maxIdleTime(Duration.ofSeconds(maxIdleSeconds))
+				.pendingAcquireTimeout(Duration.ofSeconds(pendingAcquireTimeoutSeconds))
+				.evictInBackground(Duration.ofSeconds(maxIdleSeconds))
+				.build();
+		this.http2Enabled = http2Enabled;
+		this.warmUpConnections = warmUpConnections;
+		this.retryFilter = retryFilter;
+		this.concurrencyLimiter = concurrencyLimiter;
+		this.readReplicaRouter = readReplicaRouter;
+		this.workloadBulkheads = workloadBulkheads;
+		this.circuitBreaker = circuitBreaker;
+	}
+
+	public WebClient getClientForUser(String apiUrl, String authenticationCookie, String codecMaxInMemorySize, Workload workload) {
+		return RestClientHelper.withAuthenticationCookie(getSharedClient(apiUrl, codecMaxInMemorySize), authenticationCookie)
+				.mutate()
+				.defaultRequest(request -> request.attribute(Workload.ATTRIBUTE, workload))
+				.build();
+	}
+
+	/**
+	 * Registers the API so its connections are opened as soon as the application is ready, rather than by the first user request.
+	 */
+	public void register(String apiUrl, String codecMaxInMemorySize) {
+		getSharedClient(apiUrl, codecMaxInMemorySize);
+	}
+
+	private WebClient getSharedClient(String apiUrl, String codecMaxInMemorySize) {
+		// Each retry picks its endpoint and waits for permits afresh, so a request backing off does not hold on to any.
+		// The circuit breaker is innermost so time spent waiting for a permit does not count as a slow call.
+		// Both come after the read replica router, so a read sent to a replica waits for the replica's permit and uses its circuit.
+		return sharedClients.computeIfAbsent(apiUrl, url -> RestClientHelper.getRestClient(createHttpClient(url), url, codecMaxInMemorySize)
+				.mutate()
+				.filter(retryFilter)
+				.filter(workloadBulkheads)
+				.filter(readReplicaRouter.getFilter(url))
+				.filter(concurrencyLimiter.getFilter(url))
+				.filter(circuitBreaker.getFilter(url))
+				.build());
+	}
+
+	private HttpClient createHttpClient(String apiUrl) {
+		HttpClient httpClient = HttpClient.create(connectionProvider)
+				.followRedirect(true)
+				.keepAlive(true);
+		if (http2Enabled && apiUrl.startsWith("https")) {
+			// Negotiated with the server, falls back to HTTP/1.1 if it does not offer HTTP/2
+			httpClient = httpClient
+					.protocol(HttpProtocol.H2, HttpProtocol.HTTP11)
+					.secure(spec -> spec.sslContext(Http2SslContextSpec.forClient()));
+		}
+		return httpClient;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void warmUp() {
+		sharedClients.forEach((apiUrl, client) -> Flux.range(0, warmUpConnections)
+				.flatMap(i -> client.get()
+						.exchangeToMono(response -> response.releaseBody()))
+				.doOnComplete(() -> logger.info("Opened {} connections to {}", warmUpConnections, apiUrl))
+				.subscribe(null, e -> logger.info("Could not open connections to {} on startup: {}", apiUrl, e.getMessage())));
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		connectionProvider.dispose();
+	}
+}
@@ -0,0 +1,32 @@
+package org.ihtsdo.otf.transformationandtemplate.service.client;
+
+import org.springframework.web.reactive.function.client.ClientRequest;
+
+/**
+ * The kinds of work calling the terminology server and authoring services, each given its own bulkhead.
+ */
+public enum Workload {
+
+	/** Requests a user is waiting on, e.g. template searches and single concept transforms. */
+	INTERACTIVE,
+
+	/** Batch component transformation jobs. */
+	TRANSFORMATION_JOB,
+
+	/** Asynchronous template transformations. */
+	TEMPLATE_TRANSFORMATION,
+
+	/** Authoring platform scripts. */
+	SCRIPT;
+
+	/**
+	 * Request attribute carrying the workload of a WebClient request, requests without one are treated as interactive.
+	 */
+	public static final String ATTRIBUTE = Workload.class.getName();
+
+	public static Workload of(ClientRequest request) {
+		return request.attribute(ATTRIBUTE)
+				.map(Workload.class::cast)
+				.orElse(INTERACTIVE);
+	}
+}
@@ -0,0 +1,164 @@
+package org.ihtsdo.otf.transformationandtemplate.service.client;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gives each {@link Workload} its own bounded number of concurrent calls, across all APIs, so a large job or script
+ * waits in its own queue rather than crowding out everything else. Requests over their workload's bound wait in order.
+ * Interactive requests are also given priority at the shared concurrency limit, see {@link AdaptiveConcurrencyLimiter}.
+ */
+@Service
+public class WorkloadBulkheads implements ExchangeFilterFunction {
+
+	private final Map<Workload, Bulkhead> bulkheads = new EnumMap<>(Workload.class);
+
+	public WorkloadBulkheads(@Value("${webclient.bulkhead.interactive.max-concurrent}") int interactiveMaxConcurrent,
+			@Value("${webclient.bulkhead.transformation-job.max-concurrent}") int transformationJobMaxConcurrent,
+			@Value("${webclient.bulkhead.template-transformation.max-concurrent}") int templateTransformationMaxConcurrent,
+			@Value("${webclient.bulkhead.script.max-concurrent}") int scriptMaxConcurrent) {
+		bulkheads.put(Workload.INTERACTIVE, new Bulkhead(interactiveMaxConcurrent));
+		bulkheads.put(Workload.TRANSFORMATION_JOB, new Bulkhead(transformationJobMaxConcurrent));
+		bulkheads.put(Workload.TEMPLATE_TRANSFORMATION, new Bulkhead(templateTransformationMaxConcurrent));
+		bulkheads.put(Workload.SCRIPT, new Bulkhead(scriptMaxConcurrent));
+	}
+
+	@Override
+	public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+		Bulkhead bulkhead = bulkheads.get(Workload.of(request));
+		return bulkhead.acquire().flatMap(permit -> next.exchange(request)
+				.doFinally(signal -> permit.release()));
+	}
+
+	/**
+	 * Makes a blocking call within the workload's bulkhead, waiting for room first if necessary.
+	 */
+	public <T, E extends Exception> T call(Workload workload, BlockingCall<T, E> call) throws E {
+		Permit permit = bulkheads.get(workload).acquire().block();
+		try {
+			return call.call();
+		} finally {
+			permit.release();
+		}
+	}
+
+	public int getInFlight(Workload workload) {
+		return bulkheads.get(workload).getInFlight();
+	}
+
+	public interface BlockingCall<T, E extends Exception> {
+		T call() throws E;
+	}
+
+	private static final class Bulkhead {
+
+		private final int maxConcurrent;
+		private final Deque<Waiter> waiters = new ArrayDeque<>();
+		private int inFlight;
+
+		private Bulkhead(int maxConcurrent) {
+			this.maxConcurrent = Math.max(1, maxConcurrent);
+		}
+
+		private Mono<Permit> acquire() {
+			return Mono.create(sink -> {
+				Waiter waiter = new Waiter(sink);
+				boolean granted;
+				synchronized (this) {
+					granted = inFlight < maxConcurrent && waiters.isEmpty();
+					if (granted) {
+						inFlight++;
+					} else {
+						waiters.add(waiter);
+					}
+				}
+				if (granted) {
+					waiter.grant(new Permit(this));
+				} else {
+					sink.onCancel(() -> waiter.cancel(this));
+				}
+			});
+		}
+
+		private void release() {
+			Waiter waiter;
+			synchronized (this) {
+				waiter = waiters.poll();
+				if (waiter == null) {
+					inFlight--;
+					return;
+				}
+			}
+			// The permit passes straight to the next waiter
+			waiter.grant(new Permit(this));
+		}
+
+		private synchronized int getInFlight() {
+			return inFlight;
+		}
+	}
+
+	private static final class Waiter {
+
+		private static final int WAITING = 0;
+		private static final int GRANTED = 1;
+		private static final int CANCELLED = 2;
+
+		private final MonoSink<Permit> sink;
+		private final AtomicInteger state = new AtomicInteger(WAITING);
+		private volatile Permit permit;
+
+		private Waiter(MonoSink<Permit> sink) {
+			this.sink = sink;
+		}
+
+		private void grant(Permit permit) {
+			this.permit = permit;
+			if (state.compareAndSet(WAITING, GRANTED)) {
+				sink.success(permit);
+			} else {
+				permit.release();
+			}
+		}
+
+		private void cancel(Bulkhead bulkhead) {
+			if (state.compareAndSet(WAITING, CANCELLED)) {
+				synchronized (bulkhead) {
+					bulkhead.waiters.remove(this);
+				}
+			} else if (permit != null) {
+				// Granted as the subscriber went away
+				permit.release();
+			}
+		}
+	}
+
+	private static final class Permit {
+
+		private final Bulkhead bulkhead;
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private Permit(Bulkhead bulkhead) {
+			this.bulkhead = bulkhead;
+		}
+
+		private void release() {
+			if (released.compareAndSet(false, true)) {
+				bulkhead.release();
+			}
+		}
+	}
+}
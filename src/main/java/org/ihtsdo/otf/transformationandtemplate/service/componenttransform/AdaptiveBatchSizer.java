@@ -0,0 +1,109 @@
+package org.ihtsdo.otf.transformationandtemplate.service.componenttransform;
+
+import org.ihtsdo.otf.rest.client.terminologyserver.pojo.ConceptPojo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Sizes the processing batches of a transformation from the terminology server round-trips of its earlier batches.
+ * Each load, validation and save records how many concepts it carried, how many components those concepts had and how long it took.
+ * The next batch is the largest that fits both the target latency, for the slowest kind of round-trip, and the target payload,
+ * counted in components, within the min and max bounds. Batches are the initial size until the first round-trip has been recorded.
+ * Safe to share between the parallel task batches of a transformation.
+ */
+public class AdaptiveBatchSizer {
+
+	// Weight of the latest round-trip in the per concept averages
+	private static final double SAMPLE_WEIGHT = 0.3;
+
+	public enum RoundTrip {
+		LOAD, VALIDATE, SAVE
+	}
+
+	private final int minSize;
+	private final int initialSize;
+	private final int maxSize;
+	private final long targetLatencyNanos;
+	private final int targetComponents;
+	private final Map<RoundTrip, Double> nanosPerConcept = new EnumMap<>(RoundTrip.class);
+	private double componentsPerConcept;
+	private int lastSize;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	public AdaptiveBatchSizer(int minSize, int initialSize, int maxSize, long targetLatencyMillis, int targetComponents) {
+		this.minSize = Math.max(1, minSize);
+		this.maxSize = Math.max(this.minSize, maxSize);
+		this.initialSize = Math.min(Math.max(initialSize, this.minSize), this.maxSize);
+		this.targetLatencyNanos = targetLatencyMillis * 1_000_000;
+		this.targetComponents = targetComponents;
+		this.lastSize = this.initialSize;
+	}
+
+	public synchronized void record(RoundTrip roundTrip, Collection<ConceptPojo> concepts, long elapsedNanos) {
+		if (concepts.isEmpty()) {
+			return;
+		}
+		int components = 0;
+		for (ConceptPojo concept : concepts) {
+			components += countComponents(concept);
+		}
+		nanosPerConcept.merge(roundTrip, (double) elapsedNanos / concepts.size(), (average, latest) -> average + SAMPLE_WEIGHT * (latest - average));
+		double latestComponentsPerConcept = (double) components / concepts.size();
+		componentsPerConcept = componentsPerConcept == 0 ? latestComponentsPerConcept : componentsPerConcept + SAMPLE_WEIGHT * (latestComponentsPerConcept - componentsPerConcept);
+	}
+
+	public synchronized int getBatchSize() {
+		if (nanosPerConcept.isEmpty()) {
+			return initialSize;
+		}
+		double size = maxSize;
+		double slowestNanosPerConcept = Collections.max(nanosPerConcept.values());
+		if (slowestNanosPerConcept > 0) {
+			size = Math.min(size, targetLatencyNanos / slowestNanosPerConcept);
+		}
+		if (componentsPerConcept > 0) {
+			size = Math.min(size, targetComponents / componentsPerConcept);
+		}
+		int batchSize = (int) Math.max(minSize, Math.min(maxSize, size));
+		if (batchSize != lastSize) {
+			logger.debug("Processing batch size changed from {} to {}.", lastSize, batchSize);
+			lastSize = batchSize;
+		}
+		return batchSize;
+	}
+
+	/**
+	 * @return the items split into consecutive batches, each sized when it is taken so later batches use what earlier ones measured.
+	 */
+	public <E> Iterable<List<E>> partition(List<E> items) {
+		return () -> new Iterator<List<E>>() {
+			private int start;
+
+			@Override
+			public boolean hasNext() {
+				return start < items.size();
+			}
+
+			@Override
+			public List<E> next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				int end = Math.min(items.size(), start + getBatchSize());
+				List<E> batch = items.subList(start, end);
+				start = end;
+				return batch;
+			}
+		};
+	}
+
+	private static int countComponents(ConceptPojo concept) {
+		return 1 + size(concept.getDescriptions()) + size(concept.getRelationships()) + size(concept.getClassAxioms()) + size(concept.getGciAxioms());
+	}
+
+	private static int size(Collection<?> components) {
+		return components != null ? components.size() : 0;
+	}
+}
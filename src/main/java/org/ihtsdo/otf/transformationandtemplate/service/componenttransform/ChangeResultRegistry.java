@@ -0,0 +1,109 @@
+package org.ihtsdo.otf.transformationandtemplate.service.componenttransform;
+
+import org.ihtsdo.otf.rest.client.terminologyserver.pojo.DescriptionPojo;
+import org.ihtsdo.otf.rest.client.terminologyserver.pojo.SnomedComponent;
+import org.ihtsdo.otf.rest.exception.BusinessServiceException;
+import org.ihtsdo.otf.transformationandtemplate.service.client.ChangeResult;
+
+import java.util.*;
+
+import static java.lang.String.format;
+
+/**
+ * The change results of a transformation indexed by component, component id, concept id and, for descriptions,
+ * by concept id, term and language, so finding the result of a change does not mean scanning every change.
+ * Components are indexed as they are when the registry is created, create a new registry if their ids change.
+ * A registry is not modified once created, so parallel task batches may share one.
+ */
+public class ChangeResultRegistry<T extends SnomedComponent> {
+
+	private final List<ChangeResult<T>> changes;
+	private final Map<T, ChangeResult<T>> byComponent = new IdentityHashMap<>();
+	private final Map<String, ChangeResult<T>> byId = new HashMap<>();
+	private final Map<List<String>, ChangeResult<T>> byConceptTermAndLang = new HashMap<>();
+	private final Map<String, List<ChangeResult<T>>> byConceptId = new HashMap<>();
+
+	public ChangeResultRegistry(Collection<ChangeResult<T>> changes) {
+		this.changes = new ArrayList<>(changes);
+		for (ChangeResult<T> change : this.changes) {
+			T component = change.getComponent();
+			byComponent.put(component, change);
+			// The first change wins, as it did when searching the list in order
+			if (component.getId() != null) {
+				byId.putIfAbsent(component.getId(), change);
+			}
+			if (component instanceof DescriptionPojo) {
+				DescriptionPojo description = (DescriptionPojo) component;
+				byConceptTermAndLang.putIfAbsent(conceptTermAndLang(description.getConceptId(), description.getTerm(), description.getLang()), change);
+			}
+			if (component.getConceptId() != null) {
+				byConceptId.computeIfAbsent(component.getConceptId(), conceptId -> new ArrayList<>()).add(change);
+			}
+		}
+	}
+
+	public List<ChangeResult<T>> getAll() {
+		return changes;
+	}
+
+	public ChangeResult<T> getByComponent(T component) throws BusinessServiceException {
+		return orThrow(byComponent.get(component), component);
+	}
+
+	public ChangeResult<T> getById(String componentId) throws BusinessServiceException {
+		return orThrow(byId.get(componentId), componentId);
+	}
+
+	public ChangeResult<T> getByConceptTermAndLang(String conceptId, String term, String lang) throws BusinessServiceException {
+		return orThrow(byConceptTermAndLang.get(conceptTermAndLang(conceptId, term, lang)), format("%s %s (%s)", conceptId, term, lang));
+	}
+
+	public List<ChangeResult<T>> getByConceptId(String conceptId) {
+		return byConceptId.getOrDefault(conceptId, Collections.emptyList());
+	}
+
+	/**
+	 * @return a registry of just the changes to the given concepts.
+	 */
+	public ChangeResultRegistry<T> forConcepts(Collection<String> conceptIds) {
+		List<ChangeResult<T>> conceptChanges = new ArrayList<>();
+		for (String conceptId : new LinkedHashSet<>(conceptIds)) {
+			conceptChanges.addAll(getByConceptId(conceptId));
+		}
+		return new ChangeResultRegistry<>(conceptChanges);
+	}
+
+	/**
+	 * @return a registry of just the changes to the given components.
+	 */
+	public ChangeResultRegistry<T> forComponents(Collection<T> components) {
+		List<ChangeResult<T>> componentChanges = new ArrayList<>();
+		for (T component : components) {
+			ChangeResult<T> change = byComponent.get(component);
+			if (change != null) {
+				componentChanges.add(change);
+			}
+		}
+		return new ChangeResultRegistry<>(componentChanges);
+	}
+
+	/**
+	 * Fails every change to the concept which has not already succeeded or failed.
+	 */
+	public void failRemainingForConcept(String conceptId, String message) {
+		getByConceptId(conceptId).stream()
+				.filter(change -> change.getSuccess() == null)
+				.forEach(change -> change.fail(message));
+	}
+
+	private static List<String> conceptTermAndLang(String conceptId, String term, String lang) {
+		return Arrays.asList(conceptId, term, lang);
+	}
+
+	private ChangeResult<T> orThrow(ChangeResult<T> changeResult, Object component) throws BusinessServiceException {
+		if (changeResult == null) {
+			throw new BusinessServiceException(format("Change result not found for %s", component));
+		}
+		return changeResult;
+	}
+}
@@ -2,6 +2,7 @@ package org.ihtsdo.otf.transformationandtemplate.service.componenttransform;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.ihtsdo.otf.resourcemanager.ResourceManager;
 import org.ihtsdo.otf.rest.client.terminologyserver.pojo.AxiomPojo;
@@ -11,6 +12,7 @@ import org.ihtsdo.otf.rest.exception.BusinessServiceException;
 import org.ihtsdo.otf.rest.exception.ProcessingException;
 import org.ihtsdo.otf.rest.exception.ResourceNotFoundException;
 import org.ihtsdo.otf.transformationandtemplate.configuration.TransformationJobResourceConfiguration;
+import org.ihtsdo.otf.transformationandtemplate.domain.ChangeType;
 import org.ihtsdo.otf.transformationandtemplate.domain.ComponentTransformationJob;
 import org.ihtsdo.otf.transformationandtemplate.domain.ComponentTransformationRequest;
 import org.ihtsdo.otf.transformationandtemplate.domain.StatusAndMessage;
@@ -25,20 +27,35 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static java.lang.Boolean.FALSE;
 import static java.lang.String.format;
@@ -50,6 +67,10 @@ public class ComponentTransformService {
 	private static final String STATUS_FILE = "status.json";
 	public static final String RESULTS_FILE = "results.json";
 	public static final String INPUT_TSV = "input.tsv";
+	private static final String PROGRESS_FILE = "progress.json";
+	// Jobs queued or running on one instance of the service, by id, so jobs interrupted by a restart of that instance can be found.
+	// Each instance has its own file, instances sharing the job storage never touch each other's jobs.
+	private static final String ACTIVE_JOBS_FILE_FORMAT = "/active-jobs/%s.json";
 
 	@Autowired
 	private DescriptionService descriptionService;
@@ -70,15 +91,25 @@ public class ComponentTransformService {
 
 	private final ExecutorService jobExecutorService;
 
+	// Branch path of each job queued or running on this instance, by job id
+	private final Map<String, String> activeJobs = new ConcurrentHashMap<>();
+	private final String activeJobsFile;
+
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
 	public ComponentTransformService(
 			@Autowired TransformationJobResourceConfiguration transformationJobResourceConfiguration,
 			@Autowired ResourceLoader cloudResourceLoader,
-			@Value("${transformation.job.concurrency.max}") int concurrentTransformationJobs) {
+			@Value("${transformation.job.concurrency.max}") int concurrentTransformationJobs,
+			@Value("${transformation.job.instance-id}") String instanceId) {
 
+		// A default such as the host name could change with every restart, jobs interrupted by the restart would then never be failed
+		if (instanceId.isBlank()) {
+			throw new IllegalStateException("Property transformation.job.instance-id must be set, to a value which stays the same across restarts of this instance.");
+		}
 		transformationJobResourceManager = new ResourceManager(transformationJobResourceConfiguration, cloudResourceLoader);
 		jobExecutorService = Executors.newFixedThreadPool(concurrentTransformationJobs);
+		activeJobsFile = format(ACTIVE_JOBS_FILE_FORMAT, instanceId);
 	}
 
 	public Set<TransformationRecipe> listRecipes(String branchPath) throws IOException {
@@ -96,8 +127,85 @@ public class ComponentTransformService {
 	}
 
 	public ComponentTransformationJob queueBatchTransformation(ComponentTransformationRequest request) throws BusinessServiceException {
+		TransformationRecipe recipe = loadRecipe(request.getRecipe());
+
+		ComponentTransformationJob job = new ComponentTransformationJob(request, SecurityUtil.getUsername());
+		// Write configuration and status to separate files
+		persistJobResource(job, CONFIGURATION_FILE, job);
+		persistJobResource(job, INPUT_TSV, job.getRequest().getTsvValues());
+		addActiveJob(job);
+		queueJob(job, recipe);
+
+		return job;
+	}
+
+	/**
+	 * Runs a failed job again, as the current user. Only FAILED jobs can be resumed, a queued or running job may be running on another
+	 * instance of the service and every row of a completed job already has its result.
+	 * Rows of task batches which finished before are not processed again, including rows whose change failed, their recorded results are kept.
+	 * The job continues from the first unfinished batch. Task batches which had already started get new tasks.
+	 * A job which creates components can not be resumed if a task batch had started without finishing, the branch of that batch may
+	 * already hold some of its new components and running the batch again would create them twice.
+	 */
+	public ComponentTransformationJob resumeBatchTransformation(String branchPath, String jobId) throws BusinessServiceException {
+		ComponentTransformationJob job = loadTransformationJob(branchPath, jobId);
+		if (job.getStatus().getStatus() != TransformationStatus.FAILED) {
+			throw new IllegalArgumentException(format("Job '%s' can not be resumed, only failed jobs can be. The job is %s.", jobId, job.getStatus().getStatus()));
+		}
+		TransformationRecipe recipe = loadRecipe(job.getRequest().getRecipe());
+		if (recipe.getChangeType() == ChangeType.CREATE || recipe.getChangeType() == ChangeType.REPLACE) {
+			Set<String> partiallySavedBranches = readJobProgress(job).getStartedTaskBatches().stream()
+					.map(TransformationJobProgress.StartedTaskBatch::getBranchPath)
+					.collect(Collectors.toCollection(TreeSet::new));
+			if (!partiallySavedBranches.isEmpty()) {
+				throw new IllegalArgumentException(format("Job '%s' can not be resumed, task batches on branches %s did not finish and may have saved " +
+						"some of their new components. Running them again would create those components twice.", jobId, partiallySavedBranches));
+			}
+		}
+		if (!addActiveJob(job)) {
+			throw new IllegalArgumentException(format("Job '%s' is already queued or running.", jobId));
+		}
+		logger.info("Resuming transformation job {} on branch {}.", jobId, branchPath);
+		queueJob(job, recipe);
+
+		return job;
+	}
+
+	/**
+	 * Jobs which were queued or running when this instance of the service stopped can not carry on by themselves, they run as the user
+	 * who started them. They are marked as failed so they can be resumed. Jobs running on other instances are left alone.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void failInterruptedJobs() {
+		Map<String, String> interruptedJobs;
+		try {
+			interruptedJobs = readActiveJobs();
+		} catch (BusinessServiceException e) {
+			logger.error("Failed to read the list of transformation jobs which were running.", e);
+			return;
+		}
+		for (Map.Entry<String, String> interruptedJob : interruptedJobs.entrySet()) {
+			String jobId = interruptedJob.getKey();
+			try {
+				ComponentTransformationJob job = loadTransformationJob(interruptedJob.getValue(), jobId);
+				if (!job.getStatus().getStatus().isEndState()) {
+					logger.info("Transformation job {} was interrupted by a restart.", jobId);
+					job.updateStatus(TransformationStatus.FAILED, "Interrupted by a restart of the service. Resume the job to continue from the first unfinished batch.");
+					persistJobResource(job, STATUS_FILE, job.getStatus());
+				}
+			} catch (BusinessServiceException e) {
+				logger.error("Failed to update the status of interrupted transformation job {}.", jobId, e);
+			}
+		}
+		try {
+			persistActiveJobs();
+		} catch (BusinessServiceException e) {
+			logger.error("Failed to reset the list of transformation jobs which are running.", e);
+		}
+	}
+
+	private TransformationRecipe loadRecipe(String recipeKey) throws BusinessServiceException {
 		TransformationRecipe recipe;
-		String recipeKey = request.getRecipe();
 		try {
 			recipe = transformationRecipeStore.load(recipeKey, TransformationRecipe.class);
 		} catch (IOException e) {
@@ -106,13 +214,12 @@ public class ComponentTransformService {
 		if (recipe == null) {
 			throw new ResourceNotFoundException(format("Recipe '%s' not found.", recipeKey));
 		}
+		return recipe;
+	}
 
-		ComponentTransformationJob job = new ComponentTransformationJob(request, SecurityUtil.getUsername());
-		// Write configuration and status to separate files
-		persistJobResource(job, CONFIGURATION_FILE, job);
+	private void queueJob(ComponentTransformationJob job, TransformationRecipe recipe) throws BusinessServiceException {
 		job.updateStatus(TransformationStatus.QUEUED);
 		persistJobResource(job, STATUS_FILE, job.getStatus());
-		persistJobResource(job, INPUT_TSV, job.getRequest().getTsvValues());
 
 		// Job may pause here if all executor threads are in use.
 		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
@@ -121,37 +228,178 @@ public class ComponentTransformService {
 			SecurityContextHolder.getContext().setAuthentication(authentication);
 
 			try {
-				logger.info("Running {} transformation for user {} on branch {} with id {}.", recipeKey, job.getUser(), job.getRequest().getBranchPath(), job.getId());
-				job.updateStatus(TransformationStatus.RUNNING, null);
-				persistJobResource(job, STATUS_FILE, job.getStatus());
-
-				// Read input from storage
-				InputStream tsvInputStream = readJobResource(job, INPUT_TSV, InputStream.class);
-				request.setTsvValues(tsvInputStream);
+				runJob(job, recipe);
+			} finally {
+				removeActiveJob(job);
+			}
+			return null;
+		});
+	}
 
-				List<ChangeResult<? extends SnomedComponent>> changeResults = doRunTransform(job, recipe, request);
-				persistJobResource(job, RESULTS_FILE, changeResults);
+	private void runJob(ComponentTransformationJob job, TransformationRecipe recipe) {
+		ComponentTransformationRequest request = job.getRequest();
+		try {
+			logger.info("Running {} transformation for user {} on branch {} with id {}.", request.getRecipe(), job.getUser(), request.getBranchPath(), job.getId());
+			job.updateStatus(TransformationStatus.RUNNING, null);
+			persistJobResource(job, STATUS_FILE, job.getStatus());
+
+			// Results of task batches which finished before the job was interrupted
+			TransformationJobProgress progress = readJobProgress(job);
+			Map<Integer, JsonNode> completedResults = progress.getResultsByRow();
+
+			// Read input from storage, without the rows which are already complete
+			InputStream tsvInputStream = readJobResource(job, INPUT_TSV, InputStream.class);
+			List<Integer> inputRows = null;
+			if (!completedResults.isEmpty()) {
+				inputRows = new ArrayList<>();
+				tsvInputStream = getRemainingInput(tsvInputStream, completedResults.keySet(), inputRows);
+				logger.info("Transformation {} continues with {} rows, {} rows were completed before.", job.getId(), inputRows.size(), completedResults.size());
+			}
+			request.setTsvValues(tsvInputStream);
+			// Persist the branch of each task batch as it starts and its results as soon as it finishes
+			List<Integer> remainingRows = inputRows;
+			Function<List<Integer>, List<Integer>> toInputRows = rows -> remainingRows != null ? rows.stream().map(remainingRows::get).collect(Collectors.toList()) : rows;
+			request.setTaskBatchListener(new TaskBatchListener() {
+				@Override
+				public void taskBatchStarted(List<Integer> rows, String branchPath) {
+					persistStartedTaskBatch(job, progress, toInputRows.apply(rows), branchPath);
+				}
 
-				if (changeResults.stream().anyMatch(changeResult -> FALSE == changeResult.getSuccess())) {
-					job.updateStatus(TransformationStatus.COMPLETED_WITH_FAILURE, "Not all changes were successful. See results file for details.");
-				} else {
-					job.updateStatus(TransformationStatus.COMPLETED, null);
+				@Override
+				public void taskBatchCompleted(List<Integer> rows, List<ChangeResult<? extends SnomedComponent>> changes) {
+					persistCompletedTaskBatch(job, progress, toInputRows.apply(rows), changes);
 				}
+			});
+
+			List<ChangeResult<? extends SnomedComponent>> changeResults = doRunTransform(job, recipe, request);
+
+			SortedMap<Integer, JsonNode> resultsByRow = new TreeMap<>(completedResults);
+			for (int i = 0; i < changeResults.size(); i++) {
+				resultsByRow.put(remainingRows != null ? remainingRows.get(i) : i, objectMapper.valueToTree(changeResults.get(i)));
+			}
+			persistJobResource(job, RESULTS_FILE, resultsByRow.values());
+
+			if (resultsByRow.values().stream().anyMatch(result -> FALSE.equals(getSuccess(result)))) {
+				job.updateStatus(TransformationStatus.COMPLETED_WITH_FAILURE, "Not all changes were successful. See results file for details.");
+			} else {
+				job.updateStatus(TransformationStatus.COMPLETED, null);
+			}
+			persistJobResource(job, STATUS_FILE, job.getStatus());
+			logger.info("Transformation {} {}", job.getId(), job.getStatus());
+		} catch (Exception e) {
+			logger.error("Exception during component transformation job id {}, branch {}.", job.getId(), request.getBranchPath(), e);
+			try {
+				job.updateStatus(TransformationStatus.FAILED, "Unhanded exception during component transformation. " + e.getMessage());
 				persistJobResource(job, STATUS_FILE, job.getStatus());
-				logger.info("Transformation {} {}", job.getId(), job.getStatus());
-			} catch (Exception e) {
-				logger.error("Exception during component transformation job id {}, branch {}.", job.getId(), request.getBranchPath(), e);
-				try {
-					job.updateStatus(TransformationStatus.FAILED, "Unhanded exception during component transformation. " + e.getMessage());
-					persistJobResource(job, STATUS_FILE, job.getStatus());
-				} catch (BusinessServiceException be) {
-					logger.error("Also failed to update persistent status of job {}.", job.getId());
+			} catch (BusinessServiceException be) {
+				logger.error("Also failed to update persistent status of job {}.", job.getId());
+			}
+		}
+	}
+
+	private static Boolean getSuccess(JsonNode result) {
+		JsonNode success = result.get("success");
+		return success != null && success.isBoolean() ? success.booleanValue() : null;
+	}
+
+	/**
+	 * Copies the header and the rows which are not complete, adding the position of each copied row within the input to remainingRows.
+	 * Lines are read the same way as the transformation stream reads them.
+	 */
+	private InputStream getRemainingInput(InputStream tsvInputStream, Set<Integer> completedRows, List<Integer> remainingRows) throws IOException {
+		ByteArrayOutputStream remainingInput = new ByteArrayOutputStream();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(tsvInputStream));
+				BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(remainingInput))) {
+			String header = reader.readLine();
+			if (header != null) {
+				writer.write(header);
+				writer.newLine();
+			}
+			String line;
+			for (int row = 0; (line = reader.readLine()) != null; row++) {
+				if (!completedRows.contains(row)) {
+					writer.write(line);
+					writer.newLine();
+					remainingRows.add(row);
 				}
 			}
-			return null;
-		});
+		}
+		return new ByteArrayInputStream(remainingInput.toByteArray());
+	}
 
-		return job;
+	private TransformationJobProgress readJobProgress(ComponentTransformationJob job) throws BusinessServiceException {
+		try {
+			return readJobResource(job, PROGRESS_FILE, TransformationJobProgress.class);
+		} catch (ResourceNotFoundException e) {
+			// Nothing completed yet
+			return new TransformationJobProgress();
+		}
+	}
+
+	/**
+	 * Called from the threads of parallel task batches, before anything is saved to the branch.
+	 */
+	private void persistStartedTaskBatch(ComponentTransformationJob job, TransformationJobProgress progress, List<Integer> rows, String branchPath) {
+		synchronized (progress) {
+			progress.addStartedTaskBatch(rows, branchPath);
+			persistJobProgress(job, progress);
+		}
+	}
+
+	/**
+	 * Called from the threads of parallel task batches. The job carries on if progress can not be saved, a resumed job would process those rows again.
+	 */
+	private void persistCompletedTaskBatch(ComponentTransformationJob job, TransformationJobProgress progress, List<Integer> rows,
+			List<ChangeResult<? extends SnomedComponent>> changes) {
+		List<JsonNode> results = changes.stream().map(change -> (JsonNode) objectMapper.valueToTree(change)).collect(Collectors.toList());
+		synchronized (progress) {
+			progress.addCompletedTaskBatch(rows, results);
+			persistJobProgress(job, progress);
+		}
+	}
+
+	private void persistJobProgress(ComponentTransformationJob job, TransformationJobProgress progress) {
+		try {
+			persistJobResource(job, PROGRESS_FILE, progress);
+		} catch (BusinessServiceException e) {
+			logger.error("Failed to persist the progress of transformation job {}.", job.getId(), e);
+		}
+	}
+
+	private boolean addActiveJob(ComponentTransformationJob job) throws BusinessServiceException {
+		if (activeJobs.putIfAbsent(job.getId(), job.getRequest().getBranchPath()) != null) {
+			return false;
+		}
+		persistActiveJobs();
+		return true;
+	}
+
+	private void removeActiveJob(ComponentTransformationJob job) {
+		activeJobs.remove(job.getId());
+		try {
+			persistActiveJobs();
+		} catch (BusinessServiceException e) {
+			logger.error("Failed to update the list of transformation jobs which are running.", e);
+		}
+	}
+
+	private synchronized Map<String, String> readActiveJobs() throws BusinessServiceException {
+		try (InputStream inputStream = transformationJobResourceManager.readResourceStreamOrNullIfNotExists(activeJobsFile)) {
+			if (inputStream == null) {
+				return Collections.emptyMap();
+			}
+			return objectMapper.readValue(inputStream, new TypeReference<Map<String, String>>() {});
+		} catch (IOException e) {
+			throw new BusinessServiceException(format("Failed to read resource %s.", activeJobsFile), e);
+		}
+	}
+
+	private synchronized void persistActiveJobs() throws BusinessServiceException {
+		try {
+			transformationJobResourceManager.writeResource(activeJobsFile, new ByteArrayInputStream(objectMapper.writeValueAsBytes(new TreeMap<>(activeJobs))));
+		} catch (IOException e) {
+			throw new BusinessServiceException(format("Failed to persist resource %s.", activeJobsFile), e);
+		}
 	}
 
 	public ComponentTransformationJob loadTransformationJob(String branchPath, String jobId) throws BusinessServiceException {
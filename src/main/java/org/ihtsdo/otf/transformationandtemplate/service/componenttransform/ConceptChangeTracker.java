@@ -0,0 +1,63 @@
+package org.ihtsdo.otf.transformationandtemplate.service.componenttransform;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.ihtsdo.otf.rest.client.terminologyserver.pojo.ConceptPojo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers concepts as they were loaded from the terminology server so concepts which a transformation did not
+ * actually change can be left out of validation and the bulk save.
+ * A snapshot is the concept serialised with sorted properties and map keys, it is forgotten once the concept has been checked.
+ * Safe to share between the parallel task batches of a transformation.
+ */
+public class ConceptChangeTracker {
+
+	private final ObjectMapper objectMapper = new ObjectMapper()
+			.configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+			.configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+	private final Map<String, byte[]> snapshots = new ConcurrentHashMap<>();
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	public void snapshot(Collection<ConceptPojo> concepts) {
+		for (ConceptPojo concept : concepts) {
+			snapshot(concept);
+		}
+	}
+
+	public void snapshot(ConceptPojo concept) {
+		byte[] serialised = serialise(concept);
+		if (serialised != null) {
+			snapshots.put(concept.getConceptId(), serialised);
+		}
+	}
+
+	/**
+	 * @return true if the concept is just as it was when it was loaded. False if it has changed, was never loaded
+	 * or could not be compared, so the concept is saved whenever in doubt.
+	 */
+	public boolean isUnchanged(ConceptPojo concept) {
+		byte[] snapshot = snapshots.remove(concept.getConceptId());
+		if (snapshot == null) {
+			return false;
+		}
+		return Arrays.equals(snapshot, serialise(concept));
+	}
+
+	private byte[] serialise(ConceptPojo concept) {
+		try {
+			return objectMapper.writeValueAsBytes(concept);
+		} catch (JsonProcessingException e) {
+			logger.warn("Failed to snapshot concept {}, it will be saved regardless of changes.", concept.getConceptId(), e);
+			return null;
+		}
+	}
+}
@@ -1,17 +1,26 @@
 package org.ihtsdo.otf.transformationandtemplate.service.componenttransform;
 
-import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import org.ihtsdo.otf.rest.client.terminologyserver.pojo.*;
 import org.ihtsdo.otf.rest.exception.BusinessServiceException;
 import org.ihtsdo.otf.transformationandtemplate.domain.ComponentTransformationRequest;
 import org.ihtsdo.otf.transformationandtemplate.service.ConstantStrings;
 import org.ihtsdo.otf.transformationandtemplate.service.client.*;
+import org.ihtsdo.otf.transformationandtemplate.service.exception.CircuitBreakerOpenException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.reactive.function.client.WebClientException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuples;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -33,20 +42,30 @@ public class HighLevelAuthoringService {
 	private final AuthoringServicesClient authoringServicesClient;
 	private final boolean skipDroolsValidation;
 
-	private int processingBatchMaxSize;
+	private final AdaptiveBatchSizer batchSizer;
+	private final ConceptChangeTracker changeTracker = new ConceptChangeTracker();
+	private final int taskBatchConcurrency;
+	private final int taskProvisioningConcurrency;
+	private final int pipelineMaxBatches;
+	private final int saveRetryMinSize;
+	private final int saveRetryMaxSaves;
 
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
 	private static final Comparator<DescriptionPojo> DESCRIPTION_WITHOUT_ID_COMPARATOR = Comparator.comparing(DescriptionPojo::getTerm).thenComparing(DescriptionPojo::getLang);
-	private static final Comparator<DescriptionPojo> DESCRIPTION_WITH_ID_COMPARATOR = Comparator.comparing(DescriptionPojo::getDescriptionId);
-	private static final Comparator<DescriptionPojo> DESCRIPTION_WITH_CONCEPT_ID_COMPARATOR = Comparator.comparing(DescriptionPojo::getTerm).thenComparing(DescriptionPojo::getLang).thenComparing(DescriptionPojo::getConceptId);
-	private static final Comparator<DescriptionReplacementPojo> DESCRIPTION_REPLACEMENT_WITH_CONCEPT_ID_COMPARATOR = Comparator.comparing(DescriptionReplacementPojo::getId).thenComparing(DescriptionReplacementPojo::getConceptId);
 	private static final Comparator<ConceptValidationResult> CONCEPT_VALIDATION_RESULT_COMPARATOR = Comparator.comparing(ConceptValidationResult::getSeverity);
 
-	public HighLevelAuthoringService(SnowstormClient snowstormClient, AuthoringServicesClient authoringServicesClient, int processingBatchMaxSize, boolean skipDroolsValidation) {
+	public HighLevelAuthoringService(SnowstormClient snowstormClient, AuthoringServicesClient authoringServicesClient, AdaptiveBatchSizer batchSizer,
+			int taskBatchConcurrency, int taskProvisioningConcurrency, int pipelineMaxBatches, int saveRetryMinSize, int saveRetryMaxSaves,
+			boolean skipDroolsValidation) {
 		this.snowstormClient = snowstormClient;
 		this.authoringServicesClient = authoringServicesClient;
-		this.processingBatchMaxSize = processingBatchMaxSize;
+		this.batchSizer = batchSizer;
+		this.taskBatchConcurrency = Math.max(1, taskBatchConcurrency);
+		this.taskProvisioningConcurrency = Math.max(1, taskProvisioningConcurrency);
+		this.pipelineMaxBatches = Math.max(1, pipelineMaxBatches);
+		this.saveRetryMinSize = Math.max(1, saveRetryMinSize);
+		this.saveRetryMaxSaves = saveRetryMaxSaves;
 		this.skipDroolsValidation = skipDroolsValidation;
 	}
 
@@ -82,24 +101,22 @@ public class HighLevelAuthoringService {
 				conceptIdToDescriptionMap.computeIfAbsent(description.getConceptId(), (key) -> new HashSet<>()).add(description);
 			}
 
-			// Split into batches of how many changes per branch / task
-			int batchNumber = 0;
-			for (List<String> conceptIdTaskBatch : Iterables.partition(conceptIdToDescriptionMap.keySet(), request.getBatchSize())) {
-
-				batchNumber++;
-				String branchPath = getBatchBranch(request, batchNumber);
+			ChangeResultRegistry<DescriptionPojo> changeRegistry = new ChangeResultRegistry<>(changes);
 
+			// Split into batches of how many changes per branch / task
+			List<List<String>> conceptIdTaskBatches = Lists.partition(new ArrayList<>(conceptIdToDescriptionMap.keySet()), request.getBatchSize());
+			runTaskBatches(request, conceptIdTaskBatches, changes, conceptIdTaskBatch -> changeRegistry.forConcepts(conceptIdTaskBatch).getAll(), (conceptIdTaskBatch, branchPath) -> {
 				// Split into smaller batches if the number of per branch changes exceeds the number of concepts which should be processed at a time.
-				for (List<String> conceptIdProcessingBatch : Iterables.partition(conceptIdTaskBatch, processingBatchMaxSize)) {
+				runProcessingBatches(batchSizer.partition(conceptIdTaskBatch), branchPath, conceptIdProcessingBatch -> {
 					Map<String, Set<DescriptionPojo>> batchMap = new HashMap<>();
 					for (String conceptId : conceptIdProcessingBatch) {
 						batchMap.put(conceptId, conceptIdToDescriptionMap.get(conceptId));
 					}
-					createDescriptionBatch(batchMap, defaultModuleId, changes, branchPath);
-				}
-			}
+					return prepareDescriptionCreation(batchMap, defaultModuleId, changeRegistry.forConcepts(conceptIdProcessingBatch), branchPath);
+				});
+			});
 
-		} catch (WebClientException | TimeoutException e) {// This RuntimeException is thrown by WebClient
+		} catch (WebClientException e) {// This RuntimeException is thrown by WebClient
 			logger.error("Failed to communicate with the terminology server.", e);
 			failAllRemaining(changes, "Failed to communicate with the terminology server.");
 		}
@@ -107,90 +124,102 @@ public class HighLevelAuthoringService {
 		return new ArrayList<>(changes);
 	}
 
-	private void createDescriptionBatch(Map<String, Set<DescriptionPojo>> conceptIdToDescriptionMap, String defaultModuleId,
-			List<ChangeResult<DescriptionPojo>> changes, String branchPath) throws BusinessServiceException, TimeoutException {
+	private PreparedBatch<DescriptionPojo> prepareDescriptionCreation(Map<String, Set<DescriptionPojo>> conceptIdToDescriptionMap, String defaultModuleId,
+			ChangeResultRegistry<DescriptionPojo> changes, String branchPath) throws BusinessServiceException {
+
+		// Stream concepts from the terminology server, joining new descriptions as each concept arrives
+		Map<String, ConceptPojo> conceptMap = new HashMap<>();
+		long loadStart = System.nanoTime();
+		for (ConceptPojo conceptPojo : snowstormClient.streamCurrentFullConcepts(SnowstormClient.ConceptBulkLoadRequest.byConceptId(conceptIdToDescriptionMap.keySet()), branchPath).toIterable()) {
+			Set<DescriptionPojo> newDescriptions = conceptIdToDescriptionMap.get(conceptPojo.getConceptId());
+			if (newDescriptions != null) {
+				conceptMap.put(conceptPojo.getConceptId(), conceptPojo);
+				joinNewDescriptions(conceptPojo, newDescriptions, defaultModuleId, changes);
+			}
+		}
+		batchSizer.record(AdaptiveBatchSizer.RoundTrip.LOAD, conceptMap.values(), System.nanoTime() - loadStart);
 
-		// Batch load concepts
-		List<ConceptPojo> concepts = snowstormClient.getFullConcepts(SnowstormClient.ConceptBulkLoadRequest.byConceptId(conceptIdToDescriptionMap.keySet()), branchPath);
+		for (Map.Entry<String, Set<DescriptionPojo>> entry : conceptIdToDescriptionMap.entrySet()) {
+			if (!conceptMap.containsKey(entry.getKey())) {
+				// Description not joined to any concept so will not appear in the update request
+				for (DescriptionPojo description : entry.getValue()) {
+					getChangeResult(changes, description).fail(format("Concept %s not found.", description.getConceptId()));
+				}
+			}
+		}
 
-		// Join new descriptions to concepts
-		Map<String, ConceptPojo> conceptMap = concepts.stream().collect(Collectors.toMap(ConceptPojo::getConceptId, Function.identity()));
-		for (String conceptId : conceptIdToDescriptionMap.keySet()) {
-			ConceptPojo conceptPojo = conceptMap.get(conceptId);
-			List<String> preferredLanguageRefsets = new ArrayList<>();
-			List<DescriptionPojo.Type> updatedDescriptionTypes = new ArrayList<>();
-			for (DescriptionPojo description : conceptIdToDescriptionMap.get(conceptId)) {
-				if (conceptPojo != null) {
-					conceptPojo.add(description);
-
-					// Assign description module
-					if (description.getModuleId() == null) {
-						if (defaultModuleId != null) {
-							description.setModuleId(defaultModuleId);
-						} else {
-							description.setModuleId(conceptPojo.getModuleId());
+		return new PreparedBatch<>(conceptMap, changes.getAll(), () -> {
+			if (!conceptMap.isEmpty()) {
+				// Batch load concepts again to fetch identifiers of new components, as saved rather than from the cache
+				List<ConceptPojo> updatedConcepts = snowstormClient.getCurrentFullConcepts(SnowstormClient.ConceptBulkLoadRequest.byConceptId(conceptMap.keySet()), branchPath);
+
+				for (ConceptPojo updatedConcept : updatedConcepts) {
+					final Set<DescriptionPojo> savedDescriptions = updatedConcept.getDescriptions();
+					Set<DescriptionPojo> descriptionPojos = conceptIdToDescriptionMap.get(updatedConcept.getConceptId());
+					for (DescriptionPojo descriptionPojo : descriptionPojos) {
+						if (descriptionPojo.getDescriptionId() == null) {
+							// Set description id from updated concept so it's in the final output
+							savedDescriptions.stream()
+									.filter(d -> DESCRIPTION_WITHOUT_ID_COMPARATOR.compare(descriptionPojo, d) == 0)
+									.findFirst()
+									.ifPresent(pojo -> descriptionPojo.setDescriptionId(pojo.getDescriptionId()));
 						}
+						getChangeResult(changes, descriptionPojo).success();
 					}
+				}
+			}
+		});
+	}
 
-					// Get preferred language refset within new description
-					if (description.getAcceptabilityMap() != null) {
-						Map<String, DescriptionPojo.Acceptability> acceptabilityMap = description.getAcceptabilityMap();
-						for (String languageRefset : acceptabilityMap.keySet()) {
-							if (PREFERRED.equals(acceptabilityMap.get(languageRefset))) {
-								preferredLanguageRefsets.add(languageRefset);
-								if (!updatedDescriptionTypes.contains(description.getType())) {
-									updatedDescriptionTypes.add(description.getType());
-								}
-							}
-						}
-					}
+	private void joinNewDescriptions(ConceptPojo conceptPojo, Set<DescriptionPojo> newDescriptions, String defaultModuleId,
+			ChangeResultRegistry<DescriptionPojo> changes) throws BusinessServiceException {
 
-					if (!conceptPojo.isActive()) {
-						getChangeResult(changes, description, DESCRIPTION_WITHOUT_ID_COMPARATOR).addWarning("Adding description to inactive concept");
-					}
+		List<String> preferredLanguageRefsets = new ArrayList<>();
+		List<DescriptionPojo.Type> updatedDescriptionTypes = new ArrayList<>();
+		for (DescriptionPojo description : newDescriptions) {
+			conceptPojo.add(description);
 
+			// Assign description module
+			if (description.getModuleId() == null) {
+				if (defaultModuleId != null) {
+					description.setModuleId(defaultModuleId);
 				} else {
-					// Description not joined to any concept so will not appear in the update request
-					getChangeResult(changes, description, DESCRIPTION_WITHOUT_ID_COMPARATOR).fail(format("Concept %s not found.", description.getConceptId()));
+					description.setModuleId(conceptPojo.getModuleId());
 				}
 			}
 
-			// Set the existing PT automatically to acceptable if any
-			if (conceptPojo != null && !preferredLanguageRefsets.isEmpty() && !updatedDescriptionTypes.isEmpty()) {
-				for (DescriptionPojo description : conceptPojo.getDescriptions()) {
-					if (description.isActive() &&
-						(defaultModuleId == null || defaultModuleId.equals(description.getModuleId())) &&
-						!description.getDescriptionId().contains("-") &&
-						updatedDescriptionTypes.contains(description.getType())) {
-						Map<String, DescriptionPojo.Acceptability> acceptabilityMap = description.getAcceptabilityMap();
-						for (String languageRefset : acceptabilityMap.keySet()) {
-							if (PREFERRED.equals(acceptabilityMap.get(languageRefset)) && preferredLanguageRefsets.contains(languageRefset)) {
-								acceptabilityMap.put(languageRefset, ACCEPTABLE);
-							}
+			// Get preferred language refset within new description
+			if (description.getAcceptabilityMap() != null) {
+				Map<String, DescriptionPojo.Acceptability> acceptabilityMap = description.getAcceptabilityMap();
+				for (String languageRefset : acceptabilityMap.keySet()) {
+					if (PREFERRED.equals(acceptabilityMap.get(languageRefset))) {
+						preferredLanguageRefsets.add(languageRefset);
+						if (!updatedDescriptionTypes.contains(description.getType())) {
+							updatedDescriptionTypes.add(description.getType());
 						}
-						description.setAcceptabilityMap(acceptabilityMap);
 					}
 				}
 			}
+
+			if (!conceptPojo.isActive()) {
+				getChangeResult(changes, description).addWarning("Adding description to inactive concept");
+			}
 		}
 
-		bulkValidateThenUpdateConcepts(conceptMap, branchPath, new ArrayList<>(changes));
-		if (!conceptMap.isEmpty()) {
-			// Batch load concepts again to fetch identifiers of new components
-			List<ConceptPojo> updatedConcepts = snowstormClient.getFullConcepts(SnowstormClient.ConceptBulkLoadRequest.byConceptId(conceptMap.keySet()), branchPath);
-
-			for (ConceptPojo updatedConcept : updatedConcepts) {
-				final Set<DescriptionPojo> savedDescriptions = updatedConcept.getDescriptions();
-				Set<DescriptionPojo> descriptionPojos = conceptIdToDescriptionMap.get(updatedConcept.getConceptId());
-				for (DescriptionPojo descriptionPojo : descriptionPojos) {
-					if (descriptionPojo.getDescriptionId() == null) {
-						// Set description id from updated concept so it's in the final output
-						savedDescriptions.stream()
-								.filter(d -> DESCRIPTION_WITHOUT_ID_COMPARATOR.compare(descriptionPojo, d) == 0)
-								.findFirst()
-								.ifPresent(pojo -> descriptionPojo.setDescriptionId(pojo.getDescriptionId()));
+		// Set the existing PT automatically to acceptable if any
+		if (!preferredLanguageRefsets.isEmpty() && !updatedDescriptionTypes.isEmpty()) {
+			for (DescriptionPojo description : conceptPojo.getDescriptions()) {
+				if (description.isActive() &&
+					(defaultModuleId == null || defaultModuleId.equals(description.getModuleId())) &&
+					!description.getDescriptionId().contains("-") &&
+					updatedDescriptionTypes.contains(description.getType())) {
+					Map<String, DescriptionPojo.Acceptability> acceptabilityMap = description.getAcceptabilityMap();
+					for (String languageRefset : acceptabilityMap.keySet()) {
+						if (PREFERRED.equals(acceptabilityMap.get(languageRefset)) && preferredLanguageRefsets.contains(languageRefset)) {
+							acceptabilityMap.put(languageRefset, ACCEPTABLE);
+						}
 					}
-					getChangeResult(changes, descriptionPojo, DESCRIPTION_WITH_CONCEPT_ID_COMPARATOR).success();
+					description.setAcceptabilityMap(acceptabilityMap);
 				}
 			}
 		}
@@ -221,23 +250,23 @@ public class HighLevelAuthoringService {
 
 			List<String> optionalLanguageRefsets = snowstormClient.getOptionalLanguageRefsets(request.getBranchPath());
 
-			// retrieve all concepts before processing update
-			List<ConceptPojo> concepts = new ArrayList <>();
-			for (List<DescriptionPojo> descriptionProcessingBatch : Iterables.partition(descriptions, processingBatchMaxSize)) {
+			// retrieve all concepts before processing update, a concept with descriptions in several batches is kept once
+			Map<String, ConceptPojo> conceptMap = new LinkedHashMap<>();
+			for (List<DescriptionPojo> descriptionProcessingBatch : batchSizer.partition(descriptions)) {
 				Set<String> descriptionIds = descriptionProcessingBatch.stream().map(DescriptionPojo::getDescriptionId).collect(Collectors.toSet());
-				List<ConceptPojo> fullConcepts = snowstormClient.getFullConcepts(SnowstormClient.ConceptBulkLoadRequest.byDescriptionId(descriptionIds), projectBranchPath);
-				concepts.addAll(fullConcepts.stream()
-								.filter(c1 -> concepts.stream().noneMatch(c2 -> c1.equals(c2)))
-								.collect(Collectors.toList())
-				);
+				for (ConceptPojo fullConcept : getFullConcepts(SnowstormClient.ConceptBulkLoadRequest.byDescriptionId(descriptionIds), projectBranchPath)) {
+					if (conceptMap.putIfAbsent(fullConcept.getConceptId(), fullConcept) == null) {
+						changeTracker.snapshot(fullConcept);
+					}
+				}
 			}
 
-			Map<String, ConceptPojo> conceptMap = concepts.stream().collect(Collectors.toMap(ConceptPojo::getConceptId, Function.identity()));
 			Map<String, DescriptionPojo> descriptionIdMap = descriptions.stream().collect(Collectors.toMap(DescriptionPojo::getDescriptionId, Function.identity()));
+			ChangeResultRegistry<DescriptionPojo> changeRegistry = new ChangeResultRegistry<>(changes);
 
 			Map<String, String > descriptionsFound = new HashMap <>();
 			Map<String, String > invalidModuleDescriptions = new HashMap <>();
-			for (ConceptPojo loadedConcept : concepts) {
+			for (ConceptPojo loadedConcept : conceptMap.values()) {
 				for (DescriptionPojo loadedDescription : loadedConcept.getDescriptions()) {
 					DescriptionPojo descriptionUpdate = descriptionIdMap.get(loadedDescription.getDescriptionId());
 					if (descriptionUpdate != null) {
@@ -253,7 +282,7 @@ public class HighLevelAuthoringService {
 									.filter(loadedDescription.getAcceptabilityMap().keySet()::contains)
 									.collect(Collectors.toSet());
 							if (!intersectedLanguageRefsets.isEmpty()) {
-								getChangeResult(changes, descriptionUpdate, DESCRIPTION_WITH_ID_COMPARATOR).addWarning("The description is referenced in following context based language reference set " + intersectedLanguageRefsets);
+								changeRegistry.getById(descriptionUpdate.getDescriptionId()).addWarning("The description is referenced in following context based language reference set " + intersectedLanguageRefsets);
 							}
 						}
 					}
@@ -265,13 +294,13 @@ public class HighLevelAuthoringService {
 
 			// Fail all descriptions which were not found to update
 			for (String notFoundDescriptionId : difference(descriptionIdMap.keySet(), descriptionIdsFound)) {
-				getChangeResult(changes, descriptionIdMap.get(notFoundDescriptionId), DESCRIPTION_WITH_ID_COMPARATOR).fail("Description not found on the specified branch.");
+				changeRegistry.getById(notFoundDescriptionId).fail("Description not found on the specified branch.");
 				descriptionIdMap.remove(notFoundDescriptionId);
 			}
 
 			// Fail all descriptions which have invalid module
 			for (String descriptionId : invalidModuleDescriptions.keySet()) {
-				getChangeResult(changes, descriptionIdMap.get(descriptionId), DESCRIPTION_WITH_ID_COMPARATOR)
+				changeRegistry.getById(descriptionId)
 						.fail(String.format("Could not update description %s.", defaultModuleId != null ? "in the core module" : "against module id " + defaultModuleId));
 				descriptionIdMap.remove(descriptionId);
 			}
@@ -282,24 +311,22 @@ public class HighLevelAuthoringService {
 					changeResult.getComponent().setConceptId(descriptionsFound.get(changeResult.id()));
 				}
 			}
+			// Index the changes by concept again now that each description found has its concept id
+			ChangeResultRegistry<DescriptionPojo> conceptChangeRegistry = new ChangeResultRegistry<>(changes);
 
 			if(!descriptionIdMap.keySet().isEmpty()) {
 				// Split into batches
-				int batchNumber = 0;
-				for (List<ConceptPojo> conceptTaskBatch : Iterables.partition(conceptMap.values(), request.getBatchSize())) {
-					batchNumber++;
-					String branchPath = getBatchBranch(request, batchNumber);
-
+				List<List<ConceptPojo>> conceptTaskBatches = Lists.partition(new ArrayList<>(conceptMap.values()), request.getBatchSize());
+				runTaskBatches(request, conceptTaskBatches, changes, conceptTaskBatch -> conceptChangeRegistry.forConcepts(getConceptIds(conceptTaskBatch)).getAll(), (conceptTaskBatch, branchPath) -> {
 					// Split into smaller batches if the number of per branch changes exceeds the number of concepts which should be processed at a time.
-					for (List<ConceptPojo> conceptProcessingBatch : Iterables.partition(conceptTaskBatch, processingBatchMaxSize)) {
-						updateDescriptionBatch(conceptProcessingBatch, descriptionIdMap, changes, branchPath);
-					}
-				}
+					runProcessingBatches(batchSizer.partition(conceptTaskBatch), branchPath, conceptProcessingBatch ->
+							prepareDescriptionUpdate(conceptProcessingBatch, descriptionIdMap, conceptChangeRegistry.forConcepts(getConceptIds(conceptProcessingBatch)).getAll()));
+				});
 			}
 
 			// Mark all changes which have not failed as successful
 			changes.stream().filter(change -> change.getSuccess() == null).forEach(ChangeResult::success);
-		} catch (WebClientException | TimeoutException e) {// This RuntimeException is thrown by WebClient
+		} catch (WebClientException e) {// This RuntimeException is thrown by WebClient
 			logger.error("Failed to communicate with the terminology server.", e);
 			failAllRemaining(changes, "Failed to communicate with the terminology server.");
 		}
@@ -343,35 +370,34 @@ public class HighLevelAuthoringService {
 				conceptIdToDescriptionReplacementMap.computeIfAbsent(changeResultDescriptionReplacement.getComponent().getInactivatedDescription().getConceptId(), (key) -> new HashSet<>()).add(changeResultDescriptionReplacement.getComponent());
 			}
 
-			// Split into batches of how many changes per branch / task
-			int batchNumber = 0;
-			for (List<String> conceptIdTaskBatch : Iterables.partition(conceptIdToDescriptionMap.keySet(), request.getBatchSize())) {
-
-				batchNumber++;
-				String branchPath = getBatchBranch(request, batchNumber);
+			ChangeResultRegistry<DescriptionReplacementPojo> changeRegistry = new ChangeResultRegistry<>(changes);
 
+			// Split into batches of how many changes per branch / task
+			List<List<String>> conceptIdTaskBatches = Lists.partition(new ArrayList<>(conceptIdToDescriptionMap.keySet()), request.getBatchSize());
+			runTaskBatches(request, conceptIdTaskBatches, changes, conceptIdTaskBatch -> changeRegistry.forConcepts(conceptIdTaskBatch).getAll(), (conceptIdTaskBatch, branchPath) -> {
 				// Split into smaller batches if the number of per branch changes exceeds the number of concepts which should be processed at a time.
-				for (List<String> conceptIdProcessingBatch : Iterables.partition(conceptIdTaskBatch, processingBatchMaxSize)) {
+				runProcessingBatches(batchSizer.partition(conceptIdTaskBatch), branchPath, conceptIdProcessingBatch -> {
 					Map<String, Set<DescriptionPojo>> batchMap = new HashMap<>();
 					for (String conceptId : conceptIdProcessingBatch) {
 						batchMap.put(conceptId, conceptIdToDescriptionMap.get(conceptId));
 					}
-					replaceDescriptionBatch(batchMap, defaultModuleId, changes, conceptIdToDescriptionReplacementMap, branchPath);
-				}
-			}
+					return prepareDescriptionReplacement(batchMap, defaultModuleId, changeRegistry.forConcepts(conceptIdProcessingBatch), conceptIdToDescriptionReplacementMap, branchPath);
+				});
+			});
 
-		} catch (WebClientException | TimeoutException e) {// This RuntimeException is thrown by WebClient
+		} catch (WebClientException e) {// This RuntimeException is thrown by WebClient
 			logger.error("Failed to communicate with the terminology server.", e);
 			failAllRemaining(changes, "Failed to communicate with the terminology server.");
 		}
 
 		return new ArrayList<>(changes);
 	}
-	private void replaceDescriptionBatch(Map <String, Set <DescriptionPojo>> conceptIdToDescriptionMap, String defaultModuleId,
-										 List <ChangeResult <DescriptionReplacementPojo>> changes, Map<String, Set<DescriptionReplacementPojo>> conceptIdToDescriptionReplacementMap, String branchPath) throws BusinessServiceException, TimeoutException {
+	private PreparedBatch<DescriptionReplacementPojo> prepareDescriptionReplacement(Map <String, Set <DescriptionPojo>> conceptIdToDescriptionMap, String defaultModuleId,
+										 ChangeResultRegistry<DescriptionReplacementPojo> changes, Map<String, Set<DescriptionReplacementPojo>> conceptIdToDescriptionReplacementMap, String branchPath) throws BusinessServiceException {
 
 		// Batch load concepts
-		List<ConceptPojo> concepts = snowstormClient.getFullConcepts(SnowstormClient.ConceptBulkLoadRequest.byConceptId(conceptIdToDescriptionMap.keySet()), branchPath);
+		List<ConceptPojo> concepts = getFullConcepts(SnowstormClient.ConceptBulkLoadRequest.byConceptId(conceptIdToDescriptionMap.keySet()), branchPath);
+		changeTracker.snapshot(concepts);
 
 		Map<String, ConceptPojo> conceptMap = concepts.stream().collect(Collectors.toMap(ConceptPojo::getConceptId, Function.identity()));
 		Map<String, ConceptPojo> updatedConceptMap = new HashMap <>();
@@ -380,58 +406,49 @@ public class HighLevelAuthoringService {
 			if (concept == null) {
 				Set<DescriptionReplacementPojo> descriptionReplacements = conceptIdToDescriptionReplacementMap.get(conceptId);
 				for (DescriptionReplacementPojo desc : descriptionReplacements) {
-					getChangeResult(changes, desc, DESCRIPTION_REPLACEMENT_WITH_CONCEPT_ID_COMPARATOR).fail(format("Concept %s not found.", conceptId));
+					changes.getById(desc.getId()).fail(format("Concept %s not found.", conceptId));
 				}
 			} else {
 				boolean skipUpdatingConcept = false;
 				boolean descriptionFound = false;
 				String descriptionId = null;
 				String error = null;
-				Map<String, DescriptionPojo>  descriptionMap = concept.getDescriptions().stream().collect(Collectors.toMap(DescriptionPojo::getDescriptionId, Function.identity()));
+				// Index the concept's descriptions, and its replacements by the description they update, once for all lookups below
+				Map<String, DescriptionPojo> descriptionMap = concept.getDescriptions().stream().collect(Collectors.toMap(DescriptionPojo::getDescriptionId, Function.identity()));
+				Map<String, List<DescriptionReplacementPojo>> replacementsByUpdatedDescriptionId = new HashMap<>();
+				for (DescriptionReplacementPojo descriptionReplacement : conceptIdToDescriptionReplacementMap.get(conceptId)) {
+					if (descriptionReplacement.getUpdatedDescription() != null) {
+						replacementsByUpdatedDescriptionId.computeIfAbsent(descriptionReplacement.getUpdatedDescription().getDescriptionId(), key -> new ArrayList<>()).add(descriptionReplacement);
+					}
+				}
 
 				// Start validating all descriptions against term server
 				for (DescriptionPojo description : conceptIdToDescriptionMap.get(conceptId)) {
 					descriptionId = description.getDescriptionId();
 					if (!descriptionId.contains("-")) {
-                        for (DescriptionPojo loadedDescription : concept.getDescriptions()) {
-                            if (loadedDescription.getDescriptionId().equals(descriptionId)) {
-                                descriptionFound = true;
-                                if (defaultModuleId == null || loadedDescription.getModuleId().equals(defaultModuleId)) {
-                                    if (!description.isActive()) {
-                                        if (!loadedDescription.isActive() || !loadedDescription.isReleased()) {
-                                            error = format("Could not inactivate %s with Id %s.", !loadedDescription.isActive() ? "an existing inactive description" : "the unpublished description" , loadedDescription.getDescriptionId());
-                                            break;
-                                        }
-                                    } else {
-                                        // Get the list of Preferred acceptabilty from the inactivated description
-                                        for (DescriptionReplacementPojo descriptionReplacement : conceptIdToDescriptionReplacementMap.get(conceptId)) {
-                                            if (descriptionReplacement.getUpdatedDescription() != null
-												&& descriptionReplacement.getUpdatedDescription().getDescriptionId().equals(descriptionId)) {
-                                                DescriptionPojo inactivatedDescription = descriptionMap.get(descriptionReplacement.getInactivatedDescription().getDescriptionId());
-                                                if (inactivatedDescription != null) {
-                                                    Map<String, DescriptionPojo.Acceptability> acceptabilityMap = inactivatedDescription.getAcceptabilityMap();
-                                                    List<String> updatedAcceptabilities = new ArrayList <>();
-                                                    for (String key : acceptabilityMap.keySet()) {
-                                                        if (PREFERRED.equals(acceptabilityMap.get(key))) {
-                                                            updatedAcceptabilities.add(key);
-                                                        }
-                                                    }
-                                                    if (updatedAcceptabilities.isEmpty()) {
-                                                        error = format("No Preferred Acceptability in description %s", descriptionReplacement.getInactivatedDescription().getAcceptabilityMap());
-                                                        break;
-                                                    }
-                                                }
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-                        }
+						DescriptionPojo loadedDescription = descriptionMap.get(descriptionId);
+						descriptionFound = loadedDescription != null;
+						if (descriptionFound && (defaultModuleId == null || loadedDescription.getModuleId().equals(defaultModuleId))) {
+							if (!description.isActive()) {
+								if (!loadedDescription.isActive() || !loadedDescription.isReleased()) {
+									error = format("Could not inactivate %s with Id %s.", !loadedDescription.isActive() ? "an existing inactive description" : "the unpublished description" , loadedDescription.getDescriptionId());
+								}
+							} else {
+								// Get the list of Preferred acceptabilty from the inactivated description
+								for (DescriptionReplacementPojo descriptionReplacement : replacementsByUpdatedDescriptionId.getOrDefault(descriptionId, Collections.emptyList())) {
+									DescriptionPojo inactivatedDescription = descriptionMap.get(descriptionReplacement.getInactivatedDescription().getDescriptionId());
+									if (inactivatedDescription != null && getPreferredLanguageRefsets(inactivatedDescription).isEmpty()) {
+										error = format("No Preferred Acceptability in description %s", descriptionReplacement.getInactivatedDescription().getAcceptabilityMap());
+										break;
+									}
+								}
+							}
+						}
 						if (!descriptionFound || error != null) {
 							skipUpdatingConcept = true;
 							break;
 						}
-                    }
+					}
 				}
 				// End validation
 
@@ -459,43 +476,33 @@ public class HighLevelAuthoringService {
 							}
 						} else {
 							// Update the replacement description if specified and inactivate the provided description
-							for (DescriptionPojo loadedDescription : concept.getDescriptions()) {
-								if (loadedDescription.getDescriptionId().equals(description.getDescriptionId())) {
-									if (!description.isActive()) {
-										loadedDescription.setInactivationIndicator(description.getInactivationIndicator());
-										loadedDescription.setAssociationTargets(description.getAssociationTargets());
-										loadedDescription.setActive(false);
-									} else {
-										// Get the list of Preferred acceptability from the being inactivated description
-										for (DescriptionReplacementPojo descriptionReplacement : conceptIdToDescriptionReplacementMap.get(conceptId)) {
-											if (descriptionReplacement.getUpdatedDescription() != null
-												&& descriptionReplacement.getUpdatedDescription().getDescriptionId().equals(description.getDescriptionId())) {
-												DescriptionPojo inactivatedDescription = descriptionMap.get(descriptionReplacement.getInactivatedDescription().getDescriptionId());
-												if (inactivatedDescription != null) {
-													Map<String, DescriptionPojo.Acceptability> acceptabilityMap = inactivatedDescription.getAcceptabilityMap();
-													if (DescriptionPojo.Type.FSN == inactivatedDescription.getType()) {
-														loadedDescription.setAcceptabilityMap(acceptabilityMap);
-													} else {
-														List<String> updatedAcceptabilities = new ArrayList <>();
-														for (String key : acceptabilityMap.keySet()) {
-															if (PREFERRED.equals(acceptabilityMap.get(key))) {
-																updatedAcceptabilities.add(key);
-															}
-														}
-
-														// update new acceptability for replaced description
-														if (!updatedAcceptabilities.isEmpty()) {
-															acceptabilityMap = loadedDescription.getAcceptabilityMap();
-															if (acceptabilityMap == null) {
-																acceptabilityMap = new HashMap <>();
-															}
-															for (String languageRefset : updatedAcceptabilities) {
-																acceptabilityMap.put(languageRefset, PREFERRED);
-															}
-															loadedDescription.setAcceptabilityMap(acceptabilityMap);
-															loadedDescription.setActive(true);
-														}
+							DescriptionPojo loadedDescription = descriptionMap.get(description.getDescriptionId());
+							if (loadedDescription != null) {
+								if (!description.isActive()) {
+									loadedDescription.setInactivationIndicator(description.getInactivationIndicator());
+									loadedDescription.setAssociationTargets(description.getAssociationTargets());
+									loadedDescription.setActive(false);
+								} else {
+									// Get the list of Preferred acceptability from the being inactivated description
+									for (DescriptionReplacementPojo descriptionReplacement : replacementsByUpdatedDescriptionId.getOrDefault(description.getDescriptionId(), Collections.emptyList())) {
+										DescriptionPojo inactivatedDescription = descriptionMap.get(descriptionReplacement.getInactivatedDescription().getDescriptionId());
+										if (inactivatedDescription != null) {
+											if (DescriptionPojo.Type.FSN == inactivatedDescription.getType()) {
+												loadedDescription.setAcceptabilityMap(inactivatedDescription.getAcceptabilityMap());
+											} else {
+												List<String> updatedAcceptabilities = getPreferredLanguageRefsets(inactivatedDescription);
+
+												// update new acceptability for replaced description
+												if (!updatedAcceptabilities.isEmpty()) {
+													Map<String, DescriptionPojo.Acceptability> acceptabilityMap = loadedDescription.getAcceptabilityMap();
+													if (acceptabilityMap == null) {
+														acceptabilityMap = new HashMap <>();
+													}
+													for (String languageRefset : updatedAcceptabilities) {
+														acceptabilityMap.put(languageRefset, PREFERRED);
 													}
+													loadedDescription.setAcceptabilityMap(acceptabilityMap);
+													loadedDescription.setActive(true);
 												}
 											}
 										}
@@ -507,7 +514,7 @@ public class HighLevelAuthoringService {
 					if (!concept.isActive()) {
 						Set<DescriptionReplacementPojo> descriptionReplacements = conceptIdToDescriptionReplacementMap.get(conceptId);
 						for (DescriptionReplacementPojo descriptionReplacement : descriptionReplacements) {
-							getChangeResult(changes, descriptionReplacement, DESCRIPTION_REPLACEMENT_WITH_CONCEPT_ID_COMPARATOR).addWarning("Adding or replacing description to inactive concept");
+							changes.getById(descriptionReplacement.getId()).addWarning("Adding or replacing description to inactive concept");
 						}
 					}
 					updatedConceptMap.put(conceptId, concept);
@@ -526,7 +533,7 @@ public class HighLevelAuthoringService {
 								errorMsg = error;
 							}
 							invalidDescriptionReplacement = descriptionReplacement;
-							getChangeResult(changes, descriptionReplacement, DESCRIPTION_REPLACEMENT_WITH_CONCEPT_ID_COMPARATOR).fail(errorMsg);
+							changes.getById(descriptionReplacement.getId()).fail(errorMsg);
 							break;
 						}
 					}
@@ -534,7 +541,7 @@ public class HighLevelAuthoringService {
 					if (invalidDescriptionReplacement != null) {
 						for (DescriptionReplacementPojo descriptionReplacement : descriptionReplacements) {
 							if (!descriptionReplacement.getId().equals(invalidDescriptionReplacement.getId())) {
-								getChangeResult(changes, descriptionReplacement, DESCRIPTION_REPLACEMENT_WITH_CONCEPT_ID_COMPARATOR).fail(format("Skip replacing this description. See the error in Description Replacement of %s.", invalidDescriptionReplacement.getId()));
+								changes.getById(descriptionReplacement.getId()).fail(format("Skip replacing this description. See the error in Description Replacement of %s.", invalidDescriptionReplacement.getId()));
 							}
 						}
 					}
@@ -542,12 +549,12 @@ public class HighLevelAuthoringService {
 			}
 		}
 
-		if (!updatedConceptMap.isEmpty()) {
-			bulkValidateThenUpdateConcepts(updatedConceptMap, branchPath, changes);
-
-			// Mark all changes which have not failed as successful
-			changes.stream().filter(change -> change.getSuccess() == null).forEach(ChangeResult::success);
+		if (updatedConceptMap.isEmpty()) {
+			return null;
 		}
+		// Mark all changes which have not failed as successful
+		return new PreparedBatch<>(updatedConceptMap, changes.getAll(),
+				() -> changes.getAll().stream().filter(change -> change.getSuccess() == null).forEach(ChangeResult::success));
 	}
 
 	public List<ChangeResult<? extends SnomedComponent>> updateAxioms(
@@ -562,21 +569,24 @@ public class HighLevelAuthoringService {
 			// Initial terminology server communication check
 			snowstormClient.getBranch("MAIN");
 
-			// Split into batches, changes per task
-			int batchNumber = 0;
-			for (List<AxiomPojo> axiomsTaskBatch : Iterables.partition(axioms, request.getBatchSize())) {
-				batchNumber++;
-				String branchPath = getBatchBranch(request, batchNumber);
+			ChangeResultRegistry<AxiomPojo> changeRegistry = new ChangeResultRegistry<>(changes);
 
-				// Split into smaller batches if the number of per branch changes exceeds the number of concepts which should be processed at a time.
-				for (List<AxiomPojo> axiomsProcessingBatch : Iterables.partition(axiomsTaskBatch, processingBatchMaxSize)) {
-					List<ChangeResult<AxiomPojo>> changesBatch = changes.stream()
-							.filter(axiomPojoChangeResult -> axiomsProcessingBatch.contains(axiomPojoChangeResult.getComponent()))
-							.collect(Collectors.toList());
-					updateAxiomBatch(axiomsProcessingBatch, changesBatch, branchPath);
-				}
+			// All axioms of a concept go in the same task batch and processing batch, batches must not share concepts
+			Map<String, List<AxiomPojo>> conceptIdToAxioms = new LinkedHashMap<>();
+			for (AxiomPojo axiom : axioms) {
+				conceptIdToAxioms.computeIfAbsent(axiom.getConceptId(), key -> new ArrayList<>()).add(axiom);
 			}
-		} catch (WebClientException | TimeoutException e) {// This RuntimeException is thrown by WebClient
+
+			// Split into batches, concepts per task
+			List<List<List<AxiomPojo>>> conceptAxiomsTaskBatches = Lists.partition(new ArrayList<>(conceptIdToAxioms.values()), request.getBatchSize());
+			runTaskBatches(request, conceptAxiomsTaskBatches, changes, conceptAxiomsTaskBatch -> changeRegistry.forComponents(flatten(conceptAxiomsTaskBatch)).getAll(), (conceptAxiomsTaskBatch, branchPath) -> {
+				// Split into smaller batches if the number of per branch changes exceeds the number of concepts which should be processed at a time.
+				runProcessingBatches(batchSizer.partition(conceptAxiomsTaskBatch), branchPath, conceptAxiomsProcessingBatch -> {
+					List<AxiomPojo> axiomsProcessingBatch = flatten(conceptAxiomsProcessingBatch);
+					return prepareAxiomUpdate(axiomsProcessingBatch, changeRegistry.forComponents(axiomsProcessingBatch), branchPath);
+				});
+			});
+		} catch (WebClientException e) {// This RuntimeException is thrown by WebClient
 			logger.error("Failed to communicate with the terminology server.", e);
 			failAllRemaining(changes, "Failed to communicate with the terminology server.");
 		}
@@ -584,7 +594,7 @@ public class HighLevelAuthoringService {
 		return new ArrayList<>(changes);
 	}
 
-	private void updateDescriptionBatch(List<ConceptPojo> concepts,  Map<String, DescriptionPojo> descriptionIdMap, List<ChangeResult<DescriptionPojo>> changes, String branchPath) throws TimeoutException {
+	private PreparedBatch<DescriptionPojo> prepareDescriptionUpdate(List<ConceptPojo> concepts,  Map<String, DescriptionPojo> descriptionIdMap, List<ChangeResult<DescriptionPojo>> changes) {
 		// Update existing descriptions
 		for (ConceptPojo loadedConcept : concepts) {
 			for (DescriptionPojo loadedDescription : loadedConcept.getDescriptions()) {
@@ -633,13 +643,16 @@ public class HighLevelAuthoringService {
 		}
 
 		Map<String, ConceptPojo> conceptMap = concepts.stream().collect(Collectors.toMap(ConceptPojo::getConceptId, Function.identity()));
-		bulkValidateThenUpdateConcepts(conceptMap, branchPath, changes);
+		// Mark all changes which have not failed as successful
+		return new PreparedBatch<>(conceptMap, changes,
+				() -> changes.stream().filter(change -> change.getSuccess() == null).forEach(ChangeResult::success));
 	}
 
-	private void updateAxiomBatch(List<AxiomPojo> axiomBatch, List<ChangeResult<AxiomPojo>> changesBatch, String branchPath) throws BusinessServiceException, TimeoutException {
+	private PreparedBatch<AxiomPojo> prepareAxiomUpdate(List<AxiomPojo> axiomBatch, ChangeResultRegistry<AxiomPojo> changesBatch, String branchPath) throws BusinessServiceException {
 		// Batch load concepts by conceptId
 		Set<String> conceptIds = axiomBatch.stream().map(AxiomPojo::getConceptId).collect(Collectors.toSet());
-		List<ConceptPojo> concepts = snowstormClient.getFullConcepts(SnowstormClient.ConceptBulkLoadRequest.byConceptId(conceptIds), branchPath);
+		List<ConceptPojo> concepts = getFullConcepts(SnowstormClient.ConceptBulkLoadRequest.byConceptId(conceptIds), branchPath);
+		changeTracker.snapshot(concepts);
 
 		// Update existing axioms
 		Map<String, Set<AxiomPojo>> conceptIdAxiomSetMap = new HashMap<>();
@@ -675,15 +688,169 @@ public class HighLevelAuthoringService {
 		}
 		// Fail all axioms which were not found to update
 		for (AxiomPojo notFoundAxiom : difference(new HashSet<>(axiomBatch), axiomsFound)) {
-			getChangeResult(changesBatch, notFoundAxiom).fail("Axiom not found on the specified branch.");
+			changesBatch.getByComponent(notFoundAxiom).fail("Axiom not found on the specified branch.");
 		}
 
-		if (!axiomsFound.isEmpty()) {
-			Map<String, ConceptPojo> conceptMap = concepts.stream().collect(Collectors.toMap(ConceptPojo::getConceptId, Function.identity()));
-			bulkValidateThenUpdateConcepts(conceptMap, branchPath, changesBatch);
-			// Mark all changes which have not failed as successful
-			changesBatch.stream().filter(change -> change.getSuccess() == null).forEach(ChangeResult::success);
+		if (axiomsFound.isEmpty()) {
+			return null;
 		}
+		Map<String, ConceptPojo> conceptMap = concepts.stream().collect(Collectors.toMap(ConceptPojo::getConceptId, Function.identity()));
+		// Mark all changes which have not failed as successful
+		return new PreparedBatch<>(conceptMap, changesBatch.getAll(),
+				() -> changesBatch.getAll().stream().filter(change -> change.getSuccess() == null).forEach(ChangeResult::success));
+	}
+
+	/**
+	 * Processes the task batches in parallel, taskBatchConcurrency at a time, when each task batch has its own task branch so they cannot conflict.
+	 * Without a project key every batch is saved to the request's branch, so the batches are then processed one at a time.
+	 * The tasks and branches of all batches are created up front, taskProvisioningConcurrency at a time, and each batch starts as soon
+	 * as its branch is ready. A task batch only ever updates its own changes, so a batch whose task cannot be created or which loses
+	 * contact with the terminology server, or finds the circuit to it open, fails just those and the other batches carry on.
+	 * Returns once every batch has finished.
+	 * The request's task batch listener, if any, is told about each batch as it starts and once it has finished, with the input rows of its changes.
+	 * A batch whose task could not be created, or which lost contact with the terminology server or found its circuit open, is not reported
+	 * so a resumed job tries it again.
+	 */
+	private <B, T extends SnomedComponent> void runTaskBatches(ComponentTransformationRequest request, List<B> taskBatches, List<ChangeResult<T>> changes,
+			Function<B, List<ChangeResult<T>>> getTaskBatchChanges, TaskBatchProcessor<B> processor) throws BusinessServiceException {
+		TaskBatchListener taskBatchListener = request.getTaskBatchListener();
+		// Changes are in the order of the input rows
+		Map<ChangeResult<T>, Integer> changeRows = new IdentityHashMap<>();
+		if (taskBatchListener != null) {
+			for (int row = 0; row < changes.size(); row++) {
+				changeRows.put(changes.get(row), row);
+			}
+		}
+		// Batches sharing a branch would race to save it, each validating against a head the others are changing
+		int concurrency = isEmpty(request.getProjectKey()) ? 1 : taskBatchConcurrency;
+		try {
+			Flux.range(0, taskBatches.size())
+					.flatMap(index -> Mono.fromCallable(() -> {
+								int batchNumber = index + 1;
+								try {
+									return Tuples.of(index, getBatchBranch(request, batchNumber));
+								} catch (WebClientException | CircuitBreakerOpenException e) {
+									logger.error("Failed to create the task for task batch #{}.", batchNumber, e);
+									failAllRemaining(getTaskBatchChanges.apply(taskBatches.get(index)), "Failed to create the authoring task for this batch.");
+									// An empty result skips the batch
+									return null;
+								}
+							})
+							.subscribeOn(Schedulers.boundedElastic()), taskProvisioningConcurrency)
+					.flatMapDelayError(taskBranch -> Mono.fromCallable(() -> {
+								B taskBatch = taskBatches.get(taskBranch.getT1());
+								int batchNumber = taskBranch.getT1() + 1;
+								List<ChangeResult<T>> taskBatchChanges = getTaskBatchChanges.apply(taskBatch);
+								List<Integer> rows = null;
+								if (taskBatchListener != null) {
+									rows = taskBatchChanges.stream().map(changeRows::get).collect(Collectors.toList());
+									taskBatchListener.taskBatchStarted(rows, taskBranch.getT2());
+								}
+								try {
+									processor.process(taskBatch, taskBranch.getT2());
+								} catch (WebClientException | TimeoutException e) {// This RuntimeException is thrown by WebClient
+									logger.error("Failed to communicate with the terminology server during task batch #{}.", batchNumber, e);
+									failAllRemaining(taskBatchChanges, "Failed to communicate with the terminology server.");
+									// Not reported, the batch did not finish so a resumed job tries it again
+									return null;
+								} catch (CircuitBreakerOpenException e) {
+									logger.error("Terminology server calls of task batch #{} were refused.", batchNumber, e);
+									failAllRemaining(taskBatchChanges, "The terminology server has been failing or responding too slowly, calls to it are paused for a while.");
+									return null;
+								}
+								if (taskBatchListener != null) {
+									taskBatchListener.taskBatchCompleted(rows, new ArrayList<>(taskBatchChanges));
+								}
+								return null;
+							})
+							.subscribeOn(Schedulers.boundedElastic()), concurrency, 1)
+					.blockLast();
+		} catch (RuntimeException e) {
+			// Other task batches are allowed to finish before the first failure is thrown
+			for (Throwable failure : Exceptions.unwrapMultiple(Exceptions.unwrap(e))) {
+				Throwable cause = Exceptions.unwrap(failure);
+				if (cause instanceof BusinessServiceException) {
+					throw (BusinessServiceException) cause;
+				}
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Loads the concepts, recording the round-trip so later processing batches are sized by it.
+	 * Concepts are loaded as they are on the branch now, never from the cache, as they are changed and saved back.
+	 */
+	private List<ConceptPojo> getFullConcepts(SnowstormClient.ConceptBulkLoadRequest conceptBulkLoadRequest, String branchPath) {
+		long start = System.nanoTime();
+		List<ConceptPojo> concepts = snowstormClient.getCurrentFullConcepts(conceptBulkLoadRequest, branchPath);
+		batchSizer.record(AdaptiveBatchSizer.RoundTrip.LOAD, concepts, System.nanoTime() - start);
+		return concepts;
+	}
+
+	/**
+	 * Runs the processing batches of one task batch as a pipeline of three stages: load and change, validate, then save.
+	 * A batch is loaded and validated while earlier ones are still being saved, saves to the task branch are made one at a time, in order.
+	 * At most pipelineMaxBatches batches are held between starting to load and finishing their save, loading waits for a save to finish.
+	 * Batches must not share concepts, or a later batch could overwrite what an earlier one saved. A batch which loaded a concept
+	 * while an earlier batch holding it was still in the pipeline fails with an IllegalStateException.
+	 */
+	private <P, T extends SnomedComponent> void runProcessingBatches(Iterable<P> processingBatches, String branchPath,
+			ProcessingBatchPreparer<P, T> preparer) throws BusinessServiceException, TimeoutException {
+		Semaphore batchesInPipeline = new Semaphore(pipelineMaxBatches);
+		Set<String> conceptsInPipeline = ConcurrentHashMap.newKeySet();
+		try {
+			Flux.fromIterable(processingBatches)
+					.concatMap(processingBatch -> Mono.fromCallable(() -> {
+								batchesInPipeline.acquire();
+								// Batches are prepared one at a time, only those already in the pipeline can be saved during this load
+								Set<String> conceptsSavedDuringLoad = new HashSet<>(conceptsInPipeline);
+								PreparedBatch<T> preparedBatch = preparer.prepare(processingBatch);
+								if (preparedBatch == null) {
+									// Nothing to save
+									batchesInPipeline.release();
+									return null;
+								}
+								Set<String> sharedConcepts = new HashSet<>(preparedBatch.conceptIds);
+								sharedConcepts.retainAll(conceptsSavedDuringLoad);
+								if (!sharedConcepts.isEmpty()) {
+									throw new IllegalStateException(format("Processing batches share concepts %s, a later batch would overwrite what an earlier one saved.", sharedConcepts));
+								}
+								conceptsInPipeline.addAll(preparedBatch.conceptIds);
+								return preparedBatch;
+							})
+							.subscribeOn(Schedulers.boundedElastic()))
+					.concatMap(preparedBatch -> validateConceptsAsync(preparedBatch.conceptMap, branchPath, preparedBatch.changes)
+							.thenReturn(preparedBatch))
+					.concatMap(preparedBatch -> updateConceptsAsync(preparedBatch.conceptMap, branchPath, preparedBatch.changes)
+							.then(Mono.fromCallable(() -> {
+										preparedBatch.afterSave.run();
+										return preparedBatch;
+									})
+									.subscribeOn(Schedulers.boundedElastic()))
+							.doFinally(signal -> {
+								conceptsInPipeline.removeAll(preparedBatch.conceptIds);
+								batchesInPipeline.release();
+							}))
+					.blockLast();
+		} catch (RuntimeException e) {
+			Throwable cause = Exceptions.unwrap(e);
+			if (cause instanceof BusinessServiceException) {
+				throw (BusinessServiceException) cause;
+			}
+			if (cause instanceof TimeoutException) {
+				throw (TimeoutException) cause;
+			}
+			throw e;
+		}
+	}
+
+	private static List<AxiomPojo> flatten(List<List<AxiomPojo>> conceptAxioms) {
+		return conceptAxioms.stream().flatMap(List::stream).collect(Collectors.toList());
+	}
+
+	private static Set<String> getConceptIds(Collection<ConceptPojo> concepts) {
+		return concepts.stream().map(ConceptPojo::getConceptId).collect(Collectors.toSet());
 	}
 
 	private String getBatchBranch(ComponentTransformationRequest request, int batchNumber) {
@@ -710,6 +877,7 @@ public class HighLevelAuthoringService {
 
 	/**
 	 * Any concepts which fail validation or update will be removed from the conceptMap.
+	 * So are concepts which have not changed since they were loaded, their changes are reported as unchanged without validating or saving them.
 	 * @param conceptMap Map of concepts to be updated.
 	 * @param branchPath Branch path to validation and update against.
 	 * @param changes Set of changes contained in the concepts.
@@ -718,86 +886,160 @@ public class HighLevelAuthoringService {
 	 */
 	public <T extends SnomedComponent> void bulkValidateThenUpdateConcepts(Map<String, ConceptPojo> conceptMap, String branchPath,
 			List<ChangeResult<T>> changes) throws WebClientException, TimeoutException {
+		SnowstormClient.blockOrThrowTimeout(bulkValidateThenUpdateConceptsAsync(conceptMap, branchPath, changes));
+	}
 
+	/**
+	 * Non-blocking variant of {@link #bulkValidateThenUpdateConcepts(Map, String, List)}.
+	 * Any concepts which fail validation or update will be removed from the conceptMap once the returned Mono completes.
+	 */
+	public <T extends SnomedComponent> Mono<Void> bulkValidateThenUpdateConceptsAsync(Map<String, ConceptPojo> conceptMap, String branchPath,
+			List<ChangeResult<T>> changes) {
+		return validateConceptsAsync(conceptMap, branchPath, changes)
+				.then(updateConceptsAsync(conceptMap, branchPath, changes));
+	}
+
+	/**
+	 * Removes concepts which have not changed, then those which fail validation, from the conceptMap.
+	 */
+	private <T extends SnomedComponent> Mono<Void> validateConceptsAsync(Map<String, ConceptPojo> conceptMap, String branchPath,
+			List<ChangeResult<T>> changes) {
+
+		Mono<Void> validation = Mono.fromRunnable(() -> removeUnchangedConcepts(conceptMap, changes));
 		if (!skipDroolsValidation) {
 			// Run batch validation
-			List<ConceptValidationResult> validationResults = snowstormClient.runValidation(branchPath, conceptMap.values());
-
-			Map<String, Set<ConceptValidationResult>> conceptValidationResultMap = new HashMap<>();
-			for (ConceptValidationResult validationResult : validationResults) {
-				conceptValidationResultMap.computeIfAbsent(validationResult.getConceptId(), (c) -> new TreeSet<>(CONCEPT_VALIDATION_RESULT_COMPARATOR)).add(validationResult);
-			}
-
-			// Remove concepts with validation errors
-			// All component changes for this concept will not be saved
-			Set<String> conceptsWithError = validationResults.stream()
-					.filter(validationResult -> validationResult.getSeverity() == ERROR)
-					.map(ConceptValidationResult::getConceptId)
-					.collect(Collectors.toSet());
-			logger.info("{} concepts had validation errors.", conceptsWithError.size());
-			for (String conceptWithError : conceptsWithError) {
-				changes.stream()
-						.filter(change -> change.getSuccess() == null && change.getComponent().getConceptId() != null && change.getComponent().getConceptId().equals(conceptWithError))
-						.forEach(changeResult -> changeResult.fail(format("Concept validation errors: %s", conceptValidationResultMap.get(conceptWithError).toString())));
-				conceptMap.remove(conceptWithError);
-				// Whole concept removed from map so changes will not appear in the update request.
-			}
+			validation = validation.then(Mono.defer(() -> {
+				if (conceptMap.isEmpty()) {
+					return Mono.empty();
+				}
+				long start = System.nanoTime();
+				return snowstormClient.runValidationAsync(branchPath, conceptMap.values())
+						.doOnNext(validationResults -> batchSizer.record(AdaptiveBatchSizer.RoundTrip.VALIDATE, conceptMap.values(), System.nanoTime() - start))
+						.doOnNext(validationResults -> removeConceptsWithValidationErrors(validationResults, conceptMap, changes))
+						.then();
+			}));
 		}
+		return validation;
+	}
 
-		// Remove temp description UUIDs
-		for (ConceptPojo concept : conceptMap.values()) {
-			for (DescriptionPojo description : concept.getDescriptions()) {
-				if (description.getDescriptionId().contains("-")) {
-					description.setDescriptionId(null);
+	/**
+	 * Saves the concepts left in the conceptMap, any which can not be saved are removed.
+	 */
+	private <T extends SnomedComponent> Mono<Void> updateConceptsAsync(Map<String, ConceptPojo> conceptMap, String branchPath,
+			List<ChangeResult<T>> changes) {
+
+		return Mono.defer(() -> {
+			// Remove temp description UUIDs
+			for (ConceptPojo concept : conceptMap.values()) {
+				for (DescriptionPojo description : concept.getDescriptions()) {
+					if (description.getDescriptionId().contains("-")) {
+						description.setDescriptionId(null);
+					}
 				}
 			}
-		}
 
-		if (conceptMap.isEmpty()) {
-			return;
-		}
+			if (conceptMap.isEmpty()) {
+				return Mono.empty();
+			}
 
-		// Bulk update concepts
-		Collection<ConceptPojo> conceptPojos = conceptMap.values();
-		ConceptChangeBatchStatus status = snowstormClient.saveUpdateConceptsNoValidation(conceptPojos, branchPath);
-		if (ConceptChangeBatchStatus.Status.FAILED == status.getStatus()) {
-			failAllRemaining(changes, "Persisting concept batch failed with message: " + status.getMessage());
-			conceptMap.clear();
-		}
+			// Bulk update concepts
+			return saveConceptsAsync(new ArrayList<>(conceptMap.values()), conceptMap, branchPath, changes, new AtomicInteger(saveRetryMaxSaves));
+		});
 	}
 
+	/**
+	 * Saves the concepts in one bulk save. If it fails and there are more than saveRetryMinSize concepts, each half is saved
+	 * again on its own, recursively, isolating the concepts which cause the failure so the rest are still saved.
+	 * No more than saveRetryMaxSaves retry saves are made for a batch, halves which can not be retried fail.
+	 * Failed concepts are removed from the conceptMap, their changes fail. If the whole batch fails, so do all remaining changes.
+	 */
+	private <T extends SnomedComponent> Mono<Void> saveConceptsAsync(List<ConceptPojo> concepts, Map<String, ConceptPojo> conceptMap, String branchPath,
+			List<ChangeResult<T>> changes, AtomicInteger retrySavesLeft) {
+
+		return Mono.defer(() -> {
+			long start = System.nanoTime();
+			return snowstormClient.saveUpdateConceptsNoValidationAsync(concepts, branchPath)
+					.flatMap(status -> {
+						batchSizer.record(AdaptiveBatchSizer.RoundTrip.SAVE, concepts, System.nanoTime() - start);
+						if (ConceptChangeBatchStatus.Status.FAILED != status.getStatus()) {
+							return Mono.empty();
+						}
+						if (concepts.size() > saveRetryMinSize && retrySavesLeft.addAndGet(-2) >= 0) {
+							logger.info("Saving {} concepts failed, retrying each half separately. {}", concepts.size(), status.getMessage());
+							int half = concepts.size() / 2;
+							// Saves to the branch are made one at a time
+							return saveConceptsAsync(concepts.subList(0, half), conceptMap, branchPath, changes, retrySavesLeft)
+									.then(saveConceptsAsync(concepts.subList(half, concepts.size()), conceptMap, branchPath, changes, retrySavesLeft));
+						}
+						String message = "Persisting concept batch failed with message: " + status.getMessage();
+						if (concepts.size() == conceptMap.size()) {
+							failAllRemaining(changes, message);
+							conceptMap.clear();
+						} else {
+							ChangeResultRegistry<T> changeRegistry = new ChangeResultRegistry<>(changes);
+							for (ConceptPojo concept : concepts) {
+								changeRegistry.failRemainingForConcept(concept.getConceptId(), message);
+								conceptMap.remove(concept.getConceptId());
+							}
+						}
+						return Mono.empty();
+					})
+					.then();
+		});
+	}
 
-	private ChangeResult<DescriptionPojo> getChangeResult(List<ChangeResult<DescriptionPojo>> changeResults, DescriptionPojo description, Comparator<DescriptionPojo> comparator) throws BusinessServiceException {
-		for (ChangeResult<DescriptionPojo> changeResult : changeResults) {
-			if (comparator.compare(changeResult.getComponent(), description) == 0) {
-				return changeResult;
+	private <T extends SnomedComponent> void removeUnchangedConcepts(Map<String, ConceptPojo> conceptMap, List<ChangeResult<T>> changes) {
+		ChangeResultRegistry<T> changeRegistry = null;
+		for (Iterator<ConceptPojo> iterator = conceptMap.values().iterator(); iterator.hasNext(); ) {
+			ConceptPojo concept = iterator.next();
+			if (changeTracker.isUnchanged(concept)) {
+				if (changeRegistry == null) {
+					changeRegistry = new ChangeResultRegistry<>(changes);
+				}
+				changeRegistry.getByConceptId(concept.getConceptId()).stream()
+						.filter(change -> change.getSuccess() == null)
+						.forEach(ChangeResult::unchanged);
+				iterator.remove();
 			}
 		}
-		String message = format("Change result not found for description %s", description.toString());
-		logger.error(message);
-		throw new BusinessServiceException(message);
 	}
 
-	private ChangeResult<DescriptionReplacementPojo> getChangeResult(List<ChangeResult<DescriptionReplacementPojo>> changeResults, DescriptionReplacementPojo descriptionReplacement, Comparator<DescriptionReplacementPojo> comparator) throws BusinessServiceException {
-		for (ChangeResult<DescriptionReplacementPojo> changeResult : changeResults) {
-			if (comparator.compare(changeResult.getComponent(), descriptionReplacement) == 0) {
-				return changeResult;
-			}
+	private <T extends SnomedComponent> void removeConceptsWithValidationErrors(List<ConceptValidationResult> validationResults,
+			Map<String, ConceptPojo> conceptMap, List<ChangeResult<T>> changes) {
+
+		Map<String, Set<ConceptValidationResult>> conceptValidationResultMap = new HashMap<>();
+		for (ConceptValidationResult validationResult : validationResults) {
+			conceptValidationResultMap.computeIfAbsent(validationResult.getConceptId(), (c) -> new TreeSet<>(CONCEPT_VALIDATION_RESULT_COMPARATOR)).add(validationResult);
+		}
+
+		// Remove concepts with validation errors
+		// All component changes for this concept will not be saved
+		Set<String> conceptsWithError = validationResults.stream()
+				.filter(validationResult -> validationResult.getSeverity() == ERROR)
+				.map(ConceptValidationResult::getConceptId)
+				.collect(Collectors.toSet());
+		logger.info("{} concepts had validation errors.", conceptsWithError.size());
+		ChangeResultRegistry<T> changeRegistry = new ChangeResultRegistry<>(changes);
+		for (String conceptWithError : conceptsWithError) {
+			changeRegistry.failRemainingForConcept(conceptWithError, format("Concept validation errors: %s", conceptValidationResultMap.get(conceptWithError).toString()));
+			conceptMap.remove(conceptWithError);
+			// Whole concept removed from map so changes will not appear in the update request.
 		}
-		String message = format("Change result not found for description %s", descriptionReplacement.toString());
-		logger.error(message);
-		throw new BusinessServiceException(message);
 	}
 
-	private ChangeResult<AxiomPojo> getChangeResult(List<ChangeResult<AxiomPojo>> changeResults, AxiomPojo axiom) throws BusinessServiceException {
-		for (ChangeResult<AxiomPojo> changeResult : changeResults) {
-			if (changeResult.getComponent().equals(axiom)) {
-				return changeResult;
+
+	private static List<String> getPreferredLanguageRefsets(DescriptionPojo description) {
+		List<String> preferredLanguageRefsets = new ArrayList<>();
+		for (Map.Entry<String, DescriptionPojo.Acceptability> acceptability : description.getAcceptabilityMap().entrySet()) {
+			if (PREFERRED.equals(acceptability.getValue())) {
+				preferredLanguageRefsets.add(acceptability.getKey());
 			}
 		}
-		String message = format("Change result not found for axiom %s", axiom.toString());
-		logger.error(message);
-		throw new BusinessServiceException(message);
+		return preferredLanguageRefsets;
+	}
+
+	private static ChangeResult<DescriptionPojo> getChangeResult(ChangeResultRegistry<DescriptionPojo> changes, DescriptionPojo description) throws BusinessServiceException {
+		return changes.getByConceptTermAndLang(description.getConceptId(), description.getTerm(), description.getLang());
 	}
 
 	private <T extends SnomedComponent> List<ChangeResult<? extends SnomedComponent>> failAllRemaining(List<ChangeResult<T>> changeResults, String message) {
@@ -805,4 +1047,38 @@ public class HighLevelAuthoringService {
 		return new ArrayList<>(changeResults);
 	}
 
+	private interface TaskBatchProcessor<B> {
+		void process(B taskBatch, String branchPath) throws BusinessServiceException, TimeoutException;
+	}
+
+	private interface ProcessingBatchPreparer<P, T extends SnomedComponent> {
+		/**
+		 * @return the loaded and changed concepts of the processing batch, or null if there is nothing to save.
+		 */
+		PreparedBatch<T> prepare(P processingBatch) throws BusinessServiceException, TimeoutException;
+	}
+
+	private interface AfterSave {
+		void run() throws BusinessServiceException, TimeoutException;
+	}
+
+	/**
+	 * A processing batch whose concepts have been loaded and changed, waiting to be validated and saved.
+	 */
+	private static final class PreparedBatch<T extends SnomedComponent> {
+
+		private final Map<String, ConceptPojo> conceptMap;
+		// As loaded, concepts are removed from the map when they fail validation or save
+		private final Set<String> conceptIds;
+		private final List<ChangeResult<T>> changes;
+		private final AfterSave afterSave;
+
+		private PreparedBatch(Map<String, ConceptPojo> conceptMap, List<ChangeResult<T>> changes, AfterSave afterSave) {
+			this.conceptMap = conceptMap;
+			this.conceptIds = new HashSet<>(conceptMap.keySet());
+			this.changes = changes;
+			this.afterSave = afterSave;
+		}
+	}
+
 }
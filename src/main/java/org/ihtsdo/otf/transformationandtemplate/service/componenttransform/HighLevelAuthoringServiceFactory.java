@@ -4,6 +4,7 @@ import org.ihtsdo.otf.transformationandtemplate.service.client.AuthoringServices
 import org.ihtsdo.otf.transformationandtemplate.service.client.AuthoringServicesClientFactory;
 import org.ihtsdo.otf.transformationandtemplate.service.client.SnowstormClient;
 import org.ihtsdo.otf.transformationandtemplate.service.client.SnowstormClientFactory;
+import org.ihtsdo.otf.transformationandtemplate.service.client.Workload;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -18,13 +19,44 @@ public class HighLevelAuthoringServiceFactory {
 	private AuthoringServicesClientFactory authoringServicesClientFactory;
 
 	@Value("${transformation.batch.max}")
+	private int processingBatchInitialSize;
+
+	@Value("${transformation.batch.adaptive.min}")
+	private int processingBatchMinSize;
+
+	@Value("${transformation.batch.adaptive.max}")
 	private int processingBatchMaxSize;
 
+	@Value("${transformation.batch.adaptive.target-latency-millis}")
+	private long processingBatchTargetLatencyMillis;
+
+	@Value("${transformation.batch.adaptive.target-components}")
+	private int processingBatchTargetComponents;
+
+	@Value("${transformation.task.concurrency.max}")
+	private int taskBatchConcurrency;
+
+	@Value("${transformation.task.provisioning.concurrency.max}")
+	private int taskProvisioningConcurrency;
+
+	@Value("${transformation.batch.pipeline.max-batches}")
+	private int pipelineMaxBatches;
+
+	@Value("${transformation.batch.save-retry.min-size}")
+	private int saveRetryMinSize;
+
+	@Value("${transformation.batch.save-retry.max-saves}")
+	private int saveRetryMaxSaves;
+
 	public HighLevelAuthoringService createServiceForCurrentUser(boolean skipDroolsValidation) {
 		// Create clients using the current user's security context
-		SnowstormClient snowstormClient = snowstormClientFactory.getClientForCurrentUser();
-		AuthoringServicesClient authoringServicesClient = authoringServicesClientFactory.getClientForCurrentUser();
-		return new HighLevelAuthoringService(snowstormClient, authoringServicesClient, processingBatchMaxSize, skipDroolsValidation);
+		SnowstormClient snowstormClient = snowstormClientFactory.getClientForCurrentUser(Workload.TRANSFORMATION_JOB);
+		AuthoringServicesClient authoringServicesClient = authoringServicesClientFactory.getClientForCurrentUser(Workload.TRANSFORMATION_JOB);
+		// Each job learns its own batch size, concepts vary too much between recipes to share one
+		AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(processingBatchMinSize, processingBatchInitialSize, processingBatchMaxSize,
+				processingBatchTargetLatencyMillis, processingBatchTargetComponents);
+		return new HighLevelAuthoringService(snowstormClient, authoringServicesClient, batchSizer, taskBatchConcurrency, taskProvisioningConcurrency, pipelineMaxBatches,
+				saveRetryMinSize, saveRetryMaxSaves, skipDroolsValidation);
 	}
 
 }
@@ -0,0 +1,27 @@
+package org.ihtsdo.otf.transformationandtemplate.service.componenttransform;
+
+import org.ihtsdo.otf.rest.client.terminologyserver.pojo.SnomedComponent;
+import org.ihtsdo.otf.transformationandtemplate.service.client.ChangeResult;
+
+import java.util.List;
+
+/**
+ * Told about each task batch of a component transformation as it starts and as soon as it has been processed, so the progress of a job
+ * can be kept as it runs. Called from the threads of parallel task batches.
+ */
+public interface TaskBatchListener {
+
+	/**
+	 * Called before anything is saved for the task batch.
+	 * @param rows Position of each change within the transformation input, the first row after the header is 0.
+	 * @param branchPath Branch the task batch saves its changes to.
+	 */
+	default void taskBatchStarted(List<Integer> rows, String branchPath) {
+	}
+
+	/**
+	 * @param rows Position of each change within the transformation input, the first row after the header is 0.
+	 * @param changes Results of the changes of the task batch, in the same order as the rows.
+	 */
+	void taskBatchCompleted(List<Integer> rows, List<ChangeResult<? extends SnomedComponent>> changes);
+}
@@ -0,0 +1,165 @@
+package org.ihtsdo.otf.transformationandtemplate.service.componenttransform;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.*;
+
+/**
+ * Results of the task batches of a component transformation job which have been processed, kept in the job's folder as each batch finishes
+ * so an interrupted job can be resumed from the first unfinished batch without processing the same rows again.
+ * The branch of each task batch which has started but not finished is kept too, it may already hold some of the batch's changes.
+ * Rows are positions within the input TSV, the first row after the header is 0, and are kept as ranges of consecutive rows.
+ */
+public class TransformationJobProgress {
+
+	private final List<CompletedTaskBatch> completedTaskBatches = new ArrayList<>();
+	private final List<StartedTaskBatch> startedTaskBatches = new ArrayList<>();
+
+	/**
+	 * @param rows Row of each change of the task batch, in any order.
+	 * @param branchPath Branch the task batch saves its changes to.
+	 */
+	public void addStartedTaskBatch(List<Integer> rows, String branchPath) {
+		startedTaskBatches.add(new StartedTaskBatch(toRowRanges(new TreeSet<>(rows)), branchPath));
+	}
+
+	/**
+	 * The started task batch with the same rows, if any, is no longer kept.
+	 * @param rows Row of each result, in any order.
+	 * @param results Result of each row.
+	 */
+	public void addCompletedTaskBatch(List<Integer> rows, List<JsonNode> results) {
+		SortedMap<Integer, JsonNode> resultsInRowOrder = new TreeMap<>();
+		for (int i = 0; i < rows.size(); i++) {
+			resultsInRowOrder.put(rows.get(i), results.get(i));
+		}
+		List<RowRange> rowRanges = toRowRanges(resultsInRowOrder.keySet());
+		completedTaskBatches.add(new CompletedTaskBatch(rowRanges, new ArrayList<>(resultsInRowOrder.values())));
+		startedTaskBatches.removeIf(startedTaskBatch -> startedTaskBatch.getRows().equals(rowRanges));
+	}
+
+	/**
+	 * @return the recorded result of each completed row, by row.
+	 */
+	@JsonIgnore
+	public Map<Integer, JsonNode> getResultsByRow() {
+		Map<Integer, JsonNode> resultsByRow = new HashMap<>();
+		for (CompletedTaskBatch completedTaskBatch : completedTaskBatches) {
+			Iterator<JsonNode> results = completedTaskBatch.getResults().iterator();
+			for (RowRange rowRange : completedTaskBatch.getRows()) {
+				for (int row = rowRange.getFirst(); row <= rowRange.getLast(); row++) {
+					resultsByRow.put(row, results.next());
+				}
+			}
+		}
+		return resultsByRow;
+	}
+
+	public List<CompletedTaskBatch> getCompletedTaskBatches() {
+		return completedTaskBatches;
+	}
+
+	/**
+	 * @return task batches which have started but not finished.
+	 */
+	public List<StartedTaskBatch> getStartedTaskBatches() {
+		return startedTaskBatches;
+	}
+
+	private static List<RowRange> toRowRanges(Collection<Integer> sortedRows) {
+		List<RowRange> rowRanges = new ArrayList<>();
+		RowRange rowRange = null;
+		for (Integer row : sortedRows) {
+			if (rowRange != null && rowRange.getLast() + 1 == row) {
+				rowRange.last = row;
+			} else {
+				rowRange = new RowRange(row, row);
+				rowRanges.add(rowRange);
+			}
+		}
+		return rowRanges;
+	}
+
+	public static final class CompletedTaskBatch {
+
+		private List<RowRange> rows;
+		private List<JsonNode> results;
+
+		@SuppressWarnings("unused")// For Jackson
+		private CompletedTaskBatch() {
+		}
+
+		private CompletedTaskBatch(List<RowRange> rows, List<JsonNode> results) {
+			this.rows = rows;
+			this.results = results;
+		}
+
+		public List<RowRange> getRows() {
+			return rows;
+		}
+
+		public List<JsonNode> getResults() {
+			return results;
+		}
+	}
+
+	public static final class StartedTaskBatch {
+
+		private List<RowRange> rows;
+		private String branchPath;
+
+		@SuppressWarnings("unused")// For Jackson
+		private StartedTaskBatch() {
+		}
+
+		private StartedTaskBatch(List<RowRange> rows, String branchPath) {
+			this.rows = rows;
+			this.branchPath = branchPath;
+		}
+
+		public List<RowRange> getRows() {
+			return rows;
+		}
+
+		public String getBranchPath() {
+			return branchPath;
+		}
+	}
+
+	public static final class RowRange {
+
+		private int first;
+		private int last;
+
+		@SuppressWarnings("unused")// For Jackson
+		private RowRange() {
+		}
+
+		private RowRange(int first, int last) {
+			this.first = first;
+			this.last = last;
+		}
+
+		public int getFirst() {
+			return first;
+		}
+
+		public int getLast() {
+			return last;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			RowRange rowRange = (RowRange) o;
+			return first == rowRange.first && last == rowRange.last;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(first, last);
+		}
+	}
+}
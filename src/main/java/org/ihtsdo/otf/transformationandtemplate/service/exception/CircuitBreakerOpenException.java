@@ -0,0 +1,17 @@
+package org.ihtsdo.otf.transformationandtemplate.service.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown instead of calling an API which has been failing or responding too slowly, until it is given another try.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class CircuitBreakerOpenException extends RuntimeException {
+
+	private static final long serialVersionUID = -3125878064284135271L;
+
+	public CircuitBreakerOpenException(String message) {
+		super(message);
+	}
+}
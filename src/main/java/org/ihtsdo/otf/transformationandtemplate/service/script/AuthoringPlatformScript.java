@@ -1,7 +1,9 @@
 package org.ihtsdo.otf.transformationandtemplate.service.script;
 
+import com.google.common.collect.Lists;
 import org.apache.commons.lang3.StringUtils;
 import org.ihtsdo.otf.exception.TermServerScriptException;
+import org.ihtsdo.otf.rest.client.terminologyserver.pojo.ConceptChangeBatchStatus;
 import org.ihtsdo.otf.rest.client.terminologyserver.pojo.IConcept;
 import org.ihtsdo.otf.rest.client.terminologyserver.pojo.Project;
 import org.ihtsdo.otf.rest.client.terminologyserver.pojo.RefsetMemberPojo;
@@ -16,7 +18,12 @@ import org.snomed.otf.scheduler.domain.JobStatus;
 import org.snomed.otf.script.Script;
 import org.snomed.otf.script.dao.*;
 
+import java.util.*;
+import java.util.stream.Collectors;
+
 public abstract class AuthoringPlatformScript extends Script implements JobClass {
+
+	private static final int REFSET_MEMBER_BATCH_SIZE = 1000;
 	
 	private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
@@ -27,6 +34,12 @@ public abstract class AuthoringPlatformScript extends Script implements JobClass
 	
 	protected SnowstormClient tsClient;
 	protected AuthoringServicesClient asClient;
+
+	//Member changes waiting to be sent in bulk, by member id
+	private final Map<String, RefsetMemberChange> pendingMemberChanges = new LinkedHashMap<>();
+
+	//Members created and deleted again before being sent, reported with the next flush
+	private final List<RefsetMemberChange> cancelledMemberChanges = new ArrayList<>();
 	
 	AuthoringPlatformScript (JobRun jobRun, ScriptManager mgr) {
 		this.jobRun = jobRun;
@@ -172,28 +185,149 @@ public abstract class AuthoringPlatformScript extends Script implements JobClass
 	}
 
 
+	/**
+	 * Queues the member for deletion, if it has never been published, or inactivation.
+	 * The change is made and reported when the queued member changes are next flushed.
+	 * @return the inactivated member, or null if it is to be deleted.
+	 */
 	protected RefsetMemberPojo removeRefsetMember(IConcept c, RefsetMemberPojo rm) throws TermServerScriptException {
 		//Has this rm been published?
-		try {
-			if (StringUtils.isEmpty(rm.getReleasedEffectiveTime())) {
-				info("Deleting " + rm);
-				tsClient.deleteRefsetMember(task.getBranchPath(), rm);
-				report(c, Severity.LOW, ReportActionType.REFSET_MEMBER_DELETED, "", rm);
-				rm = null;
+		if (StringUtils.isEmpty(rm.getReleasedEffectiveTime())) {
+			info("Deleting " + rm);
+			queueRefsetMemberChange(c, rm, ReportActionType.REFSET_MEMBER_DELETED, "", rm);
+			return null;
+		}
+		info("Inactivating " + rm);
+		rm.setActive(false);
+		queueRefsetMemberChange(c, rm, ReportActionType.REFSET_MEMBER_INACTIVATED, "", rm);
+		return rm;
+	}
+
+	/**
+	 * Queues a member to be created, if it has no id yet, or updated. New members are given their id straight away.
+	 */
+	protected RefsetMemberPojo saveRefsetMember(IConcept c, RefsetMemberPojo rm, ReportActionType action, Object... details) {
+		boolean created = StringUtils.isEmpty(rm.getId());
+		if (created) {
+			rm.setId(UUID.randomUUID().toString());
+		}
+		queueRefsetMemberChange(new RefsetMemberChange(c, rm, action, created, details));
+		return rm;
+	}
+
+	/**
+	 * Queues a change already made to the member, to be sent with the next batch.
+	 * The action decides how it is sent, {@link ReportActionType#REFSET_MEMBER_DELETED} as a delete and anything else as a save.
+	 * Deleting a member whose creation is still queued sends nothing, as the terminology server has never seen it.
+	 */
+	protected void queueRefsetMemberChange(IConcept c, RefsetMemberPojo rm, ReportActionType action, Object... details) {
+		queueRefsetMemberChange(new RefsetMemberChange(c, rm, action, false, details));
+	}
+
+	private void queueRefsetMemberChange(RefsetMemberChange change) {
+		String memberId = change.getMember().getId();
+		//Only the last change to a member is sent, earlier ones are still reported
+		change.superseded = pendingMemberChanges.put(memberId, change);
+		if (change.getAction() == ReportActionType.REFSET_MEMBER_DELETED && isCreationQueued(change.superseded)) {
+			info("Not sending member " + memberId + ", it was deleted before its creation was sent");
+			pendingMemberChanges.remove(memberId);
+			cancelledMemberChanges.add(change);
+		}
+	}
+
+	private boolean isCreationQueued(RefsetMemberChange change) {
+		for (RefsetMemberChange c = change; c != null; c = c.superseded) {
+			if (c.created) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Sends all queued member changes to the terminology server, as one bulk save and one bulk delete for every
+	 * {@value #REFSET_MEMBER_BATCH_SIZE} members, then reports each change against its concept.
+	 * If a batch fails each of its members is reported as failed.
+	 * Members created and deleted again before the flush are not sent, but their changes are still reported.
+	 */
+	protected void flushRefsetMemberChanges() throws TermServerScriptException {
+		flushRefsetMemberChanges(task.getBranchPath());
+	}
+
+	protected void flushRefsetMemberChanges(String branchPath) throws TermServerScriptException {
+		if (pendingMemberChanges.isEmpty() && cancelledMemberChanges.isEmpty()) {
+			return;
+		}
+		List<RefsetMemberChange> changes = new ArrayList<>(pendingMemberChanges.values());
+		pendingMemberChanges.clear();
+		List<RefsetMemberChange> cancelled = new ArrayList<>(cancelledMemberChanges);
+		cancelledMemberChanges.clear();
+		List<RefsetMemberChange> saves = new ArrayList<>();
+		List<RefsetMemberChange> deletes = new ArrayList<>();
+		for (RefsetMemberChange change : changes) {
+			if (change.getAction() == ReportActionType.REFSET_MEMBER_DELETED) {
+				deletes.add(change);
 			} else {
-				info("Inactivating " + rm);
-				rm.setActive(false);
-				tsClient.updateRefsetMember(task.getBranchPath(), rm);
-				report(c, Severity.LOW, ReportActionType.REFSET_MEMBER_INACTIVATED, "", rm);
+				saves.add(change);
 			}
-		} catch (Exception e) {
-			String msg = ExceptionUtils.getExceptionCause("Failed to remove rm", e);
-			report(c, Severity.CRITICAL, ReportActionType.API_ERROR, msg, rm);
-			throw (e);
 		}
-		return rm;
+
+		for (List<RefsetMemberChange> batch : Lists.partition(saves, REFSET_MEMBER_BATCH_SIZE)) {
+			info("Saving batch of " + batch.size() + " refset members");
+			try {
+				ConceptChangeBatchStatus status = tsClient.saveRefsetMembers(branchPath, getMembers(batch));
+				if (status.getStatus() != ConceptChangeBatchStatus.Status.COMPLETED) {
+					failAll(batch, "Bulk member update " + status.getStatus() + ": " + status.getMessage());
+				}
+			} catch (Exception e) {
+				failAll(batch, ExceptionUtils.getExceptionCause("Failed to save refset members", e));
+			}
+		}
+		for (List<RefsetMemberChange> batch : Lists.partition(deletes, REFSET_MEMBER_BATCH_SIZE)) {
+			info("Deleting batch of " + batch.size() + " refset members");
+			try {
+				tsClient.deleteRefsetMembers(branchPath, getMembers(batch));
+			} catch (Exception e) {
+				failAll(batch, ExceptionUtils.getExceptionCause("Failed to delete refset members", e));
+			}
+		}
+
+		for (RefsetMemberChange change : changes) {
+			reportWithSupersededChanges(change);
+		}
+		for (RefsetMemberChange change : cancelled) {
+			reportWithSupersededChanges(change);
+		}
+	}
+
+	private void reportWithSupersededChanges(RefsetMemberChange change) throws TermServerScriptException {
+		if (change.superseded != null) {
+			reportWithSupersededChanges(change.superseded);
+		}
+		reportRefsetMemberChange(change);
+	}
+
+	private List<RefsetMemberPojo> getMembers(List<RefsetMemberChange> changes) {
+		return changes.stream().map(RefsetMemberChange::getMember).collect(Collectors.toList());
+	}
+
+	private void failAll(List<RefsetMemberChange> changes, String failure) {
+		warn(failure);
+		for (RefsetMemberChange change : changes) {
+			//Earlier changes to the same member went with the last one, so share its outcome
+			for (RefsetMemberChange c = change; c != null; c = c.superseded) {
+				c.failure = failure;
+			}
+		}
+	}
+
+	protected void reportRefsetMemberChange(RefsetMemberChange change) throws TermServerScriptException {
+		if (change.getFailure() != null) {
+			report(change.getConcept(), Severity.CRITICAL, ReportActionType.API_ERROR, change.getFailure(), change.getMember());
+		} else {
+			report(change.getConcept(), Severity.LOW, change.getAction(), change.getDetails());
+		}
 	}
-	
 
 	protected boolean report(IConcept c, Severity severity, ReportActionType action, Object... details) throws TermServerScriptException {
 		String semTag = null;
@@ -206,4 +340,47 @@ public abstract class AuthoringPlatformScript extends Script implements JobClass
 		return report(TAB_0, task, c.getConceptId(), c.getFsnTerm(), semTag, severity, action, details);
 	}
 
+	protected static final class RefsetMemberChange {
+
+		private final IConcept concept;
+		private final RefsetMemberPojo member;
+		private final ReportActionType action;
+		private final Object[] details;
+		//True when the member is new, so the terminology server has not seen it before this change is sent
+		private final boolean created;
+		private RefsetMemberChange superseded;
+		private String failure;
+
+		private RefsetMemberChange(IConcept concept, RefsetMemberPojo member, ReportActionType action, boolean created, Object... details) {
+			this.concept = concept;
+			this.member = member;
+			this.action = action;
+			this.created = created;
+			this.details = details;
+		}
+
+		public IConcept getConcept() {
+			return concept;
+		}
+
+		public RefsetMemberPojo getMember() {
+			return member;
+		}
+
+		public ReportActionType getAction() {
+			return action;
+		}
+
+		public Object[] getDetails() {
+			return details;
+		}
+
+		/**
+		 * @return why the change could not be made, or null if it was made.
+		 */
+		public String getFailure() {
+			return failure;
+		}
+	}
+
 }
@@ -15,6 +15,7 @@ import org.ihtsdo.otf.transformationandtemplate.service.client.AuthoringServices
 import org.ihtsdo.otf.transformationandtemplate.service.client.AuthoringServicesClientFactory;
 import org.ihtsdo.otf.transformationandtemplate.service.client.SnowstormClient;
 import org.ihtsdo.otf.transformationandtemplate.service.client.SnowstormClientFactory;
+import org.ihtsdo.otf.transformationandtemplate.service.client.Workload;
 import org.ihtsdo.otf.utils.ExceptionUtils;
 import org.reflections.Reflections;
 import org.slf4j.Logger;
@@ -55,11 +56,11 @@ public class ScriptManager {
 	}
 	
 	SnowstormClient getTSClient() { 
-		return snowstormClientFactory.getClientForCurrentUser();
+		return snowstormClientFactory.getClientForCurrentUser(Workload.SCRIPT);
 	}
 	
 	AuthoringServicesClient getASClient() {
-		return authoringServicesClientFactory.getClientForCurrentUser();
+		return authoringServicesClientFactory.getClientForCurrentUser(Workload.SCRIPT);
 	}
 
 	public Set<Job> listJobs() {
@@ -6,9 +6,9 @@ import com.google.common.collect.Multimap;
 import com.google.gdata.util.common.base.Pair;
 import org.apache.commons.lang3.StringUtils;
 import org.ihtsdo.otf.exception.TermServerScriptException;
+import org.ihtsdo.otf.rest.client.terminologyserver.pojo.IConcept;
 import org.ihtsdo.otf.rest.client.terminologyserver.pojo.RefsetMemberPojo;
 import org.ihtsdo.otf.transformationandtemplate.domain.Concept;
-import org.ihtsdo.otf.transformationandtemplate.service.client.SnowstormClient;
 import org.ihtsdo.otf.utils.SnomedUtils;
 import org.snomed.otf.scheduler.domain.*;
 import org.snomed.otf.script.dao.ReportManager;
@@ -190,8 +190,8 @@ public class Update_Lat_Refset extends AuthoringPlatformScript {
 		Set<Concept> conceptSet = new HashSet<>();
 
 		if (legacy) {
-			conceptSet.addAll(getAllConceptsByECL(branchPath, eclFirst));
-			conceptSet.addAll(getAllConceptsByECL(branchPath, eclSecond));
+			addAllConceptsByECL(conceptSet, branchPath, eclFirst);
+			addAllConceptsByECL(conceptSet, branchPath, eclSecond);
 		} else {
 			conceptSet.addAll(tsClient.findNewConcepts(branchPath, eclFirst, null));
 			conceptSet.addAll(tsClient.findUpdatedConcepts(branchPath, true, null, null, eclFirst));
@@ -206,25 +206,11 @@ public class Update_Lat_Refset extends AuthoringPlatformScript {
 		return conceptSet;
 	}
 
-	private List<Concept> getAllConceptsByECL(String branchPath, String ecl) {
-		List<Concept> concepts = new ArrayList<>();
-		SnowstormClient.ConceptPage page = tsClient.fetchConceptPageBlocking(branchPath, null, ecl, null, null);
-		long totalExpected = page.getTotal();
-		long totalReceived = page.getItems().size();
-
-		if (totalExpected == 0) {
-			return concepts;
-		}
-
-		while (totalReceived <= totalExpected) {
-			concepts.addAll(new ArrayList<>(page.getItems()));
-
-			// Get next page
-			page = tsClient.fetchConceptPageBlocking(branchPath, null, ecl, null, page.getSearchAfter());
-			totalReceived += page.getItems().size();
-		}
-
-		return concepts;
+	private void addAllConceptsByECL(Set<Concept> conceptSet, String branchPath, String ecl) {
+		// Streamed page by page, so only the set itself is held in memory
+		tsClient.conceptsByECLAsync(branchPath, ecl)
+				.toStream()
+				.forEach(conceptSet::add);
 	}
 
 	// Split collection into X smaller collections (for batch processing)
@@ -253,26 +239,24 @@ public class Update_Lat_Refset extends AuthoringPlatformScript {
 		return concepts.stream().map(Concept::getId).collect(Collectors.joining(","));
 	}
 
-	// Remove ReferenceSetMember without reporting.
-	protected ReportActionType removeRefsetMemberSilently(String branchPath, RefsetMemberPojo refsetMemberPojo, boolean dryRun) throws TermServerScriptException {
+	// Queue removal of the ReferenceSetMember, it is reported once the queued changes are flushed.
+	protected void removeRefsetMemberSilently(Concept concept, RefsetMemberPojo refsetMemberPojo, boolean dryRun) throws TermServerScriptException {
 		this.removed = this.removed + 1;
+		ReportActionType reportActionType;
 		if (isPublished(refsetMemberPojo)) {
 			info("Inactivating " + refsetMemberPojo);
 			refsetMemberPojo.setActive(false);
-
-			if (!dryRun) {
-				tsClient.updateRefsetMember(branchPath, refsetMemberPojo);
-			}
-
-			return ReportActionType.REFSET_MEMBER_INACTIVATED;
+			reportActionType = ReportActionType.REFSET_MEMBER_INACTIVATED;
 		} else {
 			info("Deleting " + refsetMemberPojo);
+			reportActionType = ReportActionType.REFSET_MEMBER_DELETED;
+		}
 
-			if (!dryRun) {
-				tsClient.deleteRefsetMember(branchPath, refsetMemberPojo);
-			}
-
-			return ReportActionType.REFSET_MEMBER_DELETED;
+		String details = "Removed by removing ReferenceSetMember " + refsetMemberPojo.getId();
+		if (dryRun) {
+			doReportOrLog(concept, reportActionType, details);
+		} else {
+			queueRefsetMemberChange(concept, refsetMemberPojo, reportActionType, details);
 		}
 	}
 
@@ -284,7 +268,7 @@ public class Update_Lat_Refset extends AuthoringPlatformScript {
 		return !StringUtils.isEmpty(refsetMemberPojo.getReleasedEffectiveTime());
 	}
 
-	private void doReportOrLog(Concept concept, ReportActionType reportActionType, String details) throws TermServerScriptException {
+	private void doReportOrLog(IConcept concept, ReportActionType reportActionType, String details) throws TermServerScriptException {
 		String semTag = null;
 
 		try {
@@ -358,33 +342,42 @@ public class Update_Lat_Refset extends AuthoringPlatformScript {
 		}
 	}
 
-	private RefsetMemberPojo createRefSetMember(String branchPath, Concept concept, boolean dryRun) {
+	private void createRefSetMember(Concept concept, boolean dryRun) throws TermServerScriptException {
 		this.added = this.added + 1;
 		RefsetMemberPojo rm = new RefsetMemberPojo()
 				.withRefsetId(LAT_REFSETID)
 				.withActive(true)
 				.withModuleId(SCTID_CORE_MODULE)
 				.withReferencedComponentId(concept.getId());
+		rm.setId(UUID.randomUUID().toString());
 
+		String details = "Added by creating ReferenceSetMember " + rm.getId();
 		if (dryRun) {
-			rm.setId(UUID.randomUUID().toString());
-			return rm;
+			doReportOrLog(concept, ReportActionType.REFSET_MEMBER_ADDED, details);
+		} else {
+			saveRefsetMember(concept, rm, ReportActionType.REFSET_MEMBER_ADDED, details);
 		}
-
-		return tsClient.createRefsetMember(branchPath, rm);
 	}
 
 	private void writeChangesToSnowstorm(String branchPath, boolean dryRun) throws TermServerScriptException {
 		for (Concept concept : conceptsToAdd.values()) {
-			RefsetMemberPojo newRefSetMember = createRefSetMember(branchPath, concept, dryRun);
-			doReportOrLog(concept, ReportActionType.REFSET_MEMBER_ADDED, "Added by creating ReferenceSetMember " + newRefSetMember.getId());
+			createRefSetMember(concept, dryRun);
 		}
 
 		for (Pair<Concept, RefsetMemberPojo> pair : conceptsToRemove.values()) {
-			Concept concept = pair.getFirst();
-			RefsetMemberPojo rm = pair.getSecond();
-			ReportActionType reportActionType = removeRefsetMemberSilently(branchPath, rm, dryRun);
-			doReportOrLog(concept, reportActionType, "Removed by removing ReferenceSetMember " + rm.getId());
+			removeRefsetMemberSilently(pair.getFirst(), pair.getSecond(), dryRun);
+		}
+
+		// Everything is sent in a few bulk requests, each member is reported when its batch completes
+		flushRefsetMemberChanges(branchPath);
+	}
+
+	@Override
+	protected void reportRefsetMemberChange(RefsetMemberChange change) throws TermServerScriptException {
+		if (change.getFailure() != null) {
+			super.reportRefsetMemberChange(change);
+		} else {
+			doReportOrLog(change.getConcept(), change.getAction(), (String) change.getDetails()[0]);
 		}
 	}
 }
@@ -6,6 +6,7 @@ import org.ihtsdo.otf.rest.client.terminologyserver.pojo.ConceptPojo.HistoricalA
 import org.ihtsdo.otf.rest.client.terminologyserver.pojo.IConcept;
 import org.ihtsdo.otf.rest.client.terminologyserver.pojo.RefsetMemberPojo;
 import org.ihtsdo.otf.transformationandtemplate.domain.Concept;
+import org.ihtsdo.otf.transformationandtemplate.service.client.SnowstormClient;
 import org.ihtsdo.otf.transformationandtemplate.service.client.SnowstormClient.ConceptPage;
 import org.ihtsdo.otf.transformationandtemplate.service.script.ScriptManager.ConfigItem;
 import org.ihtsdo.otf.utils.ExceptionUtils;
@@ -16,7 +17,11 @@ import org.snomed.otf.scheduler.domain.JobParameter.Type;
 
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -143,14 +148,18 @@ public class Update_SE_SP_Refsets extends AuthoringPlatformScript implements Job
 		percentageComplete(legacy?2:30);
 		
 		removeInvalidEntries(SCTID_SP_REFSETID, inactivatedConcepts);
+		//Removals are sent before any additions which depend on them
+		flushRefsetMemberChanges();
 		percentageComplete(legacy?3:30);
 		
 		updateRefset(CacheType.TargetConcept, SCTID_SE_REFSETID, "Entire");
 		percentageComplete(legacy?4:40);
+		flushRefsetMemberChanges();
 		flushFiles(false, true);
 		
 		updateRefset(CacheType.TargetConcept, SCTID_SE_REFSETID, "All");
 		percentageComplete(legacy?5:50);
+		flushRefsetMemberChanges();
 		flushFiles(false, true);
 		
 		updateRefset(CacheType.TargetConcept, SCTID_SP_REFSETID, "Part");
@@ -159,19 +168,23 @@ public class Update_SE_SP_Refsets extends AuthoringPlatformScript implements Job
 		checkNewStructureConcepts(); //Also recently reactivated
 		percentageComplete(legacy?7:70);
 		
+		flushRefsetMemberChanges();
 		flushFiles(false, true);
 		
 		//Now see if any of those historical replacements can be used
 		for (Map.Entry<String,RefsetMemberPojo> entry : historicalReplacementMap.entrySet()) {
 			createOrUpdateRefsetMember(entry.getValue());
 		}
+		flushRefsetMemberChanges();
 		percentageComplete(legacy?8:80);
 		
 		if (legacy) {
 			checkAllConcepts(10, CacheType.TargetConcept, SCTID_SE_REFSETID, "Entire");
+			flushRefsetMemberChanges();
 			flushFiles(false, true);
 			checkAllConcepts(40, CacheType.TargetConcept, SCTID_SE_REFSETID, "All");
 			checkAllConcepts(70, CacheType.TargetConcept, SCTID_SP_REFSETID, "Part");
+			flushRefsetMemberChanges();
 			flushFiles(false, true);
 		}
 	}
@@ -179,8 +192,8 @@ public class Update_SE_SP_Refsets extends AuthoringPlatformScript implements Job
 	private void populateScopeExclusions() throws TermServerScriptException {
 		info("Populate scope exclusions");
 		try {
-			List<Concept> conceptOOS = tsClient.conceptsByECL(task.getBranchPath(), mgr.getConfig(ConfigItem.SEP_OUT_OF_SCOPE));
-			outOfScope = conceptOOS.stream()
+			outOfScope = tsClient.conceptsByECLAsync(task.getBranchPath(), mgr.getConfig(ConfigItem.SEP_OUT_OF_SCOPE))
+					.toStream()
 					.map(c -> c.getConceptId())
 					.collect(Collectors.toSet());
 			info ("Cached " + outOfScope.size() + " concepts as being out of scope");
@@ -243,18 +256,13 @@ public class Update_SE_SP_Refsets extends AuthoringPlatformScript implements Job
 			}
 		}
 		
-		ReportActionType action = ReportActionType.REFSET_MEMBER_ADDED;
-		if (create) {
-			rm = tsClient.createRefsetMember(task.getBranchPath(), rm);
-		} else {
-			action = ReportActionType.REFSET_MEMBER_MODIFIED;
-			rm = tsClient.updateRefsetMember(task.getBranchPath(), rm);
-		}
+		//Sent in bulk and reported when the member changes are next flushed
+		ReportActionType action = create ? ReportActionType.REFSET_MEMBER_ADDED : ReportActionType.REFSET_MEMBER_MODIFIED;
+		rm = saveRefsetMember(sConcept, rm, action, sConcept + " -> " + xConcept, rm);
 		
 		//We can populate both caches separately
 		populateMemberCache(rm.getRefsetId(), refsetMemberByReferencedConceptCache, rm.getReferencedComponentId(), rm);
 		populateMemberCache(rm.getRefsetId(), refsetMemberByTargetConceptCache, rm.getAdditionalFields().getTargetComponentId(), rm);
-		report(sConcept, Severity.LOW,action, sConcept + " -> " + xConcept, rm);
 		return rm;
 	}
 
@@ -474,9 +482,12 @@ public class Update_SE_SP_Refsets extends AuthoringPlatformScript implements Job
 							//Is there a historical replacement that we should consider adding?
 							//Of course just because we've inactivated one half of the pair, doesn't mean that the other 
 							//half might not also have been inactivated!
-							ConceptPojo sConceptFull = tsClient.getFullConcept(task.getBranchPath(), rm.getReferencedComponentId());
-							ConceptPojo xConceptFull = tsClient.getFullConcept(task.getBranchPath(), rm.getAdditionalFields().getTargetComponentId());
-							populateReplacementOrReport(sConceptFull, xConceptFull, rm);
+							//Request both together so they're loaded in a single call
+							Tuple2<ConceptPojo, ConceptPojo> fullConcepts = Mono.zip(
+									tsClient.getFullConceptAsync(task.getBranchPath(), rm.getReferencedComponentId()),
+									tsClient.getFullConceptAsync(task.getBranchPath(), rm.getAdditionalFields().getTargetComponentId()))
+									.block(Duration.of(SnowstormClient.DEFAULT_TIMEOUT, ChronoUnit.SECONDS));
+							populateReplacementOrReport(fullConcepts.getT1(), fullConcepts.getT2(), rm);
 						} else {
 							report(c, Severity.LOW, ReportActionType.NO_CHANGE, "RefsetMember previously inactivated", rm);
 						}
@@ -587,15 +598,12 @@ public class Update_SE_SP_Refsets extends AuthoringPlatformScript implements Job
 		info ("Checking all legacy '" + termFilter + "' concepts for potential inclusion");
 		//Loop through all Body Structures containing 'termFilter' text
 		//Get published concepts because new ones will already have been examined
-		ConceptPage page = tsClient.fetchConceptPageBlocking(task.getBranchPath(), true, BODY_STRUCTURE_ECL, termFilter, null);
-		long totalExpected = page.getTotal();
-		long totalReceived = page.getItems().size();
-		
-		/*if (page.getItems().stream().anyMatch(c -> c.getId().equals("182028002"))) {
-			debug("here");
-		}*/
-		//Even when we have as many items as expected we still want to run through this loop one last time
-		while (totalReceived <= totalExpected) {
+		//Pages are fetched as we get to them, so only a page or two is held in memory however many concepts match
+		long totalReceived = 0;
+		for (ConceptPage page : tsClient.scanConceptPages(task.getBranchPath(), null, null, true, BODY_STRUCTURE_ECL, termFilter).toIterable(1)) {
+			long totalExpected = page.getTotal();
+			totalReceived += page.getItems().size();
+			
 			//The term filter isn't "starts with", so we can filter those out.
 			//Also filter any concept we've already examined
 			Map<String, Concept> conceptMap = page.getItems().stream()
@@ -614,14 +622,6 @@ public class Update_SE_SP_Refsets extends AuthoringPlatformScript implements Job
 			
 			//How many have we examined?  Can be up to 30% above starting percentage
 			percentageComplete(startingPercentage + (int)((totalReceived / (double)totalExpected) * 30d));
-			
-			if (totalReceived == totalExpected) {
-				break;
-			}
-			
-			//Now get our next page
-			page = tsClient.fetchConceptPageBlocking(task.getBranchPath(), true, BODY_STRUCTURE_ECL, termFilter, page.getSearchAfter());
-			totalReceived += page.getItems().size();
 		}
 	}
 
@@ -1,9 +1,11 @@
 package org.ihtsdo.otf.transformationandtemplate.service.template;
 
+import com.google.common.collect.Lists;
 import org.ihtsdo.otf.transformationandtemplate.service.ConstantStrings;
+import org.ihtsdo.otf.transformationandtemplate.service.client.ReadReplicaRestClientFactory;
+import org.ihtsdo.otf.transformationandtemplate.service.client.ReadReplicaRestClients;
 import org.ihtsdo.otf.transformationandtemplate.service.exception.ServiceException;
 import org.ihtsdo.otf.rest.client.RestClientException;
-import org.ihtsdo.otf.rest.client.terminologyserver.SnowstormRestClientFactory;
 import org.ihtsdo.otf.rest.client.terminologyserver.pojo.AxiomPojo;
 import org.ihtsdo.otf.rest.client.terminologyserver.pojo.ConceptPojo;
 import org.ihtsdo.otf.rest.client.terminologyserver.pojo.DescriptionPojo;
@@ -18,7 +20,12 @@ import org.snomed.authoringtemplate.domain.logical.AttributeGroup;
 import org.snomed.authoringtemplate.domain.logical.LogicalTemplate;
 import org.snomed.authoringtemplate.service.LogicalTemplateParserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.io.IOException;
 import java.util.*;
@@ -41,7 +48,7 @@ public class TemplateConceptSearchService {
 	private LogicalTemplateParserService logicalTemplateParser;
 	
 	@Autowired
-	private SnowstormRestClientFactory terminologyClientFactory;
+	private ReadReplicaRestClientFactory terminologyClientFactory;
 	
 	@Autowired
 	private TemplateService templateService;
@@ -49,6 +56,11 @@ public class TemplateConceptSearchService {
 	private static final Logger LOGGER = LoggerFactory.getLogger(TemplateConceptSearchService.class);
 
 	private static final int MAX = 200000;
+
+	private static final int SEARCH_BATCH_SIZE = 1000;
+
+	@Value("${terminologyserver.paging.concurrency}")
+	private int searchConcurrency;
 	
 	public Set<String> searchConceptsByTemplate(String templateName, String branchPath, 
 			Boolean logicalMatch, Boolean lexicalMatch, boolean stated) throws ServiceException, ResourceNotFoundException {
@@ -103,8 +115,7 @@ public class TemplateConceptSearchService {
 		Map<Pattern, Set<String>> synoymPatternSlotsMap = TemplateUtil.compilePatterns(
 				TemplateUtil.getTermTemplates(conceptTemplate, DescriptionType.SYNONYM));
 		try {
-			Collection<ConceptPojo> concepts = terminologyClientFactory.getClient()
-					.searchConcepts(branchPath, new ArrayList<>(logicalMatched));
+			Collection<ConceptPojo> concepts = searchConcepts(terminologyClientFactory.getClientsForCurrentUser(), branchPath, logicalMatched);
 			for (ConceptPojo conceptPojo : concepts) {
 				List<String> synoyms = conceptPojo.getDescriptions()
 						.stream()
@@ -146,6 +157,30 @@ public class TemplateConceptSearchService {
 		}
 	}
 
+	/**
+	 * Large sets of concepts, up to the MAX from a logical search, are loaded in batches a few at a time rather than in one huge request.
+	 */
+	private List<ConceptPojo> searchConcepts(ReadReplicaRestClients clients, String branchPath, Collection<String> conceptIds) throws RestClientException {
+		List<List<String>> batches = Lists.partition(new ArrayList<>(conceptIds), SEARCH_BATCH_SIZE);
+		if (batches.size() <= 1) {
+			return clients.read(branchPath, client -> client.searchConcepts(branchPath, new ArrayList<>(conceptIds)));
+		}
+		try {
+			return Flux.fromIterable(batches)
+					.flatMapSequential(batch -> Mono.fromCallable(() -> clients.read(branchPath, client -> client.searchConcepts(branchPath, new ArrayList<>(batch))))
+							.subscribeOn(Schedulers.boundedElastic()), Math.max(1, searchConcurrency))
+					.flatMapIterable(concepts -> concepts)
+					.collectList()
+					.block();
+		} catch (RuntimeException e) {
+			Throwable cause = Exceptions.unwrap(e);
+			if (cause instanceof RestClientException) {
+				throw (RestClientException) cause;
+			}
+			throw e;
+		}
+	}
+
 	private boolean isPatternMatched(Pattern pattern, Collection<String> terms) {
 		for (String term : terms) {
 			if (pattern.matcher(term).matches()) {
@@ -167,8 +202,9 @@ public class TemplateConceptSearchService {
 			LOGGER.debug("Logic template ECL=" + logicalEcl);
 			String ecl = constructLogicalSearchEcl(domainEcl, logicalEcl, logicalMatch);
 			LOGGER.info("Logical search ECL={} stated={}", ecl, stated);
-			Set<String> results = new HashSet<>(terminologyClientFactory.getClient().eclQuery(branchPath, ecl, MAX, stated));
-			List<ConceptPojo> conceptPojos = terminologyClientFactory.getClient().searchConcepts(branchPath, new ArrayList<>(results));
+			ReadReplicaRestClients clients = terminologyClientFactory.getClientsForCurrentUser();
+			Set<String> results = new HashSet<>(clients.read(branchPath, client -> client.eclQuery(branchPath, ecl, MAX, stated)));
+			List<ConceptPojo> conceptPojos = searchConcepts(clients, branchPath, results);
 			Set<String> toRemove = findConceptsNotMatchExactly(conceptPojos, attributeGroups, unGroupedAttributes, stated);
 			if (toRemove.size() > 0) {
 				LOGGER.info("Total concepts " + toRemove.size() + " are removed from results.");
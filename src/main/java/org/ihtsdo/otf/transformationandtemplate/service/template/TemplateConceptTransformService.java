@@ -7,6 +7,9 @@ import org.ihtsdo.otf.rest.client.terminologyserver.pojo.ConceptPojo;
 import org.ihtsdo.otf.rest.client.terminologyserver.pojo.DescriptionPojo;
 import org.ihtsdo.otf.rest.client.terminologyserver.pojo.SimpleConceptPojo;
 import org.ihtsdo.otf.rest.exception.ResourceNotFoundException;
+import org.ihtsdo.otf.transformationandtemplate.service.client.ConceptBatchLoader;
+import org.ihtsdo.otf.transformationandtemplate.service.client.ConceptCache;
+import org.ihtsdo.otf.transformationandtemplate.service.client.ReadReplicaRestClients;
 import org.ihtsdo.otf.transformationandtemplate.service.exception.ServiceException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,6 +23,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.io.IOException;
 import java.util.*;
@@ -27,6 +34,8 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -40,6 +49,12 @@ public class TemplateConceptTransformService {
 	
 	@Autowired
 	private TemplateTransformationResultService resultService;
+
+	@Autowired
+	private ConceptCache conceptCache;
+
+	@Autowired
+	private ConceptBatchLoader conceptBatchLoader;
 	
 	private final ExecutorService executorService = Executors.newFixedThreadPool(10);
 
@@ -55,13 +70,13 @@ public class TemplateConceptTransformService {
 	}
 
 	@Async
-	public void transformAsynchronously(TemplateTransformation transformation, SnowstormRestClient restClient) throws ServiceException {
+	public void transformAsynchronously(TemplateTransformation transformation, ReadReplicaRestClients restClients) throws ServiceException {
 		transformation.setStatus(TransformationStatus.RUNNING);
 		resultService.update(transformation);
 
 		try {
 			// Start transformations in multiple threads
-			List<Future<TransformationResult>> futureTasks = transform(transformation, restClient);
+			List<Future<TransformationResult>> futureTasks = transform(transformation, restClients);
 
 			// Gather transformed concepts and any errors from the transformation jobs
 			try {
@@ -117,6 +132,13 @@ public class TemplateConceptTransformService {
 	}
 
 	public List<Future<TransformationResult>> transform(TemplateTransformation transformation, SnowstormRestClient restClient) throws ServiceException {
+		return transform(transformation, ReadReplicaRestClients.primaryOnly(restClient));
+	}
+
+	/**
+	 * Concepts are read from the read replicas, if there are any, so large transformations are spread across them.
+	 */
+	public List<Future<TransformationResult>> transform(TemplateTransformation transformation, ReadReplicaRestClients restClients) throws ServiceException {
 		
 		String branchPath = transformation.getBranchPath();
 		TemplateTransformRequest transformRequest = transformation.getTransformRequest();
@@ -129,9 +151,11 @@ public class TemplateConceptTransformService {
 			source = templateService.loadOrThrow(transformRequest.getSourceTemplate());
 			destination = templateService.loadOrThrow(destinationTemplate);
 			validate(source, destination);
-			Map<String, ConceptMiniPojo> conceptMap = getDestinationConceptsMap(branchPath, restClient, destination);
+			String branchHeadTimestamp = getBranchHeadTimestamp(branchPath, restClients);
+			Map<String, ConceptMiniPojo> conceptMap = getDestinationConceptsMap(branchPath, branchHeadTimestamp, restClients, destination);
 			final TransformationInputData input = constructTransformationInputData(destination, transformRequest);
 			input.setBranchPath(branchPath);
+			input.setBranchHeadTimestamp(branchHeadTimestamp);
 			input.setConceptIdMap(conceptMap);
 			List<String> batchJob = null;
 			int counter=0;
@@ -144,7 +168,7 @@ public class TemplateConceptTransformService {
 				if (counter % batchMax == 0 || counter == transformRequest.getConceptsToTransform().size()) {
 					// Do work
 					final List<String> task = batchJob;
-					results.add(executorService.submit(() -> batchTransform(input, task, restClient)));
+					results.add(executorService.submit(() -> batchTransform(input, task, restClients)));
 					batchJob = null;
 				}
 			}
@@ -156,19 +180,19 @@ public class TemplateConceptTransformService {
 		
 	}
 	
-	private TransformationResult batchTransform(TransformationInputData input, List<String> conceptIds, SnowstormRestClient restClient) {
+	private TransformationResult batchTransform(TransformationInputData input, List<String> conceptIds, ReadReplicaRestClients restClients) {
 		TransformationResult result = new TransformationResult();
 		Map<String, String> errors = new HashMap<>();
 		result.setFailures(errors);
 		try {
-			final List<ConceptPojo> conceptPojos = restClient.searchConcepts(input.getBranchPath(), conceptIds);
+			final List<ConceptPojo> conceptPojos = searchConcepts(input.getBranchPath(), input.getBranchHeadTimestamp(), conceptIds, restClients);
 			if (conceptPojos != null) {
 				List<String> missing = new ArrayList<>(conceptIds);
 				for (ConceptPojo pojo : conceptPojos) {
 					missing.remove(pojo.getConceptId());
 					ConceptPojo transformed;
 					try {
-						transformed = performTransform(pojo, input, restClient);
+						transformed = performTransform(pojo, input, restClients);
 						result.addTransformedConcept(transformed);
 					} catch (ServiceException e) {
 						errors.put(pojo.getConceptId(), e.getMessage());
@@ -190,12 +214,12 @@ public class TemplateConceptTransformService {
 		return result;
 	}
 	
-	private ConceptPojo performTransform(ConceptPojo conceptPojo, TransformationInputData inputData, SnowstormRestClient restClient) throws ServiceException {
+	private ConceptPojo performTransform(ConceptPojo conceptPojo, TransformationInputData inputData, ReadReplicaRestClients restClients) throws ServiceException {
 		ConceptPojo transformed = conceptPojo;
 		ConceptTemplate conceptTemplate = inputData.getDestinationTemplate();
 		Map<String, ConceptMiniPojo> attributeSlotValueMap;
 		try {
-			attributeSlotValueMap = constructSlotToTargetValueMap(inputData, conceptPojo, restClient);
+			attributeSlotValueMap = constructSlotToTargetValueMap(inputData, conceptPojo, restClients);
 		} catch (RestClientException e) {
 			throw new ServiceException("Fail to validate slot target values" , e);
 		}
@@ -210,7 +234,7 @@ public class TemplateConceptTransformService {
 		}
 		
 		if (inputData.getTransformRequest().isLexicalTransform()) {
-			Map<String, Set<DescriptionPojo>> slotDescriptionsMap = getSlotDescriptionValuesMap(inputData.getBranchPath(), attributeSlotValueMap, restClient);
+			Map<String, Set<DescriptionPojo>> slotDescriptionsMap = getSlotDescriptionValuesMap(inputData.getBranchPath(), inputData.getBranchHeadTimestamp(), attributeSlotValueMap, restClients);
 			DescriptionTemplateTransformer transformer = new DescriptionTemplateTransformer(transformed, conceptTemplate, slotDescriptionsMap,
 					inputData.getTransformRequest().getInactivationReason());
 			transformer.transform();
@@ -219,7 +243,7 @@ public class TemplateConceptTransformService {
 		return transformed;
 	}
 
-	private Map<String, ConceptMiniPojo> constructSlotToTargetValueMap(TransformationInputData inputData, ConceptPojo conceptPojo, SnowstormRestClient restClient) throws RestClientException, ServiceException {
+	private Map<String, ConceptMiniPojo> constructSlotToTargetValueMap(TransformationInputData inputData, ConceptPojo conceptPojo, ReadReplicaRestClients restClients) throws RestClientException, ServiceException {
 		Map<String, Attribute> destinationSlotToAttributeMap = inputData.getDestinationSlotToAttributeMap();
 		Map<String, Set<ConceptMiniPojo>> slotToAttrbuteValuesMap = TemplateUtil.getSlotNameToAttributeValueMap(destinationSlotToAttributeMap, inputData.getDestinationTemplate(), conceptPojo);
 		// validate using attribute slot range when there is more than one value for a given slot
@@ -230,7 +254,7 @@ public class TemplateConceptTransformService {
 			if (conceptMiniPojos != null) {
 				List<String> conceptIds = conceptMiniPojos.stream().map(ConceptMiniPojo :: getConceptId).collect(Collectors.toList());
 				if (conceptIds.size() > 1) {
-					Set<SimpleConceptPojo> concepts = restClient.getConcepts(branchPath, destinationSlotToAttributeMap.get(slot).getValueAllowableRangeECL(), null, conceptIds, 100);
+					Set<SimpleConceptPojo> concepts = restClients.read(branchPath, client -> client.getConcepts(branchPath, destinationSlotToAttributeMap.get(slot).getValueAllowableRangeECL(), null, conceptIds, 100));
 					Set<String> conceptsWithinRange = concepts.stream().map(SimpleConceptPojo::getId).collect(Collectors.toSet());
 					for (ConceptMiniPojo pojo : conceptMiniPojos) {
 						if (conceptsWithinRange.contains(pojo.getConceptId())) {
@@ -246,7 +270,7 @@ public class TemplateConceptTransformService {
 		return slotToValuesMap;
 	}
 
-	private Map<String, ConceptMiniPojo> getDestinationConceptsMap(String branchPath, SnowstormRestClient client, ConceptTemplate destination) throws ServiceException {
+	private Map<String, ConceptMiniPojo> getDestinationConceptsMap(String branchPath, String branchHeadTimestamp, ReadReplicaRestClients restClients, ConceptTemplate destination) throws ServiceException {
 		List<String> conceptIds = new ArrayList<>();
 		List<Relationship> relationships = destination.getConceptOutline().getClassAxioms().stream().findFirst().get().getRelationships();
 		for (Relationship rel : relationships) {
@@ -259,7 +283,7 @@ public class TemplateConceptTransformService {
 		}
 		LOGGER.info("Load concepts " + conceptIds  + " from branch " + branchPath);
 		try {
-			Set<ConceptMiniPojo> results = client.getConceptMinis(branchPath, conceptIds, conceptIds.size());
+			Set<ConceptMiniPojo> results = getConceptMinis(branchPath, branchHeadTimestamp, conceptIds, restClients);
 			Map<String, ConceptMiniPojo> conceptIdMap = new HashMap<>();
 			for (ConceptMiniPojo pojo : results) {
 				conceptIdMap.put(pojo.getConceptId(), pojo);
@@ -270,6 +294,83 @@ public class TemplateConceptTransformService {
 		}
 	}
 	
+	private String getBranchHeadTimestamp(String branchPath, ReadReplicaRestClients restClients) {
+		try {
+			return ConceptCache.getHeadTimestamp(restClients.getPrimary().getBranch(branchPath));
+		} catch (Exception e) {
+			LOGGER.warn("Failed to load branch {}, concepts will not be cached.", branchPath, e);
+			return null;
+		}
+	}
+
+	private List<ConceptPojo> searchConcepts(String branchPath, String branchHeadTimestamp, List<String> conceptIds, ReadReplicaRestClients restClients) throws RestClientException {
+		List<ConceptPojo> concepts = new ArrayList<>();
+		List<String> conceptIdsToLoad = new ArrayList<>();
+		for (String conceptId : conceptIds) {
+			ConceptPojo cachedConcept = conceptCache.get(branchPath, branchHeadTimestamp, conceptId, ConceptPojo.class);
+			if (cachedConcept != null) {
+				concepts.add(cachedConcept);
+			} else {
+				conceptIdsToLoad.add(conceptId);
+			}
+		}
+		if (!conceptIdsToLoad.isEmpty()) {
+			// Lookups from concurrent batches for the same branch are merged into shared searches. Only lookups made with these
+			// clients, so with the same user's credentials and workload, are merged.
+			ConceptBatchLoader.Scope batchLoader = conceptBatchLoader.forScope(restClients);
+			// The loader of the batch caches what it loads, for every lookup merged into the batch
+			Function<Collection<String>, Flux<ConceptPojo>> bulkLoader = ids -> Mono.fromCallable(() -> {
+						AtomicBoolean servedByReplica = new AtomicBoolean();
+						List<ConceptPojo> loaded = restClients.read(branchPath, client -> client.searchConcepts(branchPath, new ArrayList<>(ids)), servedByReplica);
+						// A replica may lag behind the primary, only what the primary returned is cached against the primary's branch head
+						if (!servedByReplica.get()) {
+							loaded.forEach(concept -> conceptCache.put(branchPath, branchHeadTimestamp, concept.getConceptId(), concept));
+						}
+						return loaded;
+					})
+					.subscribeOn(Schedulers.boundedElastic())
+					.flatMapIterable(concepts -> concepts);
+			List<ConceptPojo> loadedConcepts;
+			try {
+				loadedConcepts = Flux.fromIterable(conceptIdsToLoad)
+						.flatMap(conceptId -> batchLoader.load(branchPath, conceptId, bulkLoader))
+						.collectList()
+						.block();
+			} catch (RuntimeException e) {
+				Throwable cause = Exceptions.unwrap(e);
+				if (cause instanceof RestClientException) {
+					throw (RestClientException) cause;
+				}
+				throw e;
+			}
+			concepts.addAll(loadedConcepts);
+		}
+		return concepts;
+	}
+
+	private Set<ConceptMiniPojo> getConceptMinis(String branchPath, String branchHeadTimestamp, List<String> conceptIds, ReadReplicaRestClients restClients) throws RestClientException {
+		Set<ConceptMiniPojo> concepts = new HashSet<>();
+		List<String> conceptIdsToLoad = new ArrayList<>();
+		for (String conceptId : conceptIds) {
+			ConceptMiniPojo cachedConcept = conceptCache.get(branchPath, branchHeadTimestamp, conceptId, ConceptMiniPojo.class);
+			if (cachedConcept != null) {
+				concepts.add(cachedConcept);
+			} else {
+				conceptIdsToLoad.add(conceptId);
+			}
+		}
+		if (!conceptIdsToLoad.isEmpty()) {
+			AtomicBoolean servedByReplica = new AtomicBoolean();
+			for (ConceptMiniPojo loadedConcept : restClients.read(branchPath, client -> client.getConceptMinis(branchPath, conceptIdsToLoad, conceptIdsToLoad.size()), servedByReplica)) {
+				if (!servedByReplica.get()) {
+					conceptCache.put(branchPath, branchHeadTimestamp, loadedConcept.getConceptId(), loadedConcept);
+				}
+				concepts.add(loadedConcept);
+			}
+		}
+		return concepts;
+	}
+
 	public void validate(ConceptTemplate source, ConceptTemplate destination) throws ServiceException {
 		TemplateUtil.validateTermSlots(destination, false);
 		try {
@@ -300,14 +401,14 @@ public class TemplateConceptTransformService {
 		}
 	}
 
-	private Map<String, Set<DescriptionPojo>> getSlotDescriptionValuesMap(String branchPath, 
-			Map<String, ConceptMiniPojo> attributeSlotMap, SnowstormRestClient restClient) throws ServiceException {
+	private Map<String, Set<DescriptionPojo>> getSlotDescriptionValuesMap(String branchPath, String branchHeadTimestamp,
+			Map<String, ConceptMiniPojo> attributeSlotMap, ReadReplicaRestClients restClients) throws ServiceException {
 
 		Map<String, Set<DescriptionPojo>> slotDescriptionMap = new HashMap<>();
 		List<String> conceptIds = attributeSlotMap.values().stream().map(ConceptMiniPojo::getConceptId).collect(Collectors.toList());
 		List<ConceptPojo> results;
 		try {
-			results = restClient.searchConcepts(branchPath, conceptIds);
+			results = searchConcepts(branchPath, branchHeadTimestamp, conceptIds, restClients);
 		} catch (RestClientException e) {
 			throw new ServiceException("Failed to search concepts on branch " + branchPath, e);
 		}
@@ -334,6 +435,10 @@ public class TemplateConceptTransformService {
 	}
 
 	public ConceptPojo transformConcept(String branchPath, TemplateTransformRequest request, ConceptPojo conceptToTransform, SnowstormRestClient restClient) throws ServiceException {
+		return transformConcept(branchPath, request, conceptToTransform, ReadReplicaRestClients.primaryOnly(restClient));
+	}
+
+	public ConceptPojo transformConcept(String branchPath, TemplateTransformRequest request, ConceptPojo conceptToTransform, ReadReplicaRestClients restClients) throws ServiceException {
 		ConceptTemplate destination = null;
 		LogicalTemplate logical;
 		String destinationTemplate = request.getDestinationTemplate();
@@ -350,10 +455,11 @@ public class TemplateConceptTransformService {
 
 		TransformationInputData inputData = new TransformationInputData(request);
 		inputData.setBranchPath(branchPath);
+		inputData.setBranchHeadTimestamp(getBranchHeadTimestamp(branchPath, restClients));
 		inputData.setDestinationTemplate(destination);
-		inputData.setConceptIdMap(getDestinationConceptsMap(branchPath, restClient, destination));
+		inputData.setConceptIdMap(getDestinationConceptsMap(branchPath, inputData.getBranchHeadTimestamp(), restClients, destination));
 		inputData.setDestinationSlotToAttributeMap(TemplateUtil.getSlotToAttributeMap(logical, true));
 		
-		return performTransform(conceptToTransform, inputData, restClient);
+		return performTransform(conceptToTransform, inputData, restClients);
 	}
 }
@@ -9,6 +9,7 @@ import org.snomed.authoringtemplate.domain.logical.Attribute;
 public class TransformationInputData {
 
 	private String branchPath;
+	private String branchHeadTimestamp;
 	private ConceptTemplate destinationTemplate;
 	private Map<String, ConceptMiniPojo> conceptIdMap;
 	private Map<String, Attribute> slotToAttributeTypeMap;
@@ -34,6 +35,14 @@ public class TransformationInputData {
 		return this.branchPath;
 	}
 
+	public void setBranchHeadTimestamp(String branchHeadTimestamp) {
+		this.branchHeadTimestamp = branchHeadTimestamp;
+	}
+
+	public String getBranchHeadTimestamp() {
+		return branchHeadTimestamp;
+	}
+
 	public void setDestinationTemplate(ConceptTemplate destination) {
 		this.destinationTemplate = destination;
 	}
@@ -21,7 +21,7 @@ import org.springframework.util.FileSystemUtils;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
-@SpringBootTest
+@SpringBootTest(properties = "transformation.job.instance-id=test")
 public abstract class AbstractTest {
 
 	@Autowired
@@ -0,0 +1,115 @@
+package org.ihtsdo.otf.transformationandtemplate.service.client;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+	private static final String API_URL = "http://localhost/snowstorm/";
+	private static final ClientRequest REQUEST = ClientRequest.create(HttpMethod.GET, URI.create(API_URL + "branches/MAIN")).build();
+
+	@Test
+	public void testRequestsOverLimitWaitForPermit() {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 2, 2, 0.5, 2.0, 0);
+		ExchangeFilterFunction filter = limiter.getFilter(API_URL);
+		List<Sinks.One<ClientResponse>> exchanges = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			filter.filter(REQUEST, request -> {
+				Sinks.One<ClientResponse> exchange = Sinks.one();
+				exchanges.add(exchange);
+				return exchange.asMono();
+			}).subscribe();
+		}
+		assertEquals(2, exchanges.size());
+		assertEquals(2, limiter.getInFlight(API_URL));
+
+		exchanges.get(0).tryEmitValue(ClientResponse.create(HttpStatus.OK).build());
+		assertEquals(3, exchanges.size());
+		assertEquals(2, limiter.getInFlight(API_URL));
+	}
+
+	@Test
+	public void testReplicaReadsUseReplicaLimit() {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, 0.5, 2.0, 0);
+		ExchangeFilterFunction filter = limiter.getFilter(API_URL);
+		String replicaUrl = "http://replica/snowstorm/";
+		ClientRequest replicaRequest = ClientRequest.create(HttpMethod.GET, URI.create(replicaUrl + "branches/MAIN"))
+				.attribute(ReadReplicaRouter.API_URL_ATTRIBUTE, replicaUrl)
+				.build();
+		List<ClientRequest> sent = new ArrayList<>();
+		filter.filter(replicaRequest, request -> {
+			sent.add(request);
+			return Sinks.<ClientResponse>one().asMono();
+		}).subscribe();
+		filter.filter(REQUEST, request -> {
+			sent.add(request);
+			return Sinks.<ClientResponse>one().asMono();
+		}).subscribe();
+
+		// The replica's request does not take the primary's only permit
+		assertEquals(2, sent.size());
+		assertEquals(1, limiter.getInFlight(replicaUrl));
+		assertEquals(1, limiter.getInFlight(API_URL));
+	}
+
+	@Test
+	public void testLimitCutOnceOnThrottling() {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 20, 0.5, 2.0, 0);
+		ExchangeFilterFunction filter = limiter.getFilter(API_URL);
+		List<Sinks.One<ClientResponse>> exchanges = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			filter.filter(REQUEST, request -> {
+				Sinks.One<ClientResponse> exchange = Sinks.one();
+				exchanges.add(exchange);
+				return exchange.asMono();
+			}).subscribe();
+		}
+		exchanges.forEach(exchange -> exchange.tryEmitValue(ClientResponse.create(HttpStatus.TOO_MANY_REQUESTS).build()));
+		// The second 429 was sent before the first cut so does not cut again
+		assertEquals(5, limiter.getLimit(API_URL));
+
+		// Grows by about one for each limit's worth of successful requests
+		for (int i = 0; i < 6; i++) {
+			filter.filter(REQUEST, request -> Mono.just(ClientResponse.create(HttpStatus.OK).build())).block();
+		}
+		assertEquals(6, limiter.getLimit(API_URL));
+		assertEquals(0, limiter.getInFlight(API_URL));
+	}
+
+	@Test
+	public void testReservedCapacityKeptForInteractiveRequests() {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(3, 3, 3, 0.5, 2.0, 1);
+		ExchangeFilterFunction filter = limiter.getFilter(API_URL);
+		ClientRequest jobRequest = ClientRequest.from(REQUEST).attribute(Workload.ATTRIBUTE, Workload.TRANSFORMATION_JOB).build();
+		List<Sinks.One<ClientResponse>> exchanges = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			filter.filter(jobRequest, request -> {
+				Sinks.One<ClientResponse> exchange = Sinks.one();
+				exchanges.add(exchange);
+				return exchange.asMono();
+			}).subscribe();
+		}
+		// The third job request waits, leaving the last permit for interactive requests
+		assertEquals(2, exchanges.size());
+
+		filter.filter(REQUEST, request -> {
+			Sinks.One<ClientResponse> exchange = Sinks.one();
+			exchanges.add(exchange);
+			return exchange.asMono();
+		}).subscribe();
+		assertEquals(3, exchanges.size());
+		assertEquals(3, limiter.getInFlight(API_URL));
+	}
+}
@@ -0,0 +1,81 @@
+package org.ihtsdo.otf.transformationandtemplate.service.client;
+
+import org.ihtsdo.otf.transformationandtemplate.service.exception.CircuitBreakerOpenException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ApiCircuitBreakerTest {
+
+	private static final String API_URL = "http://localhost/snowstorm/";
+	private static final ClientRequest REQUEST = ClientRequest.create(HttpMethod.GET, URI.create(API_URL + "branches/MAIN")).build();
+
+	@Test
+	public void testOpensOnFailureRateAndFailsFast() {
+		ApiCircuitBreaker circuitBreaker = new ApiCircuitBreaker(10, 4, 50, 60_000, 100, 60, 1);
+		ExchangeFilterFunction filter = circuitBreaker.getFilter(API_URL);
+		AtomicInteger sent = new AtomicInteger();
+
+		assertEquals(HttpStatus.OK, send(filter, sent, HttpStatus.OK));
+		assertEquals(HttpStatus.OK, send(filter, sent, HttpStatus.OK));
+		assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, send(filter, sent, HttpStatus.INTERNAL_SERVER_ERROR));
+		assertFalse(circuitBreaker.isOpen(API_URL, Workload.INTERACTIVE));
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, send(filter, sent, HttpStatus.SERVICE_UNAVAILABLE));
+		assertTrue(circuitBreaker.isOpen(API_URL, Workload.INTERACTIVE));
+
+		assertThrows(CircuitBreakerOpenException.class, () -> send(filter, sent, HttpStatus.OK));
+		assertEquals(4, sent.get());
+	}
+
+	@Test
+	public void testClosesAfterSuccessfulTrialCall() {
+		ApiCircuitBreaker circuitBreaker = new ApiCircuitBreaker(2, 2, 50, 60_000, 100, 0, 1);
+		ExchangeFilterFunction filter = circuitBreaker.getFilter(API_URL);
+		AtomicInteger sent = new AtomicInteger();
+
+		send(filter, sent, HttpStatus.BAD_GATEWAY);
+		send(filter, sent, HttpStatus.BAD_GATEWAY);
+		// Open for no time at all, so the next call is the trial
+		assertEquals(HttpStatus.OK, send(filter, sent, HttpStatus.OK));
+		assertFalse(circuitBreaker.isOpen(API_URL, Workload.INTERACTIVE));
+		assertEquals(HttpStatus.OK, send(filter, sent, HttpStatus.OK));
+	}
+
+	@Test
+	public void testWorkloadsHaveTheirOwnCircuits() {
+		ApiCircuitBreaker circuitBreaker = new ApiCircuitBreaker(2, 2, 50, 60_000, 100, 60, 1);
+		ExchangeFilterFunction filter = circuitBreaker.getFilter(API_URL);
+		AtomicInteger sent = new AtomicInteger();
+		ClientRequest jobRequest = ClientRequest.from(REQUEST).attribute(Workload.ATTRIBUTE, Workload.TRANSFORMATION_JOB).build();
+
+		send(filter, jobRequest, sent, HttpStatus.SERVICE_UNAVAILABLE);
+		send(filter, jobRequest, sent, HttpStatus.SERVICE_UNAVAILABLE);
+		assertTrue(circuitBreaker.isOpen(API_URL, Workload.TRANSFORMATION_JOB));
+		assertThrows(CircuitBreakerOpenException.class, () -> send(filter, jobRequest, sent, HttpStatus.OK));
+
+		// Interactive requests are still sent
+		assertFalse(circuitBreaker.isOpen(API_URL, Workload.INTERACTIVE));
+		assertEquals(HttpStatus.OK, send(filter, sent, HttpStatus.OK));
+		assertEquals(3, sent.get());
+	}
+
+	private static HttpStatus send(ExchangeFilterFunction filter, AtomicInteger sent, HttpStatus status) {
+		return send(filter, REQUEST, sent, status);
+	}
+
+	private static HttpStatus send(ExchangeFilterFunction filter, ClientRequest clientRequest, AtomicInteger sent, HttpStatus status) {
+		return filter.filter(clientRequest, request -> {
+			sent.incrementAndGet();
+			return Mono.just(ClientResponse.create(status).build());
+		}).block().statusCode();
+	}
+}
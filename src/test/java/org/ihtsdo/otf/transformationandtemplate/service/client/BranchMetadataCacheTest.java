@@ -0,0 +1,97 @@
+package org.ihtsdo.otf.transformationandtemplate.service.client;
+
+import org.ihtsdo.otf.rest.client.terminologyserver.pojo.Branch;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BranchMetadataCacheTest {
+
+	@Test
+	public void testBranchCachedUntilEvicted() {
+		BranchMetadataCache branchMetadataCache = new BranchMetadataCache(60);
+		AtomicInteger loads = new AtomicInteger();
+		Branch branch = new Branch();
+		assertSame(branch, branchMetadataCache.getBranch("MAIN/A", () -> Mono.fromSupplier(() -> {
+			loads.incrementAndGet();
+			return branch;
+		})).block());
+		assertSame(branch, branchMetadataCache.getBranch("MAIN/A", () -> Mono.error(new AssertionError("Should be cached"))).block());
+		assertEquals(1, loads.get());
+
+		branchMetadataCache.evictBranch("MAIN/A");
+		Branch written = new Branch();
+		assertSame(written, branchMetadataCache.getBranch("MAIN/A", () -> Mono.just(written)).block());
+		assertSame(written, branchMetadataCache.getBranch("MAIN/A", () -> Mono.error(new AssertionError("Should be cached"))).block());
+	}
+
+	@Test
+	public void testExpiredBranchLoadedAgain() {
+		BranchMetadataCache branchMetadataCache = new BranchMetadataCache(0);
+		Branch first = new Branch();
+		Branch second = new Branch();
+		assertSame(first, branchMetadataCache.getBranch("MAIN/A", () -> Mono.just(first)).block());
+		assertSame(second, branchMetadataCache.getBranch("MAIN/A", () -> Mono.just(second)).block());
+	}
+
+	@Test
+	public void testRefreshLoadsCachedBranchAgain() {
+		BranchMetadataCache branchMetadataCache = new BranchMetadataCache(60);
+		Branch cached = new Branch();
+		Branch current = new Branch();
+		branchMetadataCache.getBranch("MAIN/A", () -> Mono.just(cached)).block();
+		assertSame(current, branchMetadataCache.refreshBranch("MAIN/A", () -> Mono.just(current)).block());
+		assertSame(current, branchMetadataCache.getBranch("MAIN/A", () -> Mono.error(new AssertionError("Should be cached"))).block());
+	}
+
+	@Test
+	public void testLoadStartedBeforeEvictionNotCached() {
+		BranchMetadataCache branchMetadataCache = new BranchMetadataCache(60);
+		Sinks.One<Branch> response = Sinks.one();
+		Mono<Branch> load = branchMetadataCache.getBranch("MAIN/A", response::asMono).cache();
+		load.subscribe();
+
+		// Written while the branch was being loaded, the loaded head may be from before the write
+		branchMetadataCache.evictBranch("MAIN/A");
+		Branch beforeWrite = new Branch();
+		response.tryEmitValue(beforeWrite);
+		assertSame(beforeWrite, load.block());
+
+		Branch afterWrite = new Branch();
+		assertSame(afterWrite, branchMetadataCache.getBranch("MAIN/A", () -> Mono.just(afterWrite)).block());
+	}
+
+	@Test
+	public void testOnlyLatestOfOverlappingLoadsCached() {
+		BranchMetadataCache branchMetadataCache = new BranchMetadataCache(60);
+		Sinks.One<Branch> firstResponse = Sinks.one();
+		Sinks.One<Branch> secondResponse = Sinks.one();
+		Mono<Branch> firstLoad = branchMetadataCache.refreshBranch("MAIN/A", firstResponse::asMono).cache();
+		firstLoad.subscribe();
+		Mono<Branch> secondLoad = branchMetadataCache.refreshBranch("MAIN/A", secondResponse::asMono).cache();
+		secondLoad.subscribe();
+
+		// The first response arrives last but may hold an older head
+		Branch second = new Branch();
+		secondResponse.tryEmitValue(second);
+		Branch first = new Branch();
+		firstResponse.tryEmitValue(first);
+		assertSame(first, firstLoad.block());
+
+		assertSame(second, branchMetadataCache.getBranch("MAIN/A", () -> Mono.error(new AssertionError("Should be cached"))).block());
+	}
+
+	@Test
+	public void testFailedLoadNotCached() {
+		BranchMetadataCache branchMetadataCache = new BranchMetadataCache(60);
+		assertThrows(IllegalStateException.class, () -> branchMetadataCache.getBranch("MAIN/A", () -> Mono.error(new IllegalStateException("Unavailable"))).block());
+
+		Branch branch = new Branch();
+		assertSame(branch, branchMetadataCache.getBranch("MAIN/A", () -> Mono.just(branch)).block());
+		assertSame(branch, branchMetadataCache.getBranch("MAIN/A", () -> Mono.error(new AssertionError("Should be cached"))).block());
+	}
+}
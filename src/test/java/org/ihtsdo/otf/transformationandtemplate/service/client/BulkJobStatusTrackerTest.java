@@ -0,0 +1,110 @@
+package org.ihtsdo.otf.transformationandtemplate.service.client;
+
+import org.ihtsdo.otf.rest.client.terminologyserver.pojo.ConceptChangeBatchStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkJobStatusTrackerTest {
+
+	private final BulkJobStatusTracker tracker = new BulkJobStatusTracker(10, 40, 1, 10);
+
+	@AfterEach
+	public void tearDown() {
+		tracker.shutdown();
+	}
+
+	@Test
+	public void testPollsWithGrowingIntervalUntilJobCompletes() {
+		List<Long> pollTimes = new CopyOnWriteArrayList<>();
+		WebClient webClient = webClient(location -> {
+			pollTimes.add(System.currentTimeMillis());
+			return pollTimes.size() < 5 ? "RUNNING" : "COMPLETED";
+		});
+
+		ConceptChangeBatchStatus status = tracker.track(webClient, "/MAIN/concepts/bulk/1", Duration.ofSeconds(10)).block();
+
+		assertEquals(ConceptChangeBatchStatus.Status.COMPLETED, status.getStatus());
+		assertEquals(5, pollTimes.size());
+		// Intervals of 10, 15, 22 then capped at 40ms
+		long lastInterval = pollTimes.get(4) - pollTimes.get(3);
+		assertTrue(lastInterval >= 30, "Interval should back off, was " + lastInterval);
+		assertEquals(0, tracker.getOutstandingJobCount());
+	}
+
+	@Test
+	public void testJobsTrackedIndependently() {
+		Map<String, Integer> polls = new ConcurrentHashMap<>();
+		WebClient webClient = webClient(location -> {
+			int count = polls.merge(location, 1, Integer::sum);
+			if (location.endsWith("/failed")) {
+				return "FAILED";
+			}
+			return count < 3 ? "RUNNING" : "COMPLETED";
+		});
+
+		Mono<ConceptChangeBatchStatus> running = tracker.track(webClient, "/MAIN/concepts/bulk/running", Duration.ofSeconds(10));
+		Mono<ConceptChangeBatchStatus> failed = tracker.track(webClient, "/MAIN/concepts/bulk/failed", Duration.ofSeconds(10));
+		List<ConceptChangeBatchStatus> statuses = Mono.zip(running, failed, List::of).block();
+
+		assertEquals(ConceptChangeBatchStatus.Status.COMPLETED, statuses.get(0).getStatus());
+		assertEquals(ConceptChangeBatchStatus.Status.FAILED, statuses.get(1).getStatus());
+		assertEquals(3, polls.get("/MAIN/concepts/bulk/running"));
+		assertEquals(1, polls.get("/MAIN/concepts/bulk/failed"));
+		assertEquals(0, tracker.getOutstandingJobCount());
+	}
+
+	@Test
+	public void testJobStillRunningAtDeadlineTimesOut() {
+		WebClient webClient = webClient(location -> "RUNNING");
+
+		Mono<ConceptChangeBatchStatus> status = tracker.track(webClient, "/MAIN/concepts/bulk/1", Duration.ofMillis(100));
+
+		Exception exception = assertThrows(RuntimeException.class, status::block);
+		assertTrue(exception.getCause() instanceof TimeoutException);
+		assertEquals(0, tracker.getOutstandingJobCount());
+	}
+
+	@Test
+	public void testPollErrorCompletesJob() {
+		WebClient webClient = WebClient.builder()
+				.exchangeFunction(request -> Mono.just(ClientResponse.create(HttpStatus.NOT_FOUND).build()))
+				.build();
+
+		Mono<ConceptChangeBatchStatus> status = tracker.track(webClient, "/MAIN/concepts/bulk/1", Duration.ofSeconds(10));
+
+		assertThrows(WebClientResponseException.NotFound.class, status::block);
+		assertEquals(0, tracker.getOutstandingJobCount());
+	}
+
+	@Test
+	public void testDeadlineGrowsWithComponentCount() {
+		assertEquals(Duration.ofMillis(1_000), tracker.getDeadline(0));
+		assertEquals(Duration.ofMillis(2_000), tracker.getDeadline(100));
+	}
+
+	private static WebClient webClient(Function<String, String> statusByLocation) {
+		return WebClient.builder()
+				.exchangeFunction(request -> Mono.fromSupplier(() -> ClientResponse.create(HttpStatus.OK)
+						.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+						.body("{\"status\":\"" + statusByLocation.apply(request.url().getPath()) + "\"}")
+						.build()))
+				.build();
+	}
+}
@@ -0,0 +1,91 @@
+package org.ihtsdo.otf.transformationandtemplate.service.client;
+
+import org.ihtsdo.otf.rest.client.terminologyserver.pojo.ConceptPojo;
+import org.ihtsdo.otf.rest.client.terminologyserver.pojo.DescriptionPojo;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConceptBatchLoaderTest {
+
+	private final ConceptBatchLoader conceptBatchLoader = new ConceptBatchLoader(50, 100, new ConceptCache("1MB"));
+
+	@Test
+	public void testLookupsInWindowMergedIntoOneRequest() {
+		ConceptBatchLoader.Scope scope = conceptBatchLoader.forScope("user-a");
+		List<Collection<String>> requests = new ArrayList<>();
+		Function<Collection<String>, Flux<ConceptPojo>> bulkLoader = bulkLoader("Loaded", requests);
+
+		List<ConceptPojo> concepts = Mono.zip(
+				scope.load("MAIN", "272379006", bulkLoader),
+				scope.load("MAIN", "242605002", bulkLoader),
+				scope.load("MAIN", "272379006", bulkLoader))
+				.map(loaded -> Arrays.asList(loaded.getT1(), loaded.getT2(), loaded.getT3()))
+				.block();
+
+		assertEquals(1, requests.size());
+		assertEquals(new HashSet<>(Arrays.asList("272379006", "242605002")), new HashSet<>(requests.get(0)));
+		assertEquals("272379006", concepts.get(0).getConceptId());
+		assertEquals("242605002", concepts.get(1).getConceptId());
+		// Lookups of the same concept share the response but each get their own copy
+		assertEquals("272379006", concepts.get(2).getConceptId());
+		assertNotSame(concepts.get(0), concepts.get(2));
+	}
+
+	@Test
+	public void testLookupsOfDifferentClientsInSameWindowNotMerged() {
+		ConceptBatchLoader.Scope userA = conceptBatchLoader.forScope(Arrays.asList(SnowstormClient.class, "token-a", Workload.INTERACTIVE));
+		ConceptBatchLoader.Scope userB = conceptBatchLoader.forScope(Arrays.asList(SnowstormClient.class, "token-b", Workload.INTERACTIVE));
+		ConceptBatchLoader.Scope userAScript = conceptBatchLoader.forScope(Arrays.asList(SnowstormClient.class, "token-a", Workload.SCRIPT));
+		List<Collection<String>> requestsA = new ArrayList<>();
+		List<Collection<String>> requestsB = new ArrayList<>();
+		List<Collection<String>> requestsAScript = new ArrayList<>();
+
+		List<ConceptPojo> concepts = Mono.zip(
+				userA.load("MAIN", "272379006", bulkLoader("Loaded by A", requestsA)),
+				userB.load("MAIN", "272379006", bulkLoader("Loaded by B", requestsB)),
+				userAScript.load("MAIN", "272379006", bulkLoader("Loaded by A's script", requestsAScript)))
+				.map(loaded -> Arrays.asList(loaded.getT1(), loaded.getT2(), loaded.getT3()))
+				.block();
+
+		// Each client's lookup is made with its own loader, so its own credentials and workload
+		assertEquals(Collections.singletonList(Collections.singletonList("272379006")), requestsA);
+		assertEquals(Collections.singletonList(Collections.singletonList("272379006")), requestsB);
+		assertEquals(Collections.singletonList(Collections.singletonList("272379006")), requestsAScript);
+		assertEquals("Loaded by A", getTerm(concepts.get(0)));
+		assertEquals("Loaded by B", getTerm(concepts.get(1)));
+		assertEquals("Loaded by A's script", getTerm(concepts.get(2)));
+	}
+
+	@Test
+	public void testConceptNotReturnedIsEmptyAndErrorsReachEveryLookup() {
+		ConceptBatchLoader.Scope scope = conceptBatchLoader.forScope("user-a");
+		assertNull(scope.load("MAIN", "272379006", ids -> Flux.empty()).block());
+
+		Function<Collection<String>, Flux<ConceptPojo>> failingLoader = ids -> Flux.error(new IllegalStateException("Terminology server unavailable"));
+		Mono<List<ConceptPojo>> lookups = Flux.merge(
+				scope.load("MAIN", "272379006", failingLoader),
+				scope.load("MAIN", "242605002", failingLoader))
+				.collectList();
+		assertThrows(IllegalStateException.class, lookups::block);
+
+		// Nothing is left in flight after a failure, the next lookup is loaded again
+		assertEquals("272379006", scope.load("MAIN", "272379006", bulkLoader("Loaded", new ArrayList<>())).block().getConceptId());
+	}
+
+	private static Function<Collection<String>, Flux<ConceptPojo>> bulkLoader(String term, List<Collection<String>> requests) {
+		return conceptIds -> {
+			requests.add(conceptIds);
+			return Flux.fromIterable(conceptIds).map(conceptId -> new ConceptPojo(conceptId).add(new DescriptionPojo(term)));
+		};
+	}
+
+	private static String getTerm(ConceptPojo concept) {
+		return concept.getDescriptions().iterator().next().getTerm();
+	}
+}
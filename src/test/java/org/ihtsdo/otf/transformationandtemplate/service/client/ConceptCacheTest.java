@@ -0,0 +1,49 @@
+package org.ihtsdo.otf.transformationandtemplate.service.client;
+
+import org.ihtsdo.otf.rest.client.terminologyserver.pojo.ConceptPojo;
+import org.ihtsdo.otf.rest.client.terminologyserver.pojo.DescriptionPojo;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConceptCacheTest {
+
+	private final ConceptCache conceptCache = new ConceptCache("1MB");
+
+	@Test
+	public void testKeyedByBranchHeadTimestampAndConcept() {
+		conceptCache.put("MAIN/A", "1600000000000", "272379006", new ConceptPojo("272379006").add(new DescriptionPojo("Event (event)")));
+
+		ConceptPojo cached = conceptCache.get("MAIN/A", "1600000000000", "272379006", ConceptPojo.class);
+		assertNotNull(cached);
+		assertEquals("272379006", cached.getConceptId());
+		assertEquals("Event (event)", cached.getDescriptions().iterator().next().getTerm());
+
+		// Once the branch moves on the entry is not used again
+		assertNull(conceptCache.get("MAIN/A", "1600000000001", "272379006", ConceptPojo.class));
+		assertNull(conceptCache.get("MAIN/B", "1600000000000", "272379006", ConceptPojo.class));
+		assertNull(conceptCache.get("MAIN/A", "1600000000000", "242605002", ConceptPojo.class));
+	}
+
+	@Test
+	public void testEveryHitIsACopy() {
+		conceptCache.put("MAIN", "1600000000000", "272379006", new ConceptPojo("272379006").add(new DescriptionPojo("Event (event)")));
+
+		ConceptPojo first = conceptCache.get("MAIN", "1600000000000", "272379006", ConceptPojo.class);
+		first.getDescriptions().iterator().next().setTerm("Changed");
+		ConceptPojo second = conceptCache.get("MAIN", "1600000000000", "272379006", ConceptPojo.class);
+		assertNotSame(first, second);
+		assertEquals("Event (event)", second.getDescriptions().iterator().next().getTerm());
+
+		ConceptPojo copy = conceptCache.copy(second);
+		assertNotSame(second, copy);
+		assertEquals("Event (event)", copy.getDescriptions().iterator().next().getTerm());
+	}
+
+	@Test
+	public void testNothingCachedWithoutHeadTimestamp() {
+		assertNull(ConceptCache.getHeadTimestamp(null));
+		conceptCache.put("MAIN", null, "272379006", new ConceptPojo("272379006"));
+		assertNull(conceptCache.get("MAIN", null, "272379006", ConceptPojo.class));
+	}
+}
@@ -0,0 +1,71 @@
+package org.ihtsdo.otf.transformationandtemplate.service.client;
+
+import org.ihtsdo.otf.rest.client.RestClientException;
+import org.ihtsdo.otf.rest.client.terminologyserver.SnowstormRestClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReadReplicaRestClientsTest {
+
+	private static final String PRIMARY_URL = "http://primary/snowstorm/";
+	private static final String REPLICA_URL = "http://replica/snowstorm/";
+
+	private final SnowstormRestClient primary = Mockito.mock(SnowstormRestClient.class);
+	private final SnowstormRestClient replica = Mockito.mock(SnowstormRestClient.class);
+	private ReadReplicaRouter router;
+	private ReadReplicaRestClients restClients;
+
+	@BeforeEach
+	public void setUp() {
+		router = new ReadReplicaRouter(PRIMARY_URL, Collections.singletonList(REPLICA_URL), 3, 30, 3600, 30);
+		restClients = new ReadReplicaRestClients(primary, Collections.singletonMap(REPLICA_URL, replica), router, Workload.INTERACTIVE,
+				new WorkloadBulkheads(10, 10, 10, 10), new ApiCircuitBreaker(10, 10, 50, 60_000, 100, 60, 1), PRIMARY_URL);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		router.shutdown();
+	}
+
+	@Test
+	public void testReadReportsWhetherReplicaServedIt() throws RestClientException {
+		AtomicBoolean servedByReplica = new AtomicBoolean();
+		assertSame(replica, restClients.read("MAIN", client -> client, servedByReplica));
+		assertTrue(servedByReplica.get());
+
+		// Reads of a branch just written to go to the primary
+		router.recordWrite("MAIN");
+		assertSame(primary, restClients.read("MAIN", client -> client, servedByReplica));
+		assertFalse(servedByReplica.get());
+	}
+
+	@Test
+	public void testReadMadeAgainOnPrimaryNotReportedAsReplica() throws RestClientException {
+		// Left over from an earlier read
+		AtomicBoolean servedByReplica = new AtomicBoolean(true);
+		SnowstormRestClient servedBy = restClients.read("MAIN", client -> {
+			if (client == replica) {
+				throw new ResourceAccessException("Connection refused");
+			}
+			return client;
+		}, servedByReplica);
+
+		assertSame(primary, servedBy);
+		assertFalse(servedByReplica.get());
+	}
+
+	@Test
+	public void testPrimaryOnlyNeverReportsReplica() throws RestClientException {
+		AtomicBoolean servedByReplica = new AtomicBoolean(true);
+		assertSame(primary, ReadReplicaRestClients.primaryOnly(primary).read("MAIN", client -> client, servedByReplica));
+		assertFalse(servedByReplica.get());
+	}
+}
@@ -0,0 +1,127 @@
+package org.ihtsdo.otf.transformationandtemplate.service.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReadReplicaRouterTest {
+
+	private static final String PRIMARY_URL = "http://primary/snowstorm/";
+	private static final String REPLICA_A_URL = "http://replica-a/snowstorm/";
+	private static final String REPLICA_B_URL = "http://replica-b/snowstorm/";
+
+	private ReadReplicaRouter router;
+
+	@AfterEach
+	public void tearDown() {
+		router.shutdown();
+	}
+
+	@Test
+	public void testReadsGoToReplicaWithFewestOutstanding() {
+		router = new ReadReplicaRouter(PRIMARY_URL, Arrays.asList(REPLICA_A_URL, REPLICA_B_URL), 3, 30, 3600, 30);
+		ExchangeFilterFunction filter = router.getFilter(PRIMARY_URL);
+		List<URI> sentTo = new ArrayList<>();
+
+		// Neither response arrives, so the second read finds the first replica busy
+		for (int i = 0; i < 2; i++) {
+			filter.filter(read("MAIN"), request -> {
+				sentTo.add(request.url());
+				return Sinks.<ClientResponse>one().asMono();
+			}).subscribe();
+		}
+
+		assertEquals(2, sentTo.stream().map(URI::getHost).distinct().count());
+		sentTo.forEach(url -> assertEquals("/snowstorm/browser/MAIN/concepts/bulk-load", url.getPath()));
+	}
+
+	@Test
+	public void testWritesAndRecentlyWrittenBranchesStayOnPrimary() {
+		router = new ReadReplicaRouter(PRIMARY_URL, Arrays.asList(REPLICA_A_URL), 3, 30, 3600, 30);
+		ExchangeFilterFunction filter = router.getFilter(PRIMARY_URL);
+
+		assertEquals("primary", send(filter, ClientRequest.create(HttpMethod.POST, URI.create(PRIMARY_URL + "browser/MAIN/concepts/bulk")).build(), HttpStatus.OK));
+		assertEquals("replica-a", send(filter, read("MAIN"), HttpStatus.OK));
+
+		router.recordWrite("MAIN");
+		assertEquals("primary", send(filter, read("MAIN"), HttpStatus.OK));
+		assertEquals("replica-a", send(filter, read("MAIN/PROJECT"), HttpStatus.OK));
+	}
+
+	@Test
+	public void testReplicaEjectedAfterRepeatedGatewayErrors() {
+		router = new ReadReplicaRouter(PRIMARY_URL, Arrays.asList(REPLICA_A_URL), 2, 30, 3600, 30);
+		ExchangeFilterFunction filter = router.getFilter(PRIMARY_URL);
+
+		assertEquals("replica-a", send(filter, read("MAIN"), HttpStatus.SERVICE_UNAVAILABLE));
+		assertEquals("replica-a", send(filter, read("MAIN"), HttpStatus.SERVICE_UNAVAILABLE));
+		assertEquals("primary", send(filter, read("MAIN"), HttpStatus.OK));
+	}
+
+	@Test
+	public void testReplicaCircuitGuardsReplicaReads() {
+		router = new ReadReplicaRouter(PRIMARY_URL, Arrays.asList(REPLICA_A_URL), 3, 30, 3600, 30);
+		ApiCircuitBreaker circuitBreaker = new ApiCircuitBreaker(2, 2, 50, 60_000, 100, 60, 1);
+		ExchangeFilterFunction filter = router.getFilter(PRIMARY_URL).andThen(circuitBreaker.getFilter(PRIMARY_URL));
+
+		AtomicBoolean servedByReplica = new AtomicBoolean();
+		assertEquals("replica-a", send(filter, read("MAIN", servedByReplica), HttpStatus.INTERNAL_SERVER_ERROR));
+		assertTrue(servedByReplica.get());
+		assertEquals("replica-a", send(filter, read("MAIN", servedByReplica), HttpStatus.INTERNAL_SERVER_ERROR));
+		assertTrue(circuitBreaker.isOpen(REPLICA_A_URL, Workload.INTERACTIVE));
+		assertFalse(circuitBreaker.isOpen(PRIMARY_URL, Workload.INTERACTIVE));
+
+		// Nothing is sent to a replica whose circuit is open, the read goes to the primary
+		assertEquals("primary", send(filter, read("MAIN", servedByReplica), HttpStatus.OK));
+		assertFalse(servedByReplica.get());
+	}
+
+	@Test
+	public void testOtherApisNotRouted() {
+		router = new ReadReplicaRouter(PRIMARY_URL, Arrays.asList(REPLICA_A_URL), 3, 30, 3600, 30);
+		ExchangeFilterFunction filter = router.getFilter("http://authoring-services/");
+		ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("http://authoring-services/projects"))
+				.attribute(ReadReplicaRouter.READ_BRANCH_ATTRIBUTE, "MAIN")
+				.build();
+
+		assertEquals("authoring-services", send(filter, request, HttpStatus.OK));
+	}
+
+	private static ClientRequest read(String branchPath) {
+		return read(branchPath, new AtomicBoolean());
+	}
+
+	private static ClientRequest read(String branchPath, AtomicBoolean servedByReplica) {
+		return ClientRequest.create(HttpMethod.POST, URI.create(PRIMARY_URL + "browser/" + branchPath + "/concepts/bulk-load"))
+				.attribute(ReadReplicaRouter.READ_BRANCH_ATTRIBUTE, branchPath)
+				.attribute(ReadReplicaRouter.SERVED_BY_REPLICA_ATTRIBUTE, servedByReplica)
+				.build();
+	}
+
+	private static String send(ExchangeFilterFunction filter, ClientRequest request, HttpStatus status) {
+		List<String> sentTo = new ArrayList<>();
+		filter.filter(request, routed -> {
+			sentTo.add(host(routed));
+			return Mono.just(ClientResponse.create(status).build());
+		}).block();
+		return sentTo.get(0);
+	}
+
+	private static String host(ClientRequest request) {
+		return request.url().getHost();
+	}
+}
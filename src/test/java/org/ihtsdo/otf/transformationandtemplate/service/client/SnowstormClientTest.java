@@ -0,0 +1,25 @@
+package org.ihtsdo.otf.transformationandtemplate.service.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SnowstormClientTest {
+
+	@Test
+	public void testChunkByLength() {
+		List<String> ids = Arrays.asList("100001", "100002", "100003", "100004", "100005");
+		// Each id counts as 6 characters plus 3 overhead, so two fit in 20
+		List<List<String>> chunks = SnowstormClient.chunkByLength(ids, 3, 20);
+		assertEquals(Arrays.asList(Arrays.asList("100001", "100002"), Arrays.asList("100003", "100004"), Collections.singletonList("100005")), chunks);
+
+		assertEquals(Collections.singletonList(ids), SnowstormClient.chunkByLength(ids, 3, 1000));
+		assertEquals(ids.size(), SnowstormClient.chunkByLength(ids, 3, 1).size());
+		assertTrue(SnowstormClient.chunkByLength(Collections.emptyList(), 3, 20).isEmpty());
+	}
+}
@@ -0,0 +1,103 @@
+package org.ihtsdo.otf.transformationandtemplate.service.client;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransientErrorRetryFilterTest {
+
+	private final TransientErrorRetryFilter retryFilter = new TransientErrorRetryFilter(2, 1, 1);
+
+	@Test
+	public void testRetriesUnavailableUntilSuccess() {
+		AtomicInteger exchanges = new AtomicInteger();
+		ClientResponse response = retryFilter.filter(request(HttpMethod.POST), request -> Mono.fromSupplier(() ->
+				ClientResponse.create(exchanges.incrementAndGet() < 3 ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.OK).build()))
+				.block();
+		assertEquals(HttpStatus.OK, response.statusCode());
+		assertEquals(3, exchanges.get());
+	}
+
+	@Test
+	public void testValidationErrorIsNotRetried() {
+		AtomicInteger exchanges = new AtomicInteger();
+		ClientResponse response = retryFilter.filter(request(HttpMethod.POST), request -> Mono.fromSupplier(() -> {
+			exchanges.incrementAndGet();
+			return ClientResponse.create(HttpStatus.BAD_REQUEST).body("Invalid member").build();
+		})).block();
+		assertEquals(HttpStatus.BAD_REQUEST, response.statusCode());
+		assertEquals("Invalid member", response.bodyToMono(String.class).block());
+		assertEquals(1, exchanges.get());
+	}
+
+	@Test
+	public void testLastThrottledResponseReturnedWhenRetriesRunOut() {
+		AtomicInteger exchanges = new AtomicInteger();
+		ClientResponse response = retryFilter.filter(request(HttpMethod.GET), request -> Mono.fromSupplier(() -> {
+			exchanges.incrementAndGet();
+			return ClientResponse.create(HttpStatus.TOO_MANY_REQUESTS).build();
+		})).block();
+		assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.statusCode());
+		assertEquals(3, exchanges.get());
+	}
+
+	@Test
+	public void testGatewayTimeoutOnlyRetriedForIdempotentMethods() {
+		AtomicInteger exchanges = new AtomicInteger();
+		ClientResponse response = retryFilter.filter(request(HttpMethod.POST), request -> Mono.fromSupplier(() -> {
+			exchanges.incrementAndGet();
+			return ClientResponse.create(HttpStatus.GATEWAY_TIMEOUT).build();
+		})).block();
+		assertEquals(HttpStatus.GATEWAY_TIMEOUT, response.statusCode());
+		assertEquals(1, exchanges.get());
+
+		exchanges.set(0);
+		response = retryFilter.filter(request(HttpMethod.GET), request -> Mono.fromSupplier(() ->
+				ClientResponse.create(exchanges.incrementAndGet() < 2 ? HttpStatus.GATEWAY_TIMEOUT : HttpStatus.OK).build()))
+				.block();
+		assertEquals(HttpStatus.OK, response.statusCode());
+		assertEquals(2, exchanges.get());
+	}
+
+	@Test
+	public void testFailedPostOnlyRetriedIfNeverConnected() {
+		AtomicInteger exchanges = new AtomicInteger();
+		assertThrows(WebClientRequestException.class, () -> retryFilter.filter(request(HttpMethod.POST), request -> {
+			exchanges.incrementAndGet();
+			return Mono.error(new WebClientRequestException(new IOException("Connection reset"), HttpMethod.POST, request.url(), new HttpHeaders()));
+		}).block());
+		assertEquals(1, exchanges.get());
+
+		exchanges.set(0);
+		assertThrows(WebClientRequestException.class, () -> retryFilter.filter(request(HttpMethod.POST), request -> {
+			exchanges.incrementAndGet();
+			return Mono.error(new WebClientRequestException(new ConnectException("Connection refused"), HttpMethod.POST, request.url(), new HttpHeaders()));
+		}).block());
+		assertEquals(3, exchanges.get());
+	}
+
+	@Test
+	public void testParseRetryAfter() {
+		assertEquals(Duration.ofSeconds(120), TransientErrorRetryFilter.parseRetryAfter("120"));
+		assertEquals(Duration.ZERO, TransientErrorRetryFilter.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT"));
+		assertNull(TransientErrorRetryFilter.parseRetryAfter("soon"));
+		assertNull(TransientErrorRetryFilter.parseRetryAfter(null));
+	}
+
+	private ClientRequest request(HttpMethod method) {
+		return ClientRequest.create(method, URI.create("http://localhost/snowstorm/MAIN/members")).build();
+	}
+}
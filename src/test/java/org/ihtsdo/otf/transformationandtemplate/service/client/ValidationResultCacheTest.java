@@ -0,0 +1,35 @@
+package org.ihtsdo.otf.transformationandtemplate.service.client;
+
+import org.ihtsdo.otf.rest.client.terminologyserver.pojo.ConceptPojo;
+import org.ihtsdo.otf.transformationandtemplate.service.TestDataHelper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ValidationResultCacheTest {
+
+	@Test
+	public void testKeyedByBranchHeadTimestampAndConceptState() {
+		ValidationResultCache validationResultCache = new ValidationResultCache(100);
+		ConceptPojo concept = TestDataHelper.createConceptPojo();
+		String conceptHash = validationResultCache.hash(concept);
+		assertEquals(conceptHash, validationResultCache.hash(concept));
+
+		List<ConceptValidationResult> validationResults = Collections.emptyList();
+		validationResultCache.put("MAIN/PROJECT/TASK-1", "1600000000000", conceptHash, validationResults);
+		assertSame(validationResults, validationResultCache.get("MAIN/PROJECT/TASK-1", "1600000000000", conceptHash));
+		assertNull(validationResultCache.get("MAIN/PROJECT/TASK-1", "1600000000001", conceptHash));
+		// A sibling task branch at the same head timestamp may validate differently
+		assertNull(validationResultCache.get("MAIN/PROJECT/TASK-2", "1600000000000", conceptHash));
+
+		concept.getDescriptions().iterator().next().setTerm("Almond allergy");
+		assertNotEquals(conceptHash, validationResultCache.hash(concept));
+
+		// Nothing is cached without a head timestamp
+		validationResultCache.put("MAIN/PROJECT/TASK-1", null, conceptHash, validationResults);
+		assertNull(validationResultCache.get("MAIN/PROJECT/TASK-1", null, conceptHash));
+	}
+}
@@ -0,0 +1,48 @@
+package org.ihtsdo.otf.transformationandtemplate.service.client;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Sinks;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class WorkloadBulkheadsTest {
+
+	private static final ClientRequest REQUEST = ClientRequest.create(HttpMethod.GET, URI.create("http://localhost/snowstorm/branches/MAIN")).build();
+
+	@Test
+	public void testWorkloadsLimitedSeparately() {
+		WorkloadBulkheads bulkheads = new WorkloadBulkheads(5, 1, 1, 1);
+		ClientRequest scriptRequest = ClientRequest.from(REQUEST).attribute(Workload.ATTRIBUTE, Workload.SCRIPT).build();
+		List<Sinks.One<ClientResponse>> exchanges = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			bulkheads.filter(scriptRequest, request -> {
+				Sinks.One<ClientResponse> exchange = Sinks.one();
+				exchanges.add(exchange);
+				return exchange.asMono();
+			}).subscribe();
+		}
+		assertEquals(1, exchanges.size());
+
+		// A full script bulkhead does not hold up interactive requests
+		bulkheads.filter(REQUEST, request -> {
+			Sinks.One<ClientResponse> exchange = Sinks.one();
+			exchanges.add(exchange);
+			return exchange.asMono();
+		}).subscribe();
+		assertEquals(2, exchanges.size());
+		assertEquals(1, bulkheads.getInFlight(Workload.INTERACTIVE));
+
+		// The waiting script request goes once the first has finished
+		exchanges.get(0).tryEmitValue(ClientResponse.create(HttpStatus.OK).build());
+		assertEquals(3, exchanges.size());
+		assertEquals(1, bulkheads.getInFlight(Workload.SCRIPT));
+	}
+}
@@ -0,0 +1,60 @@
+package org.ihtsdo.otf.transformationandtemplate.service.componenttransform;
+
+import org.ihtsdo.otf.rest.client.terminologyserver.pojo.ConceptPojo;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.ihtsdo.otf.transformationandtemplate.service.componenttransform.AdaptiveBatchSizer.RoundTrip.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class AdaptiveBatchSizerTest {
+
+	@Test
+	public void testSizedByLatencyAndPayload() {
+		AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(5, 50, 1000, 30_000, 200);
+		assertEquals(50, batchSizer.getBatchSize());
+
+		// Quick loads of concepts with no descriptions, relationships or axioms, the target components allow 200 concepts
+		batchSizer.record(LOAD, concepts(10), TimeUnit.MILLISECONDS.toNanos(10));
+		assertEquals(200, batchSizer.getBatchSize());
+
+		// Saves take a second per concept, the target latency allows 30
+		batchSizer.record(SAVE, concepts(10), TimeUnit.SECONDS.toNanos(10));
+		assertEquals(30, batchSizer.getBatchSize());
+
+		// Very slow validation, never smaller than the minimum
+		batchSizer.record(VALIDATE, concepts(1), TimeUnit.SECONDS.toNanos(600));
+		assertEquals(5, batchSizer.getBatchSize());
+	}
+
+	@Test
+	public void testPartitionSizesEachBatchWhenTaken() {
+		AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(1, 4, 100, 10_000, 1_000);
+		List<Integer> items = IntStream.range(0, 10).boxed().collect(Collectors.toList());
+
+		List<Integer> batchSizes = new ArrayList<>();
+		for (List<Integer> batch : batchSizer.partition(items)) {
+			batchSizes.add(batch.size());
+			// Each concept takes a second to save
+			batchSizer.record(SAVE, concepts(batch.size()), TimeUnit.SECONDS.toNanos(batch.size()));
+		}
+		assertEquals(List.of(4, 6), batchSizes);
+		assertEquals(Collections.emptyList(), toSizes(batchSizer.partition(Collections.emptyList())));
+	}
+
+	private static List<Integer> toSizes(Iterable<? extends List<?>> batches) {
+		List<Integer> sizes = new ArrayList<>();
+		batches.forEach(batch -> sizes.add(batch.size()));
+		return sizes;
+	}
+
+	private static List<ConceptPojo> concepts(int count) {
+		return IntStream.range(0, count).mapToObj(i -> new ConceptPojo()).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,61 @@
+package org.ihtsdo.otf.transformationandtemplate.service.componenttransform;
+
+import org.ihtsdo.otf.rest.client.terminologyserver.pojo.DescriptionPojo;
+import org.ihtsdo.otf.rest.exception.BusinessServiceException;
+import org.ihtsdo.otf.transformationandtemplate.service.client.ChangeResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static java.lang.Boolean.FALSE;
+import static java.lang.Boolean.TRUE;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChangeResultRegistryTest {
+
+	@Test
+	public void testLookups() throws BusinessServiceException {
+		ChangeResult<DescriptionPojo> bite = new ChangeResult<>(description("100", "242605002", "Bite", "en"));
+		ChangeResult<DescriptionPojo> biteSv = new ChangeResult<>(description("200", "242605002", "Bett", "sv"));
+		ChangeResult<DescriptionPojo> otherBite = new ChangeResult<>(description("300", "774007", "Bite", "en"));
+		ChangeResultRegistry<DescriptionPojo> registry = new ChangeResultRegistry<>(Arrays.asList(bite, biteSv, otherBite));
+
+		assertSame(biteSv, registry.getById("200"));
+		assertSame(otherBite, registry.getByComponent(otherBite.getComponent()));
+		// The same term and language on another concept is a different change
+		assertSame(bite, registry.getByConceptTermAndLang("242605002", "Bite", "en"));
+		assertSame(otherBite, registry.getByConceptTermAndLang("774007", "Bite", "en"));
+		assertEquals(Arrays.asList(bite, biteSv), registry.getByConceptId("242605002"));
+		assertTrue(registry.getByConceptId("123037004").isEmpty());
+		assertThrows(BusinessServiceException.class, () -> registry.getById("400"));
+
+		ChangeResultRegistry<DescriptionPojo> conceptRegistry = registry.forConcepts(Collections.singleton("774007"));
+		assertEquals(Collections.singletonList(otherBite), conceptRegistry.getAll());
+		assertThrows(BusinessServiceException.class, () -> conceptRegistry.getById("100"));
+	}
+
+	@Test
+	public void testFailRemainingForConcept() {
+		ChangeResult<DescriptionPojo> succeeded = new ChangeResult<>(description("100", "242605002", "Bite", "en"));
+		succeeded.success();
+		ChangeResult<DescriptionPojo> pending = new ChangeResult<>(description("200", "242605002", "Bett", "sv"));
+		ChangeResult<DescriptionPojo> otherConcept = new ChangeResult<>(description("300", "774007", "Bite", "en"));
+		List<ChangeResult<DescriptionPojo>> changes = Arrays.asList(succeeded, pending, otherConcept);
+
+		new ChangeResultRegistry<>(changes).failRemainingForConcept("242605002", "Concept validation errors");
+
+		assertEquals(TRUE, succeeded.getSuccess());
+		assertEquals(FALSE, pending.getSuccess());
+		assertEquals("Concept validation errors", pending.getMessage());
+		assertNull(otherConcept.getSuccess());
+	}
+
+	private static DescriptionPojo description(String descriptionId, String conceptId, String term, String lang) {
+		DescriptionPojo description = new DescriptionPojo(term).setDescriptionId(descriptionId);
+		description.setConceptId(conceptId);
+		description.setLang(lang);
+		return description;
+	}
+}
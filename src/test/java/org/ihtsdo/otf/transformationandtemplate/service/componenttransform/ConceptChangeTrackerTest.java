@@ -0,0 +1,28 @@
+package org.ihtsdo.otf.transformationandtemplate.service.componenttransform;
+
+import org.ihtsdo.otf.rest.client.terminologyserver.pojo.ConceptPojo;
+import org.ihtsdo.otf.transformationandtemplate.service.TestDataHelper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConceptChangeTrackerTest {
+
+	@Test
+	public void testIsUnchanged() {
+		ConceptChangeTracker changeTracker = new ConceptChangeTracker();
+		ConceptPojo unchanged = TestDataHelper.createConceptPojo();
+		ConceptPojo changed = TestDataHelper.createConceptPojo();
+		changed.setConceptId("654321");
+		changeTracker.snapshot(unchanged);
+		changeTracker.snapshot(changed);
+
+		changed.getDescriptions().iterator().next().setTerm("Almond allergy");
+
+		assertTrue(changeTracker.isUnchanged(unchanged));
+		assertFalse(changeTracker.isUnchanged(changed));
+		// Snapshots are forgotten once checked, a concept which was never loaded is always saved
+		assertFalse(changeTracker.isUnchanged(unchanged));
+	}
+}
@@ -0,0 +1,279 @@
+package org.ihtsdo.otf.transformationandtemplate.service.componenttransform;
+
+import org.ihtsdo.otf.rest.client.terminologyserver.pojo.AxiomPojo;
+import org.ihtsdo.otf.rest.client.terminologyserver.pojo.ConceptChangeBatchStatus;
+import org.ihtsdo.otf.rest.client.terminologyserver.pojo.ConceptPojo;
+import org.ihtsdo.otf.rest.client.terminologyserver.pojo.DescriptionPojo;
+import org.ihtsdo.otf.rest.client.terminologyserver.pojo.SnomedComponent;
+import org.ihtsdo.otf.rest.exception.BusinessServiceException;
+import org.ihtsdo.otf.transformationandtemplate.domain.ComponentTransformationRequest;
+import org.ihtsdo.otf.transformationandtemplate.service.TestDataHelper;
+import org.ihtsdo.otf.transformationandtemplate.service.client.AuthoringServicesClient;
+import org.ihtsdo.otf.transformationandtemplate.service.client.ChangeResult;
+import org.ihtsdo.otf.transformationandtemplate.service.client.SnowstormClient;
+import org.ihtsdo.otf.transformationandtemplate.service.exception.CircuitBreakerOpenException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.ConnectException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static java.lang.Boolean.FALSE;
+import static java.lang.Boolean.TRUE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+
+public class HighLevelAuthoringServiceTest {
+
+	private static final String BRANCH_PATH = "MAIN/PROJECT";
+
+	private final SnowstormClient snowstormClient = Mockito.mock(SnowstormClient.class);
+	private final AuthoringServicesClient authoringServicesClient = Mockito.mock(AuthoringServicesClient.class);
+
+	// Concept ids of each save, in the order the saves were made
+	private final List<List<String>> saves = new CopyOnWriteArrayList<>();
+
+	@BeforeEach
+	public void before() {
+		Mockito.when(snowstormClient.getDefaultModuleId(BRANCH_PATH)).thenReturn("45991000052106");
+		Mockito.when(snowstormClient.streamCurrentFullConcepts(any(), any())).thenAnswer(invocation ->
+				Flux.fromIterable(getLoadedConcepts(invocation.getArgument(0))));
+		Mockito.when(snowstormClient.getCurrentFullConcepts(any(), any())).thenAnswer(invocation ->
+				getLoadedConcepts(invocation.getArgument(0)));
+	}
+
+	@Test
+	public void testProcessingBatchesInPipelineBounded() throws BusinessServiceException {
+		AtomicInteger batchesInPipeline = new AtomicInteger();
+		AtomicInteger maxBatchesInPipeline = new AtomicInteger();
+		AtomicInteger savesInProgress = new AtomicInteger();
+		AtomicInteger maxSavesInProgress = new AtomicInteger();
+		// A batch is in the pipeline from the start of its load until its concepts are loaded again after the save
+		Mockito.doAnswer(invocation -> {
+			maxBatchesInPipeline.accumulateAndGet(batchesInPipeline.incrementAndGet(), Math::max);
+			return Flux.fromIterable(getLoadedConcepts(invocation.getArgument(0)));
+		}).when(snowstormClient).streamCurrentFullConcepts(any(), any());
+		Mockito.doAnswer(invocation -> {
+			batchesInPipeline.decrementAndGet();
+			return getLoadedConcepts(invocation.getArgument(0));
+		}).when(snowstormClient).getCurrentFullConcepts(any(), any());
+		Mockito.when(snowstormClient.saveUpdateConceptsNoValidationAsync(any(), any())).thenAnswer(invocation -> {
+			saves.add(getConceptIds(invocation.getArgument(0)));
+			return Mono.delay(Duration.ofMillis(20))
+					.doOnSubscribe(subscription -> maxSavesInProgress.accumulateAndGet(savesInProgress.incrementAndGet(), Math::max))
+					.map(tick -> {
+						savesInProgress.decrementAndGet();
+						return new ConceptChangeBatchStatus(ConceptChangeBatchStatus.Status.COMPLETED);
+					});
+		});
+
+		List<ChangeResult<DescriptionPojo>> changes = createDescriptionChanges(6);
+		createService(1, 2, 1, 10).createDescriptions(createRequest(100), getComponents(changes), changes);
+
+		assertEquals(6, saves.size());
+		assertEquals(2, maxBatchesInPipeline.get(), "Batches should be loaded while earlier ones are saved, no more than two at a time.");
+		assertEquals(1, maxSavesInProgress.get());
+		changes.forEach(change -> assertEquals(TRUE, change.getSuccess()));
+	}
+
+	@Test
+	public void testAxiomsOfConceptInOneProcessingBatch() throws BusinessServiceException {
+		Map<String, AxiomPojo> loadedAxioms = new HashMap<>();
+		Mockito.doAnswer(invocation -> {
+			SnowstormClient.ConceptBulkLoadRequest loadRequest = invocation.getArgument(0);
+			List<ConceptPojo> concepts = new ArrayList<>();
+			for (String conceptId : loadRequest.getConceptIds()) {
+				ConceptPojo concept = new ConceptPojo(conceptId);
+				concept.setClassAxioms(loadedAxioms.values().stream()
+						.filter(axiom -> axiom.getAxiomId().startsWith(conceptId))
+						.map(axiom -> createAxiom(conceptId, axiom.getAxiomId(), false))
+						.collect(Collectors.toSet()));
+				concepts.add(concept);
+			}
+			return concepts;
+		}).when(snowstormClient).getCurrentFullConcepts(any(), any());
+		mockSaves(Collections.emptySet());
+
+		// Axioms of a concept are spread through the input
+		List<ChangeResult<AxiomPojo>> changes = new ArrayList<>();
+		for (String axiomId : Arrays.asList("100-a", "100-b", "200-a", "300-a", "200-b", "100-c")) {
+			AxiomPojo axiom = createAxiom(axiomId.substring(0, 3), axiomId, true);
+			loadedAxioms.put(axiomId, axiom);
+			changes.add(new ChangeResult<>(axiom));
+		}
+		createService(1, 2, 1, 10).updateAxioms(createRequest(100), getComponents(changes), changes);
+
+		assertEquals(Arrays.asList(Collections.singletonList("100"), Collections.singletonList("200"), Collections.singletonList("300")), saves);
+		changes.forEach(change -> assertEquals(TRUE, change.getSuccess(), change.getMessage()));
+	}
+
+	@Test
+	public void testFailedSaveRetriedHalfByHalf() throws BusinessServiceException {
+		mockSaves(Collections.singleton("3"));
+
+		List<ChangeResult<DescriptionPojo>> changes = createDescriptionChanges(8);
+		createService(8, 2, 1, 10).createDescriptions(createRequest(100), getComponents(changes), changes);
+
+		// Each failing save is retried as two halves until the failing concept is saved alone, the other halves are saved
+		List<Integer> saveSizes = getSaveSizes();
+		saveSizes.sort(Comparator.reverseOrder());
+		assertEquals(Arrays.asList(8, 4, 4, 2, 2, 1, 1), saveSizes);
+		assertTrue(saves.contains(Collections.singletonList("3")));
+		assertFailedConcepts(changes, Collections.singleton("3"));
+	}
+
+	@Test
+	public void testFailedSaveRetriesLimitedByBudget() throws BusinessServiceException {
+		mockSaves(Collections.singleton("3"));
+
+		List<ChangeResult<DescriptionPojo>> changes = createDescriptionChanges(8);
+		createService(8, 2, 1, 2).createDescriptions(createRequest(100), getComponents(changes), changes);
+
+		// Only one split fits in a budget of two retry saves, every concept in the failing half fails
+		assertEquals(Arrays.asList(8, 4, 4), getSaveSizes());
+		Set<String> failingHalf = new HashSet<>(saves.get(1).contains("3") ? saves.get(1) : saves.get(2));
+		assertFailedConcepts(changes, failingHalf);
+	}
+
+	@Test
+	public void testFailedSaveNotRetriedAtMinSize() throws BusinessServiceException {
+		mockSaves(Collections.singleton("3"));
+
+		List<ChangeResult<DescriptionPojo>> changes = createDescriptionChanges(8);
+		createService(8, 2, 8, 10).createDescriptions(createRequest(100), getComponents(changes), changes);
+
+		assertEquals(Collections.singletonList(8), getSaveSizes());
+		changes.forEach(change -> {
+			assertEquals(FALSE, change.getSuccess());
+			assertTrue(change.getMessage().startsWith("Persisting concept batch failed"), change.getMessage());
+		});
+	}
+
+	@Test
+	public void testTaskBatchWhichLostContactNotReported() throws BusinessServiceException {
+		Mockito.when(snowstormClient.saveUpdateConceptsNoValidationAsync(any(), any())).thenAnswer(invocation -> {
+			List<String> conceptIds = getConceptIds(invocation.getArgument(0));
+			saves.add(conceptIds);
+			return conceptIds.contains("3") ?
+					Mono.error(new WebClientRequestException(new ConnectException("Connection refused"), HttpMethod.POST, URI.create("http://snowstorm/"), new HttpHeaders())) :
+					Mono.just(new ConceptChangeBatchStatus(ConceptChangeBatchStatus.Status.COMPLETED));
+		});
+		List<List<Integer>> reportedRows = new CopyOnWriteArrayList<>();
+		ComponentTransformationRequest request = createRequest(2);
+		request.setTaskBatchListener((rows, taskBatchChanges) -> reportedRows.add(rows));
+
+		List<ChangeResult<DescriptionPojo>> changes = createDescriptionChanges(4);
+		createService(2, 2, 1, 10).createDescriptions(request, getComponents(changes), changes);
+
+		// Only the first task batch finished, the second is left for a resumed job to run again
+		assertEquals(Collections.singletonList(Arrays.asList(0, 1)), reportedRows);
+		assertEquals(TRUE, changes.get(0).getSuccess());
+		assertEquals(FALSE, changes.get(2).getSuccess());
+		assertEquals("Failed to communicate with the terminology server.", changes.get(2).getMessage());
+	}
+
+	@Test
+	public void testTaskBatchRefusedByOpenCircuitFailsAlone() throws BusinessServiceException {
+		Mockito.when(snowstormClient.saveUpdateConceptsNoValidationAsync(any(), any())).thenAnswer(invocation -> {
+			List<String> conceptIds = getConceptIds(invocation.getArgument(0));
+			saves.add(conceptIds);
+			return conceptIds.contains("3") ?
+					Mono.error(new CircuitBreakerOpenException("Calls to http://snowstorm/ are failing or too slow, not calling it again for a while.")) :
+					Mono.just(new ConceptChangeBatchStatus(ConceptChangeBatchStatus.Status.COMPLETED));
+		});
+		List<List<Integer>> reportedRows = new CopyOnWriteArrayList<>();
+		ComponentTransformationRequest request = createRequest(2);
+		request.setTaskBatchListener((rows, taskBatchChanges) -> reportedRows.add(rows));
+
+		List<ChangeResult<DescriptionPojo>> changes = createDescriptionChanges(6);
+		createService(2, 2, 1, 10).createDescriptions(request, getComponents(changes), changes);
+
+		// The other task batches carry on and are reported, the refused one is left for a resumed job
+		assertEquals(Arrays.asList(Arrays.asList(0, 1), Arrays.asList(4, 5)), reportedRows);
+		assertEquals(FALSE, changes.get(2).getSuccess());
+		assertEquals(FALSE, changes.get(3).getSuccess());
+		assertTrue(changes.get(2).getMessage().startsWith("The terminology server has been failing"), changes.get(2).getMessage());
+		assertEquals(TRUE, changes.get(4).getSuccess());
+	}
+
+	private HighLevelAuthoringService createService(int processingBatchSize, int pipelineMaxBatches, int saveRetryMinSize, int saveRetryMaxSaves) {
+		AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(processingBatchSize, processingBatchSize, processingBatchSize, 10_000, 10_000);
+		return new HighLevelAuthoringService(snowstormClient, authoringServicesClient, batchSizer,
+				1, 1, pipelineMaxBatches, saveRetryMinSize, saveRetryMaxSaves, true);
+	}
+
+	private static ComponentTransformationRequest createRequest(int batchSize) {
+		return new ComponentTransformationRequest("test", BRANCH_PATH, null, null, null, null, batchSize, null, true);
+	}
+
+	private void mockSaves(Set<String> failingConceptIds) {
+		Mockito.when(snowstormClient.saveUpdateConceptsNoValidationAsync(any(), any())).thenAnswer(invocation -> {
+			List<String> conceptIds = getConceptIds(invocation.getArgument(0));
+			saves.add(conceptIds);
+			boolean failed = conceptIds.stream().anyMatch(failingConceptIds::contains);
+			// Later batches are loaded while the save is in progress
+			return Mono.just(new ConceptChangeBatchStatus(failed ? ConceptChangeBatchStatus.Status.FAILED : ConceptChangeBatchStatus.Status.COMPLETED))
+					.delayElement(Duration.ofMillis(10));
+		});
+	}
+
+	private List<Integer> getSaveSizes() {
+		return saves.stream().map(List::size).collect(Collectors.toList());
+	}
+
+	private static void assertFailedConcepts(List<ChangeResult<DescriptionPojo>> changes, Set<String> failedConceptIds) {
+		for (ChangeResult<DescriptionPojo> change : changes) {
+			String conceptId = change.getComponent().getConceptId();
+			if (failedConceptIds.contains(conceptId)) {
+				assertEquals(FALSE, change.getSuccess(), conceptId);
+				assertTrue(change.getMessage().startsWith("Persisting concept batch failed"), change.getMessage());
+			} else {
+				assertEquals(TRUE, change.getSuccess(), conceptId);
+			}
+		}
+	}
+
+	private static List<ChangeResult<DescriptionPojo>> createDescriptionChanges(int conceptCount) {
+		List<ChangeResult<DescriptionPojo>> changes = new ArrayList<>();
+		for (int conceptId = 1; conceptId <= conceptCount; conceptId++) {
+			DescriptionPojo description = new DescriptionPojo("Term " + conceptId);
+			description.setConceptId(Integer.toString(conceptId));
+			description.setLang("en");
+			changes.add(new ChangeResult<>(description));
+		}
+		return changes;
+	}
+
+	private static AxiomPojo createAxiom(String conceptId, String axiomId, boolean update) {
+		AxiomPojo axiom = new AxiomPojo();
+		axiom.setConceptId(conceptId);
+		axiom.setAxiomId(axiomId);
+		axiom.setActive(true);
+		axiom.setGci(false);
+		axiom.setRelationships(update ? Collections.singleton(TestDataHelper.createRelationshipPojo(0, "116680003", null)) : new HashSet<>());
+		return axiom;
+	}
+
+	private static <T extends SnomedComponent> List<T> getComponents(List<ChangeResult<T>> changes) {
+		return changes.stream().map(ChangeResult::getComponent).collect(Collectors.toList());
+	}
+
+	private static List<ConceptPojo> getLoadedConcepts(SnowstormClient.ConceptBulkLoadRequest loadRequest) {
+		return loadRequest.getConceptIds().stream().map(ConceptPojo::new).collect(Collectors.toList());
+	}
+
+	private static List<String> getConceptIds(Collection<ConceptPojo> concepts) {
+		return concepts.stream().map(ConceptPojo::getConceptId).collect(Collectors.toList());
+	}
+}
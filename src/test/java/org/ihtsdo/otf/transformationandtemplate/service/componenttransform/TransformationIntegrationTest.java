@@ -8,6 +8,7 @@ import org.ihtsdo.otf.rest.exception.BusinessServiceException;
 import org.ihtsdo.otf.transformationandtemplate.domain.ComponentTransformationJob;
 import org.ihtsdo.otf.transformationandtemplate.domain.ComponentTransformationRequest;
 import org.ihtsdo.otf.transformationandtemplate.service.client.*;
+import org.ihtsdo.otf.transformationandtemplate.service.template.TransformationStatus;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -15,18 +16,25 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
 import static java.lang.Boolean.FALSE;
 import static java.lang.Boolean.TRUE;
+import static java.lang.String.format;
 import static org.ihtsdo.otf.rest.client.terminologyserver.pojo.DescriptionPojo.Acceptability.ACCEPTABLE;
 import static org.ihtsdo.otf.rest.client.terminologyserver.pojo.DescriptionPojo.Acceptability.PREFERRED;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 
-@SpringBootTest(properties = "application.properties")
+@SpringBootTest(properties = {"application.properties", "transformation.job.instance-id=test"})
 public class TransformationIntegrationTest {
 
 	@Autowired
@@ -52,6 +60,10 @@ public class TransformationIntegrationTest {
 	public void before() {
 		Mockito.when(snowstormClientFactory.getClientForCurrentUser()).thenReturn(snowstormClientMock);
 		Mockito.when(authoringServicesClientFactory.getClientForCurrentUser()).thenReturn(authoringServicesClientMock);
+		Mockito.when(snowstormClientFactory.getClientForCurrentUser(any(Workload.class))).thenReturn(snowstormClientMock);
+		Mockito.when(authoringServicesClientFactory.getClientForCurrentUser(any(Workload.class))).thenReturn(authoringServicesClientMock);
+		// Reactive client methods need an explicit publisher, a plain mock would return null
+		Mockito.when(snowstormClientMock.runValidationAsync(any(), any())).thenReturn(Mono.just(new ArrayList<>()));
 	}
 
 	@Test
@@ -69,14 +81,16 @@ public class TransformationIntegrationTest {
 
 		Mockito.when(snowstormClientMock.getBranch(any())).thenReturn(new Branch());
 		Mockito.when(snowstormClientMock.getDefaultModuleId(branchPath)).thenReturn("45991000052106");
-		Mockito.when(snowstormClientMock.getFullConcepts(any(), any())).thenReturn(Arrays.asList(
+		List<ConceptPojo> concepts = Arrays.asList(
 				new ConceptPojo("272379006").add(new DescriptionPojo("Event (event)").setDescriptionId("123")),
 				new ConceptPojo("242605002").add(new DescriptionPojo("Bite (event)").setDescriptionId("456")),
 				new ConceptPojo("774007").add(new DescriptionPojo("Bite (event)").setDescriptionId("456")),
 				new ConceptPojo("210958007").add(new DescriptionPojo("Bite (event)").setDescriptionId("456")).add(svDescription)
-		));
-		Mockito.when(snowstormClientMock.runValidation(any(), any())).thenReturn(new ArrayList<>());
-		Mockito.when(snowstormClientMock.saveUpdateConceptsNoValidation(any(), any())).thenReturn(new ConceptChangeBatchStatus(ConceptChangeBatchStatus.Status.COMPLETED));
+		);
+		Mockito.when(snowstormClientMock.streamCurrentFullConcepts(any(), any())).thenReturn(Flux.fromIterable(concepts));
+		Mockito.when(snowstormClientMock.getCurrentFullConcepts(any(), any())).thenReturn(concepts);
+		Mockito.when(snowstormClientMock.runValidationAsync(any(), any())).thenReturn(Mono.just(new ArrayList<>()));
+		Mockito.when(snowstormClientMock.saveUpdateConceptsNoValidationAsync(any(), any())).thenReturn(Mono.just(new ConceptChangeBatchStatus(ConceptChangeBatchStatus.Status.COMPLETED)));
 
 		ComponentTransformationJob job = componentTransformService.queueBatchTransformation(new ComponentTransformationRequest(
 				"description-create-tsv", branchPath, null, null, null, null, 100, getClass().getResourceAsStream("description-create-tsv-test.tsv"), false));
@@ -92,7 +106,7 @@ public class TransformationIntegrationTest {
 		ArgumentCaptor<Collection<ConceptPojo>> conceptsSavedCaptor = ArgumentCaptor.forClass(Collection.class);
 		ArgumentCaptor<String> stringArgumentCaptor = ArgumentCaptor.forClass(String.class);
 
-		Mockito.verify(snowstormClientMock).saveUpdateConceptsNoValidation(conceptsSavedCaptor.capture(), stringArgumentCaptor.capture());
+		Mockito.verify(snowstormClientMock).saveUpdateConceptsNoValidationAsync(conceptsSavedCaptor.capture(), stringArgumentCaptor.capture());
 
 		assertEquals(branchPath, stringArgumentCaptor.getValue());
 
@@ -186,10 +200,10 @@ public class TransformationIntegrationTest {
 		Mockito.when(snowstormClientMock.getBranch(any())).thenReturn(new Branch());
 		Mockito.when(snowstormClientMock.getDefaultModuleId(branchPath)).thenReturn("45991000052106");
 		Mockito.when(authoringServicesClientMock.retrieveProject(any())).thenReturn(new AuthoringProject());
-		Mockito.when(snowstormClientMock.getFullConcepts(any(), any())).thenReturn(Arrays.asList(
+		Mockito.when(snowstormClientMock.getCurrentFullConcepts(any(), any())).thenReturn(Arrays.asList(
 				new ConceptPojo("210958007").add(new DescriptionPojo("Bite (event)").setDescriptionId("456")).add(svDescription)));
 
-		Mockito.when(snowstormClientMock.saveUpdateConceptsNoValidation(any(), any())).thenReturn(new ConceptChangeBatchStatus(ConceptChangeBatchStatus.Status.COMPLETED));
+		Mockito.when(snowstormClientMock.saveUpdateConceptsNoValidationAsync(any(), any())).thenReturn(Mono.just(new ConceptChangeBatchStatus(ConceptChangeBatchStatus.Status.COMPLETED)));
 		ComponentTransformationJob job = componentTransformService.queueBatchTransformation(new ComponentTransformationRequest(
 				"description-update-tsv", branchPath, null, null, null, null, 100, getClass().getResourceAsStream("description-update-tsv-test.tsv"), false));
 
@@ -207,7 +221,7 @@ public class TransformationIntegrationTest {
 		ArgumentCaptor<Collection<ConceptPojo>> conceptsSavedCaptor = ArgumentCaptor.forClass(Collection.class);
 		ArgumentCaptor<String> stringArgumentCaptor = ArgumentCaptor.forClass(String.class);
 
-		Mockito.verify(snowstormClientMock).saveUpdateConceptsNoValidation(conceptsSavedCaptor.capture(), stringArgumentCaptor.capture());
+		Mockito.verify(snowstormClientMock).saveUpdateConceptsNoValidationAsync(conceptsSavedCaptor.capture(), stringArgumentCaptor.capture());
 
 		assertEquals(branchPath, stringArgumentCaptor.getValue());
 
@@ -245,7 +259,7 @@ public class TransformationIntegrationTest {
 		Mockito.when(authoringServicesClientMock.retrieveProject(any())).thenReturn(new AuthoringProject());
 		Mockito.when(snowstormClientMock.getBranch(any())).thenReturn(new Branch());
 		Mockito.when(snowstormClientMock.getDefaultModuleId(branchPath)).thenReturn("45991000052106"); // sv module
-		Mockito.when(snowstormClientMock.getFullConcepts(any(), any())).thenReturn(Arrays.asList(
+		Mockito.when(snowstormClientMock.getCurrentFullConcepts(any(), any())).thenReturn(Arrays.asList(
 				new ConceptPojo("272379006").add(enDescription)
 		));
 
@@ -301,12 +315,12 @@ public class TransformationIntegrationTest {
 
 		Mockito.when(snowstormClientMock.getBranch(any())).thenReturn(new Branch());
 		Mockito.when(snowstormClientMock.getDefaultModuleId(branchPath)).thenReturn("45991000052106");
-		Mockito.when(snowstormClientMock.getFullConcepts(any(), any())).thenReturn(Arrays.asList(
+		Mockito.when(snowstormClientMock.getCurrentFullConcepts(any(), any())).thenReturn(Arrays.asList(
 				new ConceptPojo("410058007").add(new DescriptionPojo("Bite (event)").setDescriptionId("111")).add(svDescription),
 				new ConceptPojo("54352009").add(new DescriptionPojo("Bite 1 (event)").setDescriptionId("222")).add(svDescription1).add(svDescription2)
 		));
-		Mockito.when(snowstormClientMock.runValidation(any(), any())).thenReturn(new ArrayList<>());
-		Mockito.when(snowstormClientMock.saveUpdateConceptsNoValidation(any(), any())).thenReturn(new ConceptChangeBatchStatus(ConceptChangeBatchStatus.Status.COMPLETED));
+		Mockito.when(snowstormClientMock.runValidationAsync(any(), any())).thenReturn(Mono.just(new ArrayList<>()));
+		Mockito.when(snowstormClientMock.saveUpdateConceptsNoValidationAsync(any(), any())).thenReturn(Mono.just(new ConceptChangeBatchStatus(ConceptChangeBatchStatus.Status.COMPLETED)));
 
 		ComponentTransformationJob job = componentTransformService.queueBatchTransformation(new ComponentTransformationRequest(
 				"description-replacement-tsv", branchPath, null, null, null, null, 100, getClass().getResourceAsStream("description-replacement-tsv-test.tsv"), false));
@@ -322,7 +336,7 @@ public class TransformationIntegrationTest {
 		ArgumentCaptor<Collection<ConceptPojo>> conceptsSavedCaptor = ArgumentCaptor.forClass(Collection.class);
 		ArgumentCaptor<String> stringArgumentCaptor = ArgumentCaptor.forClass(String.class);
 
-		Mockito.verify(snowstormClientMock).saveUpdateConceptsNoValidation(conceptsSavedCaptor.capture(), stringArgumentCaptor.capture());
+		Mockito.verify(snowstormClientMock).saveUpdateConceptsNoValidationAsync(conceptsSavedCaptor.capture(), stringArgumentCaptor.capture());
 
 		assertEquals(branchPath, stringArgumentCaptor.getValue());
 
@@ -372,4 +386,122 @@ public class TransformationIntegrationTest {
 		assertEquals(TRUE, changeResults.get(0).getSuccess());
 		assertEquals(TRUE, changeResults.get(1).getSuccess());
 	}
+
+	@Test
+	public void testResumeFailedJob() throws BusinessServiceException, InterruptedException {
+		String branchPath = "MAIN/KAITEST/KAITEST-104";
+		// One description on each concept, each row is a task batch of its own
+		List<String> descriptionIds = Arrays.asList("2148514019", "3112261000052114", "2579921000052110");
+		List<String> conceptIds = Arrays.asList("210958007", "410058007", "54352009");
+		StringBuilder tsv = new StringBuilder("descriptionId\tpreferredTerm\tterm\tcaseSignificanceId\ttypeId\tlangRefset1\tacceptability1\tlangRefset2\tacceptability2" +
+				"\tlangRefset3\tacceptability3\tlangRefset4\tacceptability4\tlangRefset5\tacceptability5\tnotes\n");
+		for (String descriptionId : descriptionIds) {
+			tsv.append(descriptionId).append("\tTerm\tTerm\t900000000000448009\t900000000000013009\t500191000057100\tNOT ACCEPTABLE\t\t\t\t\t\t\t\t\tSome notes\n");
+		}
+
+		Mockito.when(snowstormClientMock.getBranch(any())).thenReturn(new Branch());
+		Mockito.when(snowstormClientMock.getDefaultModuleId(branchPath)).thenReturn("45991000052106");
+		Mockito.when(authoringServicesClientMock.retrieveProject(any())).thenReturn(new AuthoringProject());
+		List<String> loadedDescriptionIds = new CopyOnWriteArrayList<>();
+		Mockito.when(snowstormClientMock.getCurrentFullConcepts(any(), any())).thenAnswer(invocation -> {
+			SnowstormClient.ConceptBulkLoadRequest loadRequest = invocation.getArgument(0);
+			loadedDescriptionIds.addAll(loadRequest.getDescriptionIds());
+			return loadRequest.getDescriptionIds().stream()
+					.map(descriptionId -> createConceptWithDescription(conceptIds.get(descriptionIds.indexOf(descriptionId)), descriptionId))
+					.collect(Collectors.toList());
+		});
+		// The concept of the second row can not be saved, the job fails after the other task batches have finished
+		List<String> savedConceptIds = new CopyOnWriteArrayList<>();
+		Mockito.when(snowstormClientMock.saveUpdateConceptsNoValidationAsync(any(), any())).thenAnswer(invocation -> {
+			Collection<ConceptPojo> concepts = invocation.getArgument(0);
+			for (ConceptPojo concept : concepts) {
+				if (conceptIds.get(1).equals(concept.getConceptId())) {
+					throw new IllegalStateException("Unexpected failure");
+				}
+				savedConceptIds.add(concept.getConceptId());
+			}
+			return Mono.just(new ConceptChangeBatchStatus(ConceptChangeBatchStatus.Status.COMPLETED));
+		});
+
+		ComponentTransformationJob job = componentTransformService.queueBatchTransformation(new ComponentTransformationRequest(
+				"description-update-tsv", branchPath, null, null, null, null, 1, new ByteArrayInputStream(tsv.toString().getBytes(StandardCharsets.UTF_8)), false));
+		job = waitForEndState(branchPath, job);
+		assertEquals(TransformationStatus.FAILED, job.getStatus().getStatus());
+		assertEquals(new HashSet<>(Arrays.asList(conceptIds.get(0), conceptIds.get(2))), new HashSet<>(savedConceptIds));
+
+		// Resume once the concept can be saved
+		loadedDescriptionIds.clear();
+		savedConceptIds.clear();
+		Mockito.when(snowstormClientMock.saveUpdateConceptsNoValidationAsync(any(), any())).thenAnswer(invocation -> {
+			Collection<ConceptPojo> concepts = invocation.getArgument(0);
+			concepts.forEach(concept -> savedConceptIds.add(concept.getConceptId()));
+			return Mono.just(new ConceptChangeBatchStatus(ConceptChangeBatchStatus.Status.COMPLETED));
+		});
+		componentTransformService.resumeBatchTransformation(branchPath, job.getId());
+		job = waitForEndState(branchPath, job);
+		assertEquals(TransformationStatus.COMPLETED, job.getStatus().getStatus());
+
+		// Completed rows are not processed again
+		assertEquals(Collections.singletonList(descriptionIds.get(1)), loadedDescriptionIds);
+		assertEquals(Collections.singletonList(conceptIds.get(1)), savedConceptIds);
+
+		// Results of both runs are merged in the order of the input rows
+		List<ChangeResult<DescriptionPojo>> changeResults = componentTransformService.loadDescriptionTransformationJobResults(branchPath, job.getId());
+		assertEquals(3, changeResults.size());
+		for (int row = 0; row < changeResults.size(); row++) {
+			assertEquals(descriptionIds.get(row), changeResults.get(row).getComponent().getDescriptionId());
+			assertEquals(TRUE, changeResults.get(row).getSuccess());
+		}
+
+		String jobId = job.getId();
+		IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> componentTransformService.resumeBatchTransformation(branchPath, jobId));
+		assertEquals(format("Job '%s' can not be resumed, only failed jobs can be. The job is COMPLETED.", jobId), exception.getMessage());
+	}
+
+	@Test
+	public void testResumeCreateJobWithUnfinishedTaskBatchRefused() throws BusinessServiceException, InterruptedException {
+		String branchPath = "MAIN/KAITEST/KAITEST-105";
+
+		Mockito.when(snowstormClientMock.getBranch(any())).thenReturn(new Branch());
+		Mockito.when(snowstormClientMock.getDefaultModuleId(branchPath)).thenReturn("45991000052106");
+		List<ConceptPojo> concepts = Arrays.asList(
+				new ConceptPojo("272379006").add(new DescriptionPojo("Event (event)").setDescriptionId("123")),
+				new ConceptPojo("242605002").add(new DescriptionPojo("Bite (event)").setDescriptionId("456")),
+				new ConceptPojo("210958007").add(new DescriptionPojo("Bite (event)").setDescriptionId("456"))
+		);
+		Mockito.when(snowstormClientMock.streamCurrentFullConcepts(any(), any())).thenReturn(Flux.fromIterable(concepts));
+		// The save fails part way, some of the new descriptions may already be on the branch
+		Mockito.when(snowstormClientMock.saveUpdateConceptsNoValidationAsync(any(), any())).thenThrow(new IllegalStateException("Unexpected failure"));
+
+		ComponentTransformationJob job = componentTransformService.queueBatchTransformation(new ComponentTransformationRequest(
+				"description-create-tsv", branchPath, null, null, null, null, 100, getClass().getResourceAsStream("description-create-tsv-test.tsv"), false));
+		job = waitForEndState(branchPath, job);
+		assertEquals(TransformationStatus.FAILED, job.getStatus().getStatus());
+
+		String jobId = job.getId();
+		IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> componentTransformService.resumeBatchTransformation(branchPath, jobId));
+		assertTrue(exception.getMessage().contains("[" + branchPath + "]"), exception.getMessage());
+	}
+
+	private ComponentTransformationJob waitForEndState(String branchPath, ComponentTransformationJob job) throws BusinessServiceException, InterruptedException {
+		int maxWait = 10;// seconds
+		int wait = 0;
+		do {
+			Thread.sleep(1_000);
+			job = componentTransformService.loadTransformationJob(branchPath, job.getId());
+		} while (!job.getStatus().getStatus().isEndState() && wait++ < maxWait);
+		return job;
+	}
+
+	private static ConceptPojo createConceptWithDescription(String conceptId, String descriptionId) {
+		DescriptionPojo description = new DescriptionPojo("Term").setDescriptionId(descriptionId);
+		Map<String, DescriptionPojo.Acceptability> acceptabilityMap = new HashMap<>();
+		acceptabilityMap.put("46011000052107", PREFERRED);
+		acceptabilityMap.put("500191000057100", PREFERRED);
+		description.setLang("sv");
+		description.setType(DescriptionPojo.Type.SYNONYM);
+		description.setAcceptabilityMap(acceptabilityMap);
+		description.setModuleId("45991000052106");
+		return new ConceptPojo(conceptId).add(description);
+	}
 }
@@ -0,0 +1,38 @@
+package org.ihtsdo.otf.transformationandtemplate.service.componenttransform;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.TextNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TransformationJobProgressTest {
+
+	@Test
+	public void testResultsKeptByRowRange() throws IOException {
+		TransformationJobProgress progress = new TransformationJobProgress();
+		progress.addCompletedTaskBatch(List.of(5, 2, 3), List.of(new TextNode("f"), new TextNode("c"), new TextNode("d")));
+		progress.addCompletedTaskBatch(List.of(0), List.of(new TextNode("a")));
+
+		TransformationJobProgress.CompletedTaskBatch completedTaskBatch = progress.getCompletedTaskBatches().get(0);
+		assertEquals(2, completedTaskBatch.getRows().size());
+		assertEquals(2, completedTaskBatch.getRows().get(0).getFirst());
+		assertEquals(3, completedTaskBatch.getRows().get(0).getLast());
+		assertEquals(5, completedTaskBatch.getRows().get(1).getFirst());
+
+		// Persisted and read back as a resumed job would
+		ObjectMapper objectMapper = new ObjectMapper();
+		TransformationJobProgress readProgress = objectMapper.readValue(objectMapper.writeValueAsBytes(progress), TransformationJobProgress.class);
+		Map<Integer, JsonNode> resultsByRow = readProgress.getResultsByRow();
+		assertEquals(4, resultsByRow.size());
+		assertEquals("a", resultsByRow.get(0).textValue());
+		assertEquals("c", resultsByRow.get(2).textValue());
+		assertEquals("d", resultsByRow.get(3).textValue());
+		assertEquals("f", resultsByRow.get(5).textValue());
+	}
+}